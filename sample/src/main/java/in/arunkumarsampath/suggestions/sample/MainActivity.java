@@ -21,7 +21,6 @@ import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.design.widget.FloatingActionButton;
 import android.support.v7.app.AppCompatActivity;
-import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.AppCompatButton;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
@@ -32,18 +31,22 @@ import android.view.ViewGroup;
 import android.widget.EditText;
 import android.widget.TextView;
 
-import com.jakewharton.rxbinding.widget.RxTextView;
+import com.jakewharton.rxbinding2.widget.RxTextView;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
 import butterknife.OnClick;
-import rx.android.schedulers.AndroidSchedulers;
-import rx.functions.Action1;
-import rx.schedulers.Schedulers;
-import rx.subscriptions.CompositeSubscription;
+import in.arunkumarsampath.suggestions2.RxSuggestions;
+import in.arunkumarsampath.suggestions2.diff.SuggestionDelta;
+import in.arunkumarsampath.suggestions2.diff.SuggestionDeltaTransformer;
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.processors.FlowableProcessor;
+import io.reactivex.processors.PublishProcessor;
 
 public class MainActivity extends AppCompatActivity {
     private static final String TAG = MainActivity.class.getSimpleName();
@@ -59,7 +62,8 @@ public class MainActivity extends AppCompatActivity {
     AppCompatButton fetchButton;
 
 
-    private final CompositeSubscription subs = new CompositeSubscription();
+    private final CompositeDisposable subs = new CompositeDisposable();
+    private final FlowableProcessor<List<SimpleSuggestionItem>> suggestions = PublishProcessor.<List<SimpleSuggestionItem>>create().toSerialized();
 
     private SuggestionsAdapter suggestionsAdapter;
 
@@ -78,33 +82,29 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onResume() {
         super.onResume();
+        subs.add(suggestions
+                .compose(new SuggestionDeltaTransformer<>())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(suggestionsAdapter::apply, Throwable::printStackTrace));
         subs.add(RxTextView.afterTextChangeEvents(searchBox)
+                .toFlowable(BackpressureStrategy.LATEST)
                 .map(changeEvent -> changeEvent.editable().toString())
                 .compose(RxSuggestions.suggestionsTransformer())
-                .subscribe(this::setSuggestions, Throwable::printStackTrace));
-    }
-
-    private void setSuggestions(@NonNull List<String> suggestions) {
-        recyclerView.post(() -> suggestionsAdapter.setSuggestions(suggestions));
+                .subscribe(suggestions::onNext, Throwable::printStackTrace));
     }
 
     @Override
     protected void onPause() {
         super.onPause();
         subs.clear();
+        // The next subscription diffs from an empty list again.
+        suggestionsAdapter.clear();
     }
 
     @OnClick(R.id.fetchButton)
     public void onFetchClick() {
         subs.add(RxSuggestions.fetch("Batman")
-                .subscribeOn(Schedulers.io())
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(new Action1<List<String>>() {
-                    @Override
-                    public void call(List<String> strings) {
-                        setSuggestions(strings);
-                    }
-                }));
+                .subscribe(suggestions::onNext, Throwable::printStackTrace));
     }
 
     @OnClick(R.id.fab)
@@ -112,8 +112,8 @@ public class MainActivity extends AppCompatActivity {
         searchBox.setText("");
     }
 
-    static class SuggestionsAdapter extends RecyclerView.Adapter<SuggestionsAdapter.ListItemHolder> {
-        private final List<String> suggestions = new ArrayList<>();
+    static class SuggestionsAdapter extends RecyclerView.Adapter<SuggestionsAdapter.ListItemHolder> implements SuggestionDelta.Callback {
+        private SuggestionDelta<SimpleSuggestionItem> current;
 
         SuggestionsAdapter() {
             setHasStableIds(true);
@@ -127,67 +127,54 @@ public class MainActivity extends AppCompatActivity {
         @Override
         public void onBindViewHolder(ListItemHolder holder, int position) {
             if (holder.itemView instanceof TextView) {
-                ((TextView) holder.itemView).setText(suggestions.get(position));
+                ((TextView) holder.itemView).setText(current.items().get(position).value());
                 ((TextView) holder.itemView).setTextColor(Color.BLACK);
             }
         }
 
         @Override
         public long getItemId(int position) {
-            return suggestions.get(position).hashCode();
+            return current.stableId(position);
         }
 
         @Override
         public int getItemCount() {
-            return suggestions.size();
+            return current == null ? 0 : current.items().size();
         }
 
-        void setSuggestions(@NonNull List<String> newStrings) {
-            final SuggestionDiff suggestionDiff = new SuggestionDiff(suggestions, newStrings);
-            final DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(suggestionDiff, true);
-            suggestions.clear();
-            suggestions.addAll(newStrings);
-            diffResult.dispatchUpdatesTo(this);
+        void apply(@NonNull SuggestionDelta<SimpleSuggestionItem> delta) {
+            current = delta;
+            delta.dispatchTo(this);
         }
 
-        static class ListItemHolder extends RecyclerView.ViewHolder {
-            ListItemHolder(View itemView) {
-                super(itemView);
-            }
+        void clear() {
+            current = null;
+            notifyDataSetChanged();
         }
 
-        private static class SuggestionDiff extends DiffUtil.Callback {
-
-            private final List<String> newList;
-            private final List<String> oldList;
-
-            SuggestionDiff(@NonNull List<String> oldList, @NonNull List<String> newList) {
-                this.oldList = oldList;
-                this.newList = newList;
-            }
-
-            @Override
-            public int getOldListSize() {
-                return oldList.size();
-            }
+        @Override
+        public void onInserted(int position, int count) {
+            notifyItemRangeInserted(position, count);
+        }
 
-            @Override
-            public int getNewListSize() {
-                return newList.size();
-            }
+        @Override
+        public void onRemoved(int position, int count) {
+            notifyItemRangeRemoved(position, count);
+        }
 
-            @Override
-            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
-                return caseInsensitiveComparison(oldItemPosition, newItemPosition);
-            }
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            notifyItemMoved(fromPosition, toPosition);
+        }
 
-            @Override
-            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
-                return caseInsensitiveComparison(oldItemPosition, newItemPosition);
-            }
+        @Override
+        public void onChanged(int position, int count) {
+            notifyItemRangeChanged(position, count);
+        }
 
-            private boolean caseInsensitiveComparison(int oldItemPosition, int newItemPosition) {
-                return oldList.get(oldItemPosition).equalsIgnoreCase(newList.get(newItemPosition));
+        static class ListItemHolder extends RecyclerView.ViewHolder {
+            ListItemHolder(View itemView) {
+                super(itemView);
             }
         }
     }
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package in.arunkumarsampath.suggestions2.benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import in.arunkumarsampath.suggestions2.gateway.SuggestionGateway;
+import in.arunkumarsampath.suggestions2.parser.JsonSuggestionResponseParser;
+import in.arunkumarsampath.suggestions2.source.google.GoogleSuggestionSource;
+import in.arunkumarsampath.suggestions2.transport.HttpUrlConnectionTransport;
+
+/**
+ * Load test of a {@link SuggestionGateway} in front of a {@link LocalSuggestServer} with a slow
+ * response time, with thousands of keep-alive clients each typing a phrase of a
+ * {@link SyntheticCorpus} one keystroke at a time.
+ * <p>
+ * Clients are driven by a single thread with non-blocking sockets, so that the threads reported
+ * are those of the gateway and its upstream executor. Each client sends its next keystroke
+ * {@code thinkMillis} after the response to the previous one. Since clients type the same phrases,
+ * most keystrokes are served from the shared cache or join a call in flight.
+ * <p>
+ * Not a JMH benchmark, since latency percentiles and thread count under sustained load are what
+ * matter here. Run with
+ * {@code ./gradlew :suggestions-benchmarks:gatewayLoad -Pload.args="[clients] [seconds] [latencyMillis] [thinkMillis]"}.
+ */
+public final class GatewayLoad {
+
+    private static final int PHRASES = 500;
+    private static final int MAX_LATENCY_MILLIS = 10_000;
+    // End of a chunked response: the last data chunk, then the empty chunk.
+    private static final long RESPONSE_END = pack("\r\n0\r\n\r\n");
+
+    private GatewayLoad() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int clients = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        final long latencyMillis = args.length > 2 ? Long.parseLong(args[2]) : 100;
+        final long thinkMillis = args.length > 3 ? Long.parseLong(args[3]) : 200;
+
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final String[] phrases = new SyntheticCorpus(PHRASES).phrases;
+        // Threads of the server are started up front and not counted.
+        try (LocalSuggestServer server = new LocalSuggestServer(256, latencyMillis)) {
+            final GoogleSuggestionSource upstream = new GoogleSuggestionSource.Builder()
+                    .transport(new HttpUrlConnectionTransport(SuggestionGateway.DEFAULT_UPSTREAM_THREADS))
+                    .parser(new JsonSuggestionResponseParser(), server.urlFormat("firefox"))
+                    .build();
+            final int baseline = threads.getThreadCount();
+            final SuggestionGateway gateway = new SuggestionGateway.Builder(upstream)
+                    .address(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+                    .start();
+            try (Selector selector = Selector.open()) {
+                final InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), gateway.port());
+                final Random random = new Random(42);
+                for (int i = 0; i < clients; i++) {
+                    final SocketChannel channel = SocketChannel.open();
+                    channel.configureBlocking(false);
+                    channel.connect(address);
+                    channel.register(selector, SelectionKey.OP_CONNECT,
+                            new Client(channel, phrases[random.nextInt(phrases.length)]));
+                }
+
+                System.out.printf("%d clients, %d ms think time, %d ms upstream latency%n",
+                        clients, thinkMillis, latencyMillis);
+                System.out.println("second  threads  connections  responses  p50-ms  p99-ms  max-ms  cache-hits  upstream  coalesced  dropped");
+                final int[] latencies = new int[MAX_LATENCY_MILLIS + 1];
+                final ArrayDeque<Client> waiting = new ArrayDeque<>();
+                final long start = System.nanoTime();
+                long nextReport = start + TimeUnit.SECONDS.toNanos(1);
+                int maxThreads = 0;
+                long total = 0;
+                for (int second = 1; second <= seconds; ) {
+                    final long now = System.nanoTime();
+                    while (!waiting.isEmpty() && waiting.peek().dueAt <= now) {
+                        final Client client = waiting.poll();
+                        client.send(random, phrases);
+                        client.key.interestOps(SelectionKey.OP_WRITE);
+                    }
+                    final long nextDue = waiting.isEmpty() ? nextReport : Math.min(nextReport, waiting.peek().dueAt);
+                    selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(nextDue - now)));
+
+                    final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        final SelectionKey key = keys.next();
+                        keys.remove();
+                        final Client client = (Client) key.attachment();
+                        client.key = key;
+                        if (key.isConnectable()) {
+                            client.channel.finishConnect();
+                            client.send(random, phrases);
+                            key.interestOps(SelectionKey.OP_WRITE);
+                        } else if (key.isWritable()) {
+                            client.channel.write(client.out);
+                            if (!client.out.hasRemaining()) {
+                                key.interestOps(SelectionKey.OP_READ);
+                            }
+                        } else if (key.isReadable() && client.read()) {
+                            final long done = System.nanoTime();
+                            latencies[(int) Math.min(MAX_LATENCY_MILLIS, TimeUnit.NANOSECONDS.toMillis(done - client.sentAt))]++;
+                            key.interestOps(0);
+                            client.dueAt = done + TimeUnit.MILLISECONDS.toNanos(thinkMillis);
+                            waiting.add(client);
+                        }
+                    }
+
+                    if (System.nanoTime() >= nextReport) {
+                        final int threadCount = threads.getThreadCount() - baseline;
+                        maxThreads = Math.max(maxThreads, threadCount);
+                        final int responses = sum(latencies);
+                        total += responses;
+                        System.out.printf("%6d  %7d  %11d  %9d  %6d  %6d  %6d  %10d  %8d  %9d  %7d%n",
+                                second, threadCount, gateway.connectionCount(), responses,
+                                percentile(latencies, responses, 0.5), percentile(latencies, responses, 0.99),
+                                percentile(latencies, responses, 1.0), gateway.cacheHitCount(),
+                                gateway.upstreamCount(), gateway.coalescedCount(), gateway.droppedCount());
+                        Arrays.fill(latencies, 0);
+                        nextReport += TimeUnit.SECONDS.toNanos(1);
+                        second++;
+                    }
+                }
+                System.out.printf("max threads %d, %d responses, %d per second%n", maxThreads, total, total / seconds);
+                for (SelectionKey key : selector.keys()) {
+                    key.channel().close();
+                }
+            } finally {
+                gateway.close();
+            }
+        }
+        // Blocking upstream calls still running would otherwise keep the executor alive.
+        System.exit(0);
+    }
+
+    private static int sum(int[] counts) {
+        int sum = 0;
+        for (int count : counts) {
+            sum += count;
+        }
+        return sum;
+    }
+
+    private static int percentile(int[] latencies, int count, double percentile) {
+        final long rank = (long) Math.ceil(count * percentile);
+        long seen = 0;
+        for (int millis = 0; millis < latencies.length; millis++) {
+            seen += latencies[millis];
+            if (seen >= rank && seen > 0) {
+                return millis;
+            }
+        }
+        return 0;
+    }
+
+    private static long pack(String ascii) {
+        long packed = 0;
+        for (int i = 0; i < ascii.length(); i++) {
+            packed = packed << 8 | ascii.charAt(i);
+        }
+        return packed;
+    }
+
+    private static final class Client {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(4096);
+        SelectionKey key;
+        ByteBuffer out;
+        String phrase;
+        int typed;
+        long tail;
+        long sentAt;
+        long dueAt;
+
+        Client(SocketChannel channel, String phrase) {
+            this.channel = channel;
+            this.phrase = phrase;
+        }
+
+        /**
+         * Prepares the request for the next keystroke, starting a new phrase once this one is typed.
+         */
+        void send(Random random, String[] phrases) throws IOException {
+            if (typed == phrase.length()) {
+                phrase = phrases[random.nextInt(phrases.length)];
+                typed = 0;
+            }
+            typed++;
+            final String request = "GET " + SuggestionGateway.PATH + "?q="
+                    + URLEncoder.encode(phrase.substring(0, typed), "UTF-8") + " HTTP/1.1\r\nHost: gateway\r\n\r\n";
+            out = ByteBuffer.wrap(request.getBytes(StandardCharsets.US_ASCII));
+            tail = 0;
+            sentAt = System.nanoTime();
+        }
+
+        /**
+         * @return {@code true} once the whole response has been read.
+         */
+        boolean read() throws IOException {
+            in.clear();
+            if (channel.read(in) < 0) {
+                throw new IOException("Gateway closed the connection");
+            }
+            for (int i = 0; i < in.position(); i++) {
+                tail = (tail << 8 | (in.get(i) & 0xff)) & 0xff_ffff_ffff_ffffL;
+            }
+            return tail == RESPONSE_END;
+        }
+    }
+}
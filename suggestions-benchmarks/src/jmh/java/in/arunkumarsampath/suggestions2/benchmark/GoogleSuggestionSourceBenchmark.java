@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import in.arunkumarsampath.suggestions2.parser.JsonSuggestionResponseParser;
+import in.arunkumarsampath.suggestions2.parser.XmlSuggestionResponseParser;
+import in.arunkumarsampath.suggestions2.source.google.GoogleSuggestionSource;
+
+/**
+ * End to end {@link GoogleSuggestionSource#getSuggestions(String)} against {@link LocalSuggestServer},
+ * covering URL building, the transport and parsing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GoogleSuggestionSourceBenchmark {
+
+    private LocalSuggestServer server;
+    private GoogleSuggestionSource xmlSource;
+    private GoogleSuggestionSource jsonSource;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new LocalSuggestServer(4);
+        xmlSource = new GoogleSuggestionSource.Builder()
+                .parser(new XmlSuggestionResponseParser(), server.urlFormat("toolbar"))
+                .build();
+        jsonSource = new GoogleSuggestionSource.Builder()
+                .parser(new JsonSuggestionResponseParser(), server.urlFormat("firefox"))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public void xml(Blackhole blackhole) {
+        xmlSource.getSuggestions("batman").blockingSubscribe(blackhole::consume);
+    }
+
+    @Benchmark
+    public void json(Blackhole blackhole) {
+        jsonSource.getSuggestions("batman").blockingSubscribe(blackhole::consume);
+    }
+}
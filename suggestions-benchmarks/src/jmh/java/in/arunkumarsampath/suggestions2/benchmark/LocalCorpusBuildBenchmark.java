@@ -0,0 +1,54 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package in.arunkumarsampath.suggestions2.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import in.arunkumarsampath.suggestions2.source.local.LocalCorpusSuggestionSource;
+
+/**
+ * Time to index a phrase list, which is also the whole setup cost of the fuzzy source.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LocalCorpusBuildBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private SyntheticCorpus corpus;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        corpus = new SyntheticCorpus(size);
+    }
+
+    @Benchmark
+    public LocalCorpusSuggestionSource build() {
+        return corpus.build();
+    }
+}
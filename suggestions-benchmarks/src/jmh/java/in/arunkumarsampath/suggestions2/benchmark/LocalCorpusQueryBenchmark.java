@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package in.arunkumarsampath.suggestions2.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import in.arunkumarsampath.suggestions2.source.local.FuzzySuggestionSource;
+import in.arunkumarsampath.suggestions2.source.local.LocalCorpusSuggestionSource;
+
+/**
+ * Query latency of {@link LocalCorpusSuggestionSource} and {@link FuzzySuggestionSource} per
+ * keystroke, draining all completions of a query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LocalCorpusQueryBenchmark {
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"b", "batm", "batmna", "btaman", "btamna", "gotham ci", "gohtam ci", "batmanbatman", "gotham city dark knight"})
+    public String query;
+
+    private LocalCorpusSuggestionSource prefix;
+    private FuzzySuggestionSource fuzzy;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        prefix = new SyntheticCorpus(size).build();
+        fuzzy = new FuzzySuggestionSource(prefix);
+    }
+
+    @Benchmark
+    public void prefix(Blackhole blackhole) {
+        prefix.getSuggestions(query).subscribe(blackhole::consume);
+    }
+
+    @Benchmark
+    public void fuzzy(Blackhole blackhole) {
+        fuzzy.getSuggestions(query).subscribe(blackhole::consume);
+    }
+}
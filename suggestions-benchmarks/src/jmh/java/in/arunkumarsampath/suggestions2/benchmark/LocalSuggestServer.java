@@ -0,0 +1,187 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+
+/**
+ * Stand-in for the Google suggest endpoint serving the recorded fixtures on the loopback interface.
+ * <p>
+ * Requests with {@code client=firefox} get the JSON fixture, every other request the XML one.
+ * When an answering source is given, JSON requests are answered with its suggestions for the
+ * {@code q} parameter instead, so that results extend the query like the real endpoint's.
+ * Responses can be delayed by a fixed latency plus a uniformly distributed jitter to stand in for
+ * a slow network.
+ * <p>
+ * Serving threads are named {@code local-suggest-server-*}, so that load programs can tell them
+ * apart from the threads being measured.
+ */
+final class LocalSuggestServer implements Closeable {
+
+    static final String THREAD_PREFIX = "local-suggest-server-";
+
+    private static final String PATH = "/complete/search";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static {
+        // Without this, headers and body are sent in separate segments and delayed ACKs add ~40ms
+        // to every keep-alive request, which would dwarf everything being measured.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] xml = Fixtures.load(Fixtures.XML);
+    private final byte[] json = Fixtures.load(Fixtures.JSON);
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final SuggestionSource<SimpleSuggestionItem> answers;
+
+    private final AtomicLong requestCount = new AtomicLong();
+
+    LocalSuggestServer(int threads) throws IOException {
+        this(threads, 0);
+    }
+
+    LocalSuggestServer(int threads, long latencyMillis) throws IOException {
+        this(threads, latencyMillis, 0, null);
+    }
+
+    /**
+     * @param threads       Number of requests served at once.
+     * @param latencyMillis Minimum time each response is held back for.
+     * @param jitterMillis  Upper bound of the random time added to {@code latencyMillis}.
+     * @param answers       Source answering JSON requests, or {@code null} to serve the fixture.
+     */
+    LocalSuggestServer(int threads,
+                       long latencyMillis,
+                       long jitterMillis,
+                       SuggestionSource<SimpleSuggestionItem> answers) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.answers = answers;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        final AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads,
+                runnable -> new Thread(runnable, THREAD_PREFIX + threadNumber.incrementAndGet()));
+        // Start every thread up front, so that the number of threads stays constant while serving.
+        ((ThreadPoolExecutor) executor).prestartAllCoreThreads();
+        server.setExecutor(executor);
+        server.createContext(PATH, this::respond);
+        server.start();
+    }
+
+    /**
+     * @param client Value of the {@code client} parameter.
+     * @return URL format accepted by {@code GoogleSuggestionSource.Builder#parser}.
+     */
+    String urlFormat(String client) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + PATH + "?client=" + client + "&q=%s";
+    }
+
+    /**
+     * @return Number of requests received.
+     */
+    long requestCount() {
+        return requestCount.get();
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        final long delayMillis = latencyMillis
+                + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+        if (delayMillis > 0) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                exchange.close();
+                return;
+            }
+        }
+        final String query = exchange.getRequestURI().getRawQuery();
+        final boolean isJson = query != null && query.contains("client=firefox");
+        final byte[] body = isJson ? (answers != null ? answer(query) : json) : xml;
+        exchange.getResponseHeaders().set("Content-Type", isJson
+                ? "text/javascript; charset=UTF-8"
+                : "text/xml; charset=UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    private byte[] answer(String rawQuery) throws UnsupportedEncodingException {
+        String value = "";
+        for (String parameter : rawQuery.split("&")) {
+            if (parameter.startsWith("q=")) {
+                value = URLDecoder.decode(parameter.substring(2), "UTF-8");
+            }
+        }
+        final List<SimpleSuggestionItem> items = answers.getSuggestions(value).toList().blockingGet();
+        final StringBuilder body = new StringBuilder("[");
+        appendJsonString(body, value);
+        body.append(",[");
+        for (int i = 0; i < items.size(); i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            appendJsonString(body, items.get(i).value());
+        }
+        return body.append("]]").toString().getBytes(UTF_8);
+    }
+
+    private static void appendJsonString(StringBuilder builder, String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        builder.append('"');
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
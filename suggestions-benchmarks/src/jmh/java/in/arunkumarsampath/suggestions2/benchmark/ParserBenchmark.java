@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import in.arunkumarsampath.suggestions2.parser.JsonSuggestionResponseParser;
+import in.arunkumarsampath.suggestions2.parser.SuggestionResponseParser;
+import in.arunkumarsampath.suggestions2.parser.XmlSuggestionResponseParser;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
+
+import static org.xmlpull.v1.XmlPullParser.END_DOCUMENT;
+import static org.xmlpull.v1.XmlPullParser.START_TAG;
+
+/**
+ * Parses the recorded responses. {@link #legacyXml(Blackhole)} is the parse loop that
+ * {@code GoogleSuggestionSource} used before parsers were introduced, kept as a baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParserBenchmark {
+
+    private static final String KXML_PARSER = "org.kxml2.io.KXmlParser";
+
+    private final byte[] xml = Fixtures.load(Fixtures.XML);
+    private final byte[] json = Fixtures.load(Fixtures.JSON);
+
+    private final SuggestionResponseParser xmlParser = new XmlSuggestionResponseParser();
+    private final SuggestionResponseParser jsonParser = new JsonSuggestionResponseParser();
+
+    @Benchmark
+    public void xml(Blackhole blackhole) {
+        parse(xmlParser, xml, blackhole);
+    }
+
+    @Benchmark
+    public void json(Blackhole blackhole) {
+        parse(jsonParser, json, blackhole);
+    }
+
+    @Benchmark
+    public void legacyXml(Blackhole blackhole) throws Exception {
+        final XmlPullParser parser = XmlPullParserFactory.newInstance(KXML_PARSER, null).newPullParser();
+        parser.setInput(new ByteArrayInputStream(xml), "UTF-8");
+        int eventType = parser.getEventType();
+        while (eventType != END_DOCUMENT) {
+            if (eventType == START_TAG && parser.getName().equalsIgnoreCase("suggestion")) {
+                blackhole.consume(new SimpleSuggestionItem(parser.getAttributeValue(0)));
+            }
+            eventType = parser.next();
+        }
+    }
+
+    private static void parse(SuggestionResponseParser parser, byte[] body, Blackhole blackhole) {
+        Flowable.<SimpleSuggestionItem>create(emitter -> {
+            parser.parse(new ByteArrayInputStream(body), "UTF-8", emitter);
+            emitter.onComplete();
+        }, BackpressureStrategy.LATEST).subscribe(blackhole::consume);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package in.arunkumarsampath.suggestions2.benchmark;
+
+import java.util.Random;
+
+import in.arunkumarsampath.suggestions2.source.local.LocalCorpusSuggestionSource;
+
+/**
+ * Deterministic phrase list that looks enough like a real query log for the local sources: words
+ * are built from a small set of syllables, so prefixes are shared heavily, and weights follow a
+ * Zipf-like curve.
+ */
+final class SyntheticCorpus {
+
+    private static final String[] SYLLABLES = {
+            "ba", "bat", "man", "mo", "bi", "le", "su", "per", "ar", "kham", "kn", "ight", "jo", "ker",
+            "go", "tham", "ro", "bin", "al", "fred", "wa", "yne", "ci", "ty", "da", "rk", "ni", "ght"
+    };
+
+    final String[] phrases;
+    final int[] weights;
+
+    SyntheticCorpus(int size) {
+        final Random random = new Random(42);
+        final StringBuilder phrase = new StringBuilder();
+        phrases = new String[size];
+        weights = new int[size];
+        for (int i = 0; i < size; i++) {
+            phrase.setLength(0);
+            for (int words = 1 + random.nextInt(3); words > 0; words--) {
+                if (phrase.length() > 0) {
+                    phrase.append(' ');
+                }
+                for (int syllables = 1 + random.nextInt(3); syllables > 0; syllables--) {
+                    phrase.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+                }
+            }
+            phrases[i] = phrase.toString();
+            weights[i] = 1_000_000 / (1 + random.nextInt(size));
+        }
+    }
+
+    LocalCorpusSuggestionSource build() {
+        final LocalCorpusSuggestionSource.Builder builder = LocalCorpusSuggestionSource.builder();
+        for (int i = 0; i < phrases.length; i++) {
+            builder.add(phrases[i], weights[i]);
+        }
+        return builder.build();
+    }
+}
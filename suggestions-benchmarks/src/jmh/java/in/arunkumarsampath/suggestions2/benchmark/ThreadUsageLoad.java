@@ -0,0 +1,111 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import in.arunkumarsampath.suggestions2.executor.SuggestionExecutor;
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import in.arunkumarsampath.suggestions2.parser.XmlSuggestionResponseParser;
+import in.arunkumarsampath.suggestions2.source.google.GoogleSuggestionSource;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Thread and memory usage of {@link GoogleSuggestionSource} under a synthetic load of 50
+ * keystrokes per second against a {@link LocalSuggestServer} with a slow response time.
+ * <p>
+ * Every keystroke is fetched and none is cancelled, the worst case for the calling threads, as
+ * with several search fields or prefetching. Requests arrive faster than the four connections per
+ * host of the transport can serve them, so with {@link Schedulers#io()} blocked threads pile up
+ * for as long as the load lasts, while a {@link SuggestionExecutor} stays at its pool size and
+ * drops the oldest waiting keystrokes instead.
+ * <p>
+ * Not a JMH benchmark, since thread count and retained heap over time are what matter here. Run
+ * with {@code ./gradlew :suggestions-benchmarks:threadUsageLoad -Pload.args="<executor|io> [seconds] [latencyMillis]"}.
+ */
+public final class ThreadUsageLoad {
+
+    private static final int KEYSTROKES_PER_SECOND = 50;
+    private static final String TYPED = "batman arkham knight";
+
+    private ThreadUsageLoad() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final boolean useExecutor = args.length == 0 || !args[0].equals("io");
+        final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        final long latencyMillis = args.length > 2 ? Long.parseLong(args[2]) : 300;
+
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicInteger keystroke = new AtomicInteger();
+
+        final SuggestionExecutor executor = new SuggestionExecutor();
+        final ScheduledExecutorService typist = Executors.newSingleThreadScheduledExecutor();
+        // Threads of the server are started up front and not counted.
+        try (LocalSuggestServer server = new LocalSuggestServer(256, latencyMillis)) {
+            final GoogleSuggestionSource source = new GoogleSuggestionSource.Builder()
+                    .parser(new XmlSuggestionResponseParser(), server.urlFormat("toolbar"))
+                    .executor(useExecutor ? executor : null)
+                    .build();
+            final int baseline = threads.getThreadCount();
+
+            typist.scheduleAtFixedRate(() -> {
+                final int typed = keystroke.getAndIncrement() % TYPED.length() + 1;
+                Flowable<SimpleSuggestionItem> suggestions = source.getSuggestions(TYPED.substring(0, typed));
+                if (!useExecutor) {
+                    suggestions = suggestions.subscribeOn(Schedulers.io());
+                }
+                suggestions.subscribe(item -> {
+                }, error -> failed.incrementAndGet(), completed::incrementAndGet);
+            }, 0, TimeUnit.SECONDS.toMicros(1) / KEYSTROKES_PER_SECOND, TimeUnit.MICROSECONDS);
+
+            System.out.printf("%s, %d keystrokes/s, %d ms latency%n",
+                    useExecutor ? "SuggestionExecutor" : "Schedulers.io()", KEYSTROKES_PER_SECOND, latencyMillis);
+            System.out.println("second  threads  retained-heap-kb  keystrokes  completed  dropped  failed");
+            int maxThreads = 0;
+            long maxRetained = 0;
+            for (int second = 1; second <= seconds; second++) {
+                Thread.sleep(1000);
+                System.gc();
+                final int threadCount = threads.getThreadCount() - baseline;
+                final long retained = memory.getHeapMemoryUsage().getUsed() / 1024;
+                maxThreads = Math.max(maxThreads, threadCount);
+                maxRetained = Math.max(maxRetained, retained);
+                System.out.printf("%6d  %7d  %16d  %10d  %9d  %7d  %6d%n",
+                        second, threadCount, retained, keystroke.get(), completed.get(),
+                        executor.droppedCount(), failed.get() - executor.droppedCount());
+            }
+            System.out.printf("max threads %d, max retained heap %d kb%n", maxThreads, maxRetained);
+        } finally {
+            typist.shutdownNow();
+            executor.shutdown();
+        }
+        // Threads of Schedulers.io() blocked on the transport would otherwise keep running.
+        System.exit(0);
+    }
+}
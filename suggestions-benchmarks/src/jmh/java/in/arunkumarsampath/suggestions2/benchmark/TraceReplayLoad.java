@@ -0,0 +1,465 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package in.arunkumarsampath.suggestions2.benchmark;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import in.arunkumarsampath.suggestions2.executor.SuggestionExecutor;
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import in.arunkumarsampath.suggestions2.metrics.SuggestionCallMetrics;
+import in.arunkumarsampath.suggestions2.parser.JsonSuggestionResponseParser;
+import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+import in.arunkumarsampath.suggestions2.source.cache.CachingSuggestionSource;
+import in.arunkumarsampath.suggestions2.source.coalesce.CoalescingSuggestionSource;
+import in.arunkumarsampath.suggestions2.source.google.GoogleSuggestionSource;
+import in.arunkumarsampath.suggestions2.source.local.LocalCorpusSuggestionSource;
+import in.arunkumarsampath.suggestions2.source.prefetch.PrefetchingSuggestionSource;
+import in.arunkumarsampath.suggestions2.transformer.AdaptiveDebounce;
+import in.arunkumarsampath.suggestions2.transformer.SuggestionsTransformer;
+import in.arunkumarsampath.suggestions2.transport.HttpUrlConnectionTransport;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.exceptions.UndeliverableException;
+import io.reactivex.plugins.RxJavaPlugins;
+import io.reactivex.processors.PublishProcessor;
+
+/**
+ * Keystroke to suggestion latency of complete suggestion pipelines, measured by replaying
+ * {@link TypingTrace typing traces} against a {@link LocalSuggestServer} with a configurable
+ * latency and jitter.
+ * <p>
+ * Every session stands for one search field with a pipeline of its own: a
+ * {@link SuggestionsTransformer} over the stack of sources built by a {@link Pipeline}, over a
+ * {@link GoogleSuggestionSource} shared by all sessions. Sessions replay traces in random order
+ * with the recorded key to key delays and pause between traces. The server answers from a corpus
+ * of the traced phrases and synthetic ones, so that results extend the query and prefetching has
+ * something to predict.
+ * <p>
+ * For each pipeline this reports
+ * <ul>
+ * <li>the number of keystrokes and the share of them answered, that is followed by suggestions for
+ * their text before the next keystroke,</li>
+ * <li>the 50th and 99th percentile of the time from an answered keystroke to its suggestions,</li>
+ * <li>the number of requests received by the server and of calls cancelled by a newer keystroke
+ * before delivering all the items taken, which are wasted,</li>
+ * <li>the number of prefetches started, if the pipeline prefetches,</li>
+ * <li>the hit rate of the in memory cache, if the pipeline has one,</li>
+ * <li>the bytes allocated by every thread except those of the server, per second and per
+ * keystroke. Threads are sampled every 100ms, so a thread that ends loses its last sample.</li>
+ * </ul>
+ * Not a JMH benchmark, since the timing of keystrokes is part of what is measured. Run with
+ * {@code ./gradlew :suggestions-benchmarks:traceReplayLoad -Pload.args="[pipelines] [sessions] [seconds] [latencyMillis] [jitterMillis] [traces] [maxSuggestions] [upstreamResults]"},
+ * where {@code pipelines} is a comma separated list of {@code plain}, {@code cached},
+ * {@code prefetch} and {@code adaptive}, {@code traces} is {@code sample}, {@code synthetic} or
+ * the path of a trace file, {@code maxSuggestions} is the number of items the transformer takes and
+ * {@code upstreamResults} the number of results the server answers with. By default all pipelines
+ * replay the bundled sample traces and take all 10 results of the server, so that the transformer
+ * cancels the source after its last item, as with the real endpoint.
+ */
+public final class TraceReplayLoad {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long TRACE_PAUSE_MILLIS = 1500;
+    private static final long SAMPLE_MILLIS = 100;
+    private static final int SYNTHETIC_TRACES = 200;
+    private static final int CORPUS_SIZE = 5000;
+
+    private TraceReplayLoad() {
+    }
+
+    /**
+     * Stack of sources under test. Add a constant to compare another configuration.
+     */
+    private enum Pipeline {
+        PLAIN {
+            @Override
+            Stack build(SuggestionSource<SimpleSuggestionItem> upstream) {
+                return new Stack(upstream, null, null, null);
+            }
+        },
+        CACHED {
+            @Override
+            Stack build(SuggestionSource<SimpleSuggestionItem> upstream) {
+                final CachingSuggestionSource<SimpleSuggestionItem> cache = new CachingSuggestionSource<>(upstream);
+                return new Stack(cache, cache, null, null);
+            }
+        },
+        PREFETCH {
+            @Override
+            Stack build(SuggestionSource<SimpleSuggestionItem> upstream) {
+                final CachingSuggestionSource<SimpleSuggestionItem> cache =
+                        new CachingSuggestionSource<>(new CoalescingSuggestionSource<>(upstream));
+                final PrefetchingSuggestionSource<SimpleSuggestionItem> prefetching =
+                        new PrefetchingSuggestionSource.Builder<>(cache).build();
+                return new Stack(prefetching, cache, prefetching, null);
+            }
+        },
+        ADAPTIVE {
+            @Override
+            Stack build(SuggestionSource<SimpleSuggestionItem> upstream) {
+                final CachingSuggestionSource<SimpleSuggestionItem> cache = new CachingSuggestionSource<>(upstream);
+                return new Stack(cache, cache, null, new AdaptiveDebounce(50, 300));
+            }
+        };
+
+        abstract Stack build(SuggestionSource<SimpleSuggestionItem> upstream);
+    }
+
+    public static void main(String[] args) throws Exception {
+        final List<Pipeline> pipelines = new ArrayList<>();
+        for (String name : (args.length > 0 ? args[0] : "plain,cached,prefetch,adaptive").split(",")) {
+            pipelines.add(Pipeline.valueOf(name.trim().toUpperCase(Locale.US)));
+        }
+        final int sessions = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        final int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        final long latencyMillis = args.length > 3 ? Long.parseLong(args[3]) : 80;
+        final long jitterMillis = args.length > 4 ? Long.parseLong(args[4]) : 60;
+        final List<TypingTrace> traces = loadTraces(args.length > 5 && !args[5].equals("sample") ? args[5] : null);
+        final int maxSuggestions = args.length > 6 ? Integer.parseInt(args[6]) : SuggestionsTransformer.DEFAULT_MAX_SUGGESTIONS;
+        final int upstreamResults = args.length > 7 ? Integer.parseInt(args[7]) : LocalCorpusSuggestionSource.DEFAULT_MAX_RESULTS;
+        // Responses aborted by a newer keystroke fail after their call was cancelled, which is
+        // expected here and already counted as cancelled.
+        RxJavaPlugins.setErrorHandler(error -> {
+            if (!(error instanceof UndeliverableException)) {
+                error.printStackTrace();
+            }
+        });
+
+        final ScheduledExecutorService typist = Executors.newSingleThreadScheduledExecutor(
+                runnable -> new Thread(runnable, "typist"));
+        try (LocalSuggestServer server = new LocalSuggestServer(4 * sessions, latencyMillis, jitterMillis, corpus(traces, upstreamResults))) {
+            System.out.printf("%d sessions, %d traces, %d ms + 0-%d ms upstream latency, %d of %d results, %d s per pipeline%n",
+                    sessions, traces.size(), latencyMillis, jitterMillis, maxSuggestions, upstreamResults, seconds);
+            System.out.println("pipeline  keystrokes  answered  p50-ms  p99-ms  requests  cancelled  prefetches  cache-hits  alloc-mb/s  alloc-kb/key");
+            for (Pipeline pipeline : pipelines) {
+                final Run run = new Run(pipeline, traces, sessions, seconds, maxSuggestions);
+                run.replay(server, typist);
+                run.print();
+            }
+        } finally {
+            typist.shutdownNow();
+        }
+        // Threads blocked on the transport after cancellation would otherwise keep running.
+        System.exit(0);
+    }
+
+    private static List<TypingTrace> loadTraces(String traces) throws IOException {
+        if ("synthetic".equals(traces)) {
+            final Random random = new Random(42);
+            final List<TypingTrace> synthetic = new ArrayList<>();
+            for (String phrase : new SyntheticCorpus(SYNTHETIC_TRACES).phrases) {
+                synthetic.add(TypingTrace.synthetic(phrase, random));
+            }
+            return synthetic;
+        }
+        try (InputStream inputStream = traces != null
+                ? new FileInputStream(traces)
+                : TraceReplayLoad.class.getClassLoader().getResourceAsStream(TypingTrace.SAMPLE)) {
+            if (inputStream == null) {
+                throw new IllegalArgumentException("Missing traces " + TypingTrace.SAMPLE);
+            }
+            final List<TypingTrace> loaded = TypingTrace.load(new InputStreamReader(inputStream, UTF_8));
+            if (loaded.isEmpty()) {
+                throw new IllegalArgumentException("No traces in " + traces);
+            }
+            return loaded;
+        }
+    }
+
+    /**
+     * Synthetic phrases plus the final text of every trace, weighted to rank first.
+     */
+    private static LocalCorpusSuggestionSource corpus(List<TypingTrace> traces, int maxResults) {
+        final SyntheticCorpus synthetic = new SyntheticCorpus(CORPUS_SIZE);
+        final LocalCorpusSuggestionSource.Builder builder = LocalCorpusSuggestionSource.builder();
+        for (int i = 0; i < synthetic.phrases.length; i++) {
+            builder.add(synthetic.phrases[i], synthetic.weights[i]);
+        }
+        for (TypingTrace trace : traces) {
+            builder.add(trace.texts[trace.size() - 1], 2_000_000);
+        }
+        return builder.maxResults(maxResults).build();
+    }
+
+    private static final class Stack {
+        final SuggestionSource<SimpleSuggestionItem> source;
+        final CachingSuggestionSource<SimpleSuggestionItem> cache;
+        final PrefetchingSuggestionSource<SimpleSuggestionItem> prefetching;
+        final AdaptiveDebounce adaptiveDebounce;
+
+        Stack(SuggestionSource<SimpleSuggestionItem> source,
+              CachingSuggestionSource<SimpleSuggestionItem> cache,
+              PrefetchingSuggestionSource<SimpleSuggestionItem> prefetching,
+              AdaptiveDebounce adaptiveDebounce) {
+            this.source = source;
+            this.cache = cache;
+            this.prefetching = prefetching;
+            this.adaptiveDebounce = adaptiveDebounce;
+        }
+    }
+
+    private static final class Run {
+        final Pipeline pipeline;
+        final List<TypingTrace> traces;
+        final int sessionCount;
+        final int seconds;
+        final int maxSuggestions;
+
+        final AtomicLong keystrokes = new AtomicLong();
+        final AtomicLong cancelled = new AtomicLong();
+        final List<Session> sessions = new ArrayList<>();
+        // Guarded by this.
+        long[] latencies = new long[1024];
+        int answered;
+
+        long requests;
+        long allocatedBytes;
+        long elapsedNanos;
+
+        Run(Pipeline pipeline, List<TypingTrace> traces, int sessionCount, int seconds, int maxSuggestions) {
+            this.pipeline = pipeline;
+            this.traces = traces;
+            this.sessionCount = sessionCount;
+            this.seconds = seconds;
+            this.maxSuggestions = maxSuggestions;
+        }
+
+        void replay(LocalSuggestServer server, ScheduledExecutorService typist) throws InterruptedException {
+            final GoogleSuggestionSource upstream = new GoogleSuggestionSource.Builder()
+                    .transport(new HttpUrlConnectionTransport(4 * sessionCount))
+                    .parser(new JsonSuggestionResponseParser(), server.urlFormat("firefox"))
+                    .metricsListener(metrics -> {
+                        // The transformer cancels the call after taking maxSuggestions items,
+                        // which uses the response in full.
+                        if (metrics.outcome() == SuggestionCallMetrics.Outcome.CANCELLED
+                                && metrics.itemCount() < maxSuggestions) {
+                            cancelled.incrementAndGet();
+                        }
+                    })
+                    .build();
+            final SuggestionExecutor executor = new SuggestionExecutor(sessionCount, sessionCount);
+            final CompositeDisposable subscriptions = new CompositeDisposable();
+            final CountDownLatch done = new CountDownLatch(sessionCount);
+            final Random random = new Random(42);
+            for (int i = 0; i < sessionCount; i++) {
+                final Session session = new Session(this, pipeline.build(upstream), new Random(random.nextLong()));
+                subscriptions.add(session.keystrokes
+                        .compose(new SuggestionsTransformer.Builder<>(session.trackedSource())
+                                .adaptiveDebounce(session.stack.adaptiveDebounce)
+                                .maxSuggestions(maxSuggestions)
+                                .executor(executor)
+                                .build())
+                        .subscribe(suggestions -> session.onSuggestions()));
+                sessions.add(session);
+            }
+
+            final AllocationSampler sampler = new AllocationSampler();
+            final ScheduledExecutorService sampling = Executors.newSingleThreadScheduledExecutor(
+                    runnable -> new Thread(runnable, "allocation-sampler"));
+            final long requestsBefore = server.requestCount();
+            final long start = System.nanoTime();
+            final long deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+            sampling.submit(sampler::start);
+            sampling.scheduleAtFixedRate(sampler::sample, SAMPLE_MILLIS, SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+            for (Session session : sessions) {
+                session.startTrace(typist, deadline, done, session.random.nextInt(1000));
+            }
+            done.await();
+            // Let the suggestions for the last keystrokes arrive.
+            Thread.sleep(TRACE_PAUSE_MILLIS);
+            sampling.submit(sampler::sample);
+            sampling.shutdown();
+            sampling.awaitTermination(5, TimeUnit.SECONDS);
+
+            elapsedNanos = System.nanoTime() - start;
+            requests = server.requestCount() - requestsBefore;
+            allocatedBytes = sampler.total;
+            subscriptions.dispose();
+            executor.shutdown();
+        }
+
+        synchronized void record(long latencyNanos) {
+            if (answered == latencies.length) {
+                latencies = Arrays.copyOf(latencies, 2 * answered);
+            }
+            latencies[answered++] = latencyNanos;
+        }
+
+        synchronized void print() {
+            final long[] sorted = Arrays.copyOf(latencies, answered);
+            Arrays.sort(sorted);
+            long hits = 0;
+            long lookups = 0;
+            long prefetches = 0;
+            boolean prefetching = false;
+            for (Session session : sessions) {
+                if (session.stack.prefetching != null) {
+                    prefetching = true;
+                    prefetches += session.stack.prefetching.prefetchCount();
+                }
+                if (session.stack.cache != null) {
+                    hits += session.stack.cache.hitCount();
+                    lookups += session.stack.cache.hitCount() + session.stack.cache.missCount();
+                }
+            }
+            final long keystrokeCount = keystrokes.get();
+            final double elapsedSeconds = elapsedNanos / 1e9;
+            System.out.printf(Locale.US, "%-8s  %10d  %7.1f%%  %6.0f  %6.0f  %8d  %9d  %10s  %10s  %10.1f  %12.1f%n",
+                    pipeline.name().toLowerCase(Locale.US),
+                    keystrokeCount,
+                    100.0 * answered / Math.max(1, keystrokeCount),
+                    percentileMillis(sorted, 0.50),
+                    percentileMillis(sorted, 0.99),
+                    requests,
+                    cancelled.get(),
+                    prefetching ? String.valueOf(prefetches) : "-",
+                    lookups > 0 ? String.format(Locale.US, "%.1f%%", 100.0 * hits / lookups) : "-",
+                    allocatedBytes / elapsedSeconds / (1024 * 1024),
+                    allocatedBytes / 1024.0 / Math.max(1, keystrokeCount));
+        }
+
+        private static double percentileMillis(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return Double.NaN;
+            }
+            final int index = Math.max(0, (int) Math.ceil(percentile * sorted.length) - 1);
+            return sorted[index] / 1e6;
+        }
+    }
+
+    private static final class Session {
+        final Run run;
+        final Stack stack;
+        final Random random;
+        final PublishProcessor<String> keystrokes = PublishProcessor.create();
+
+        // Term of the latest fetch, whose result is the next one emitted since switchMap drops
+        // the results of earlier fetches.
+        volatile String fetchedTerm;
+
+        // Guarded by this.
+        String text = "";
+        long keystrokeNanos;
+        boolean answered = true;
+
+        Session(Run run, Stack stack, Random random) {
+            this.run = run;
+            this.stack = stack;
+            this.random = random;
+        }
+
+        SuggestionSource<SimpleSuggestionItem> trackedSource() {
+            return value -> stack.source.getSuggestions(value).doOnSubscribe(subscription -> fetchedTerm = value);
+        }
+
+        void startTrace(ScheduledExecutorService typist, long deadline, CountDownLatch done, long delayMillis) {
+            final TypingTrace trace = run.traces.get(random.nextInt(run.traces.size()));
+            typist.schedule(() -> type(typist, trace, 0, deadline, done), delayMillis + trace.delaysMillis[0], TimeUnit.MILLISECONDS);
+        }
+
+        private void type(ScheduledExecutorService typist, TypingTrace trace, int index, long deadline, CountDownLatch done) {
+            final String typed = trace.texts[index];
+            synchronized (this) {
+                text = typed;
+                keystrokeNanos = System.nanoTime();
+                answered = false;
+            }
+            run.keystrokes.incrementAndGet();
+            keystrokes.onNext(typed);
+
+            if (index + 1 < trace.size()) {
+                typist.schedule(() -> type(typist, trace, index + 1, deadline, done), trace.delaysMillis[index + 1], TimeUnit.MILLISECONDS);
+            } else if (System.nanoTime() < deadline) {
+                startTrace(typist, deadline, done, TRACE_PAUSE_MILLIS);
+            } else {
+                done.countDown();
+            }
+        }
+
+        void onSuggestions() {
+            final long now = System.nanoTime();
+            final String term = fetchedTerm;
+            final long latency;
+            synchronized (this) {
+                if (answered || term == null || !term.equals(text.trim())) {
+                    return;
+                }
+                answered = true;
+                latency = now - keystrokeNanos;
+            }
+            run.record(latency);
+        }
+    }
+
+    /**
+     * Sums the bytes allocated by every thread except the server's and its own, from
+     * {@link #start()} on.
+     */
+    private static final class AllocationSampler {
+        private final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        private final Set<Long> excluded = new HashSet<>();
+        private final Map<Long, Long> allocated = new HashMap<>();
+        // Read after the sampling thread terminated.
+        long total;
+
+        void start() {
+            excluded.add(Thread.currentThread().getId());
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.getName().startsWith(LocalSuggestServer.THREAD_PREFIX)) {
+                    excluded.add(thread.getId());
+                }
+            }
+            final long[] ids = threads.getAllThreadIds();
+            final long[] bytes = threads.getThreadAllocatedBytes(ids);
+            for (int i = 0; i < ids.length; i++) {
+                allocated.put(ids[i], bytes[i]);
+            }
+        }
+
+        void sample() {
+            final long[] ids = threads.getAllThreadIds();
+            final long[] bytes = threads.getThreadAllocatedBytes(ids);
+            for (int i = 0; i < ids.length; i++) {
+                if (bytes[i] < 0 || excluded.contains(ids[i])) {
+                    continue;
+                }
+                final Long previous = allocated.put(ids[i], bytes[i]);
+                total += bytes[i] - (previous != null ? previous : 0);
+            }
+        }
+    }
+}
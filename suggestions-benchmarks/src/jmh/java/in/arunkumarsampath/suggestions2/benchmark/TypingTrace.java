@@ -0,0 +1,143 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package in.arunkumarsampath.suggestions2.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Keystrokes of one query being typed, each with the time since the previous keystroke and the
+ * text of the input field right after it.
+ * <p>
+ * Traces are read from a tab separated format with one keystroke per line,
+ * {@code <delayMillis>\t<text>}. Blank lines separate traces and lines starting with {@code #} are
+ * comments. Backspaces and corrections are simply keystrokes whose text got shorter. Traces can
+ * also be generated from a phrase with {@link #synthetic(String, Random)}.
+ */
+final class TypingTrace {
+
+    static final String SAMPLE = "traces/sample.tsv";
+
+    private static final double TYPO_RATE = 0.04;
+    private static final double WORD_PAUSE_RATE = 0.3;
+
+    final long[] delaysMillis;
+    final String[] texts;
+
+    private TypingTrace(long[] delaysMillis, String[] texts) {
+        this.delaysMillis = delaysMillis;
+        this.texts = texts;
+    }
+
+    int size() {
+        return texts.length;
+    }
+
+    long durationMillis() {
+        long duration = 0;
+        for (long delay : delaysMillis) {
+            duration += delay;
+        }
+        return duration;
+    }
+
+    static List<TypingTrace> load(Reader reader) throws IOException {
+        final List<TypingTrace> traces = new ArrayList<>();
+        final List<Long> delays = new ArrayList<>();
+        final List<String> texts = new ArrayList<>();
+        final BufferedReader lines = new BufferedReader(reader);
+        int lineNumber = 0;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            if (line.startsWith("#")) {
+                continue;
+            }
+            if (line.trim().isEmpty()) {
+                addTrace(traces, delays, texts);
+                continue;
+            }
+            final int tab = line.indexOf('\t');
+            if (tab < 0) {
+                throw new IOException("Missing tab on line " + lineNumber + ": " + line);
+            }
+            try {
+                delays.add(Long.parseLong(line.substring(0, tab)));
+            } catch (NumberFormatException e) {
+                throw new IOException("Bad delay on line " + lineNumber + ": " + line);
+            }
+            texts.add(line.substring(tab + 1));
+        }
+        addTrace(traces, delays, texts);
+        return traces;
+    }
+
+    /**
+     * Types {@code phrase} with key to key delays of 60ms plus an exponentially distributed time
+     * averaging 90ms, a longer pause before some words and an occasional typo that is corrected
+     * right away.
+     */
+    static TypingTrace synthetic(String phrase, Random random) {
+        final List<Long> delays = new ArrayList<>();
+        final List<String> texts = new ArrayList<>();
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < phrase.length(); i++) {
+            final char c = phrase.charAt(i);
+            long delay = keyDelay(random);
+            if (i > 0 && phrase.charAt(i - 1) == ' ' && random.nextDouble() < WORD_PAUSE_RATE) {
+                delay += 400 + random.nextInt(500);
+            }
+            if (c != ' ' && random.nextDouble() < TYPO_RATE) {
+                delays.add(delay);
+                texts.add(text.toString() + (char) ('a' + random.nextInt(26)));
+                delay = 150 + random.nextInt(150);
+                delays.add(delay);
+                texts.add(text.toString());
+                delay = keyDelay(random);
+            }
+            text.append(c);
+            delays.add(delay);
+            texts.add(text.toString());
+        }
+        return new TypingTrace(toArray(delays), texts.toArray(new String[0]));
+    }
+
+    private static long keyDelay(Random random) {
+        return 60 + (long) (-90 * Math.log(1 - random.nextDouble()));
+    }
+
+    private static void addTrace(List<TypingTrace> traces, List<Long> delays, List<String> texts) {
+        if (!texts.isEmpty()) {
+            traces.add(new TypingTrace(toArray(delays), texts.toArray(new String[0])));
+            delays.clear();
+            texts.clear();
+        }
+    }
+
+    private static long[] toArray(List<Long> values) {
+        final long[] array = new long[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package in.arunkumarsampath.suggestions2.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import in.arunkumarsampath.suggestions2.source.google.GoogleSuggestionSource;
+import in.arunkumarsampath.suggestions2.util.UrlTemplate;
+import in.arunkumarsampath.suggestions2.util.Util;
+
+/**
+ * Per keystroke request building and per response header parsing. The {@code legacy} benchmarks
+ * are the implementations these replaced, kept as a baseline; run with {@code -prof gc} to compare
+ * allocations as well.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UtilBenchmark {
+
+    @Param({"batman", " batman arkham knight ", "caf\u00e9 & bar #1"})
+    public String searchTerm;
+
+    @Param({"text/xml; charset=UTF-8", "text/xml"})
+    public String contentType;
+
+    private final UrlTemplate urlTemplate = new UrlTemplate(GoogleSuggestionSource.TOOLBAR_URL_FORMAT);
+
+    @Benchmark
+    public String prepareSearchTerm() {
+        return Util.prepareSearchTerm(searchTerm);
+    }
+
+    @Benchmark
+    public String legacyPrepareSearchTerm() {
+        return searchTerm.trim().replace(" ", "+");
+    }
+
+    @Benchmark
+    public String url() {
+        return urlTemplate.expand(searchTerm);
+    }
+
+    @Benchmark
+    public String legacyUrl() {
+        return String.format(GoogleSuggestionSource.TOOLBAR_URL_FORMAT, searchTerm.trim().replace(" ", "+"));
+    }
+
+    @Benchmark
+    public String extractEncoding() {
+        return Util.extractEncoding(contentType);
+    }
+
+    @Benchmark
+    public String legacyExtractEncoding() {
+        final String[] values = contentType.split(";");
+        String charset = "";
+        for (String value : values) {
+            value = value.trim().toLowerCase();
+            if (value.startsWith("charset="))
+                charset = value.substring("charset=".length());
+        }
+        if (charset.length() == 0)
+            charset = "ISO-8859-1";
+        return charset;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2;
+
+import android.support.annotation.NonNull;
+
+import java.util.List;
+
+import in.arunkumarsampath.suggestions2.executor.SuggestionExecutor;
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import in.arunkumarsampath.suggestions2.item.SuggestionItem;
+import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+import in.arunkumarsampath.suggestions2.source.google.GoogleSuggestionSource;
+import in.arunkumarsampath.suggestions2.transformer.SuggestionsTransformer;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableTransformer;
+
+/**
+ * Entry point with sensible defaults for the most common uses of the library.
+ */
+public final class RxSuggestions {
+
+    private RxSuggestions() {
+    }
+
+    /**
+     * Fetches suggestions for a single term from Google suggest.
+     *
+     * @param value Term to fetch suggestions for.
+     * @return A {@link Flowable} emitting a single list of suggestions, fetched on
+     * {@link SuggestionExecutor#shared()}.
+     */
+    @NonNull
+    public static Flowable<List<SimpleSuggestionItem>> fetch(@NonNull String value) {
+        return new GoogleSuggestionSource.Builder()
+                .executor(SuggestionExecutor.shared())
+                .build()
+                .getSuggestions(value)
+                .take(SuggestionsTransformer.DEFAULT_MAX_SUGGESTIONS)
+                .toList()
+                .toFlowable();
+    }
+
+    /**
+     * @return A transformer converting search terms into Google suggest results with default
+     * debounce, minimum length and distinct filtering.
+     * @see SuggestionsTransformer
+     */
+    @NonNull
+    public static FlowableTransformer<String, List<SimpleSuggestionItem>> suggestionsTransformer() {
+        return suggestionsTransformer(new GoogleSuggestionSource());
+    }
+
+    /**
+     * @param source Source to fetch suggestions from.
+     * @return A transformer converting search terms into results of {@code source} with default
+     * debounce, minimum length and distinct filtering.
+     * @see SuggestionsTransformer
+     */
+    @NonNull
+    public static <T extends SuggestionItem> FlowableTransformer<String, List<T>> suggestionsTransformer(@NonNull SuggestionSource<T> source) {
+        return new SuggestionsTransformer.Builder<>(source).build();
+    }
+}
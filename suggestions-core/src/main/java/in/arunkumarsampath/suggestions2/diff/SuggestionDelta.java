@@ -0,0 +1,156 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package in.arunkumarsampath.suggestions2.diff;
+
+import android.support.annotation.NonNull;
+
+import java.util.List;
+
+import in.arunkumarsampath.suggestions2.item.SuggestionItem;
+
+/**
+ * Minimal set of changes turning the previous list of suggestions into {@link #items()}.
+ * <p>
+ * Operations are recorded in the order they must be applied, with positions relative to the list
+ * as it is after the preceding operations, the same contract as RecyclerView's
+ * {@code ListUpdateCallback}. Removals come first, followed by moves and insertions, and finally
+ * changes of items whose key is unchanged but whose value differs, for example in case.
+ * <p>
+ * Instances are immutable and created by {@link SuggestionDiffer}.
+ */
+public final class SuggestionDelta<T extends SuggestionItem> {
+
+    static final int INSERT = 0;
+    static final int REMOVE = 1;
+    static final int MOVE = 2;
+    static final int CHANGE = 3;
+
+    /**
+     * Receives the operations of a delta, typically forwarding them to a list adapter.
+     */
+    public interface Callback {
+        void onInserted(int position, int count);
+
+        void onRemoved(int position, int count);
+
+        void onMoved(int fromPosition, int toPosition);
+
+        void onChanged(int position, int count);
+    }
+
+    @NonNull
+    private final List<T> items;
+    @NonNull
+    private final long[] ids;
+    /**
+     * Operations as consecutive {@code (type, first, second)} triples.
+     */
+    @NonNull
+    private final int[] operations;
+    private final int operationCount;
+
+    SuggestionDelta(@NonNull List<T> items, @NonNull long[] ids, @NonNull int[] operations, int operationCount) {
+        this.items = items;
+        this.ids = ids;
+        this.operations = operations;
+        this.operationCount = operationCount;
+    }
+
+    /**
+     * @return The new list of suggestions, unmodifiable.
+     */
+    @NonNull
+    public List<T> items() {
+        return items;
+    }
+
+    /**
+     * @return Identifier of the item at {@code position} of {@link #items()}, derived from its
+     * normalized key and therefore the same for the same suggestion across deltas.
+     */
+    public long stableId(int position) {
+        return ids[position];
+    }
+
+    /**
+     * @return Number of operations, {@code 0} if the list did not change.
+     */
+    public int operationCount() {
+        return operationCount;
+    }
+
+    public boolean isEmpty() {
+        return operationCount == 0;
+    }
+
+    /**
+     * Replays the operations in order to {@code callback}.
+     */
+    public void dispatchTo(@NonNull Callback callback) {
+        for (int i = 0; i < operationCount * 3; i += 3) {
+            final int first = operations[i + 1];
+            final int second = operations[i + 2];
+            switch (operations[i]) {
+                case INSERT:
+                    callback.onInserted(first, second);
+                    break;
+                case REMOVE:
+                    callback.onRemoved(first, second);
+                    break;
+                case MOVE:
+                    callback.onMoved(first, second);
+                    break;
+                default:
+                    callback.onChanged(first, second);
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("SuggestionDelta[");
+        dispatchTo(new Callback() {
+            @Override
+            public void onInserted(int position, int count) {
+                append("insert", position, count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                append("remove", position, count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                append("move", fromPosition, toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int count) {
+                append("change", position, count);
+            }
+
+            private void append(String name, int first, int second) {
+                if (builder.charAt(builder.length() - 1) != '[') {
+                    builder.append(", ");
+                }
+                builder.append(name).append('(').append(first).append(',').append(second).append(')');
+            }
+        });
+        return builder.append(']').toString();
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package in.arunkumarsampath.suggestions2.diff;
+
+import android.support.annotation.NonNull;
+
+import org.reactivestreams.Publisher;
+
+import java.util.List;
+
+import in.arunkumarsampath.suggestions2.item.SuggestionItem;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableTransformer;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * A {@link FlowableTransformer} turning a stream of suggestion lists, such as the output of
+ * {@link in.arunkumarsampath.suggestions2.transformer.SuggestionsTransformer}, into a stream of
+ * {@link SuggestionDelta}s against the previous list.
+ * <p>
+ * Diffing happens on {@code scheduler}, {@link Schedulers#computation()} by default, so that only
+ * applying the delta is left for the main thread. Each subscription diffs from an empty list.
+ */
+public final class SuggestionDeltaTransformer<T extends SuggestionItem> implements FlowableTransformer<List<T>, SuggestionDelta<T>> {
+
+    @NonNull
+    private final Scheduler scheduler;
+
+    public SuggestionDeltaTransformer() {
+        this(Schedulers.computation());
+    }
+
+    public SuggestionDeltaTransformer(@NonNull Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Publisher<SuggestionDelta<T>> apply(Flowable<List<T>> upstream) {
+        return Flowable.defer(() -> {
+            final SuggestionDiffer<T> differ = new SuggestionDiffer<>();
+            return upstream
+                    .observeOn(scheduler)
+                    .map(differ::diff);
+        });
+    }
+}
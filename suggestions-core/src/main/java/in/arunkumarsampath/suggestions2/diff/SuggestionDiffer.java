@@ -0,0 +1,228 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package in.arunkumarsampath.suggestions2.diff;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import in.arunkumarsampath.suggestions2.item.SuggestionItem;
+import in.arunkumarsampath.suggestions2.item.SuggestionKeys;
+
+/**
+ * Computes {@link SuggestionDelta}s between successive lists of suggestions.
+ * <p>
+ * Items are matched on their {@link SuggestionKeys key}, which is computed once per item when its
+ * list is diffed and kept for the next diff, or taken as is from items that carry it precomputed.
+ * Matching is therefore a single hash lookup per item instead of comparing every pair of items.
+ * The moves are minimal: items forming the longest run that kept its relative order stay in place
+ * and only the others are moved.
+ * <p>
+ * A differ remembers the last list it was given and is not thread safe; use one per stream of
+ * lists, for example through {@link SuggestionDeltaTransformer}.
+ */
+public final class SuggestionDiffer<T extends SuggestionItem> {
+
+    @NonNull
+    private List<T> previous = Collections.emptyList();
+    @NonNull
+    private String[] keys = new String[0];
+
+    @NonNull
+    public SuggestionDelta<T> diff(@NonNull List<? extends T> newItems) {
+        final List<T> items = Collections.unmodifiableList(new ArrayList<T>(newItems));
+        final int oldSize = keys.length;
+        final int newSize = items.size();
+        final String[] newKeys = new String[newSize];
+        final long[] ids = new long[newSize];
+
+        final Map<String, Integer> oldPositions = new HashMap<>(oldSize * 2);
+        for (int i = oldSize - 1; i >= 0; i--) {
+            oldPositions.put(keys[i], i);
+        }
+        // Old position each new item is matched to, -1 for inserted items.
+        final int[] sources = new int[newSize];
+        final boolean[] retained = new boolean[oldSize];
+        for (int j = 0; j < newSize; j++) {
+            newKeys[j] = SuggestionKeys.keyOf(items.get(j));
+            ids[j] = SuggestionKeys.idOf(items.get(j), newKeys[j]);
+            final Integer source = oldPositions.get(newKeys[j]);
+            if (source != null && !retained[source]) {
+                retained[source] = true;
+                sources[j] = source;
+            } else {
+                sources[j] = -1;
+            }
+        }
+
+        final Operations operations = new Operations();
+        // Removals, back to front so that earlier positions stay valid.
+        for (int i = oldSize - 1; i >= 0; i--) {
+            if (!retained[i]) {
+                final int end = i;
+                while (i > 0 && !retained[i - 1]) {
+                    i--;
+                }
+                operations.add(SuggestionDelta.REMOVE, i, end - i + 1);
+            }
+        }
+
+        // Simulated list, old position for retained items and -(new position + 1) for inserted ones.
+        final int[] list = new int[oldSize + newSize];
+        int size = 0;
+        for (int i = 0; i < oldSize; i++) {
+            if (retained[i]) {
+                list[size++] = i;
+            }
+        }
+
+        // Back to front, place every item that is neither inserted nor part of the longest ordered
+        // run right before its successor, which is already in place.
+        final boolean[] stable = longestIncreasingRun(sources);
+        int insertPosition = -1;
+        int insertCount = 0;
+        for (int j = newSize - 1; j >= 0; j--) {
+            if (stable[j]) {
+                continue;
+            }
+            final int anchor = j == newSize - 1 ? size : indexOf(list, size, tokenOf(sources, j + 1));
+            if (sources[j] == -1) {
+                System.arraycopy(list, anchor, list, anchor + 1, size - anchor);
+                list[anchor] = -(j + 1);
+                size++;
+                if (insertCount > 0 && insertPosition != anchor) {
+                    operations.add(SuggestionDelta.INSERT, insertPosition, insertCount);
+                    insertCount = 0;
+                }
+                insertPosition = anchor;
+                insertCount++;
+                continue;
+            }
+            if (insertCount > 0) {
+                operations.add(SuggestionDelta.INSERT, insertPosition, insertCount);
+                insertCount = 0;
+            }
+            final int from = indexOf(list, size, sources[j]);
+            final int to = from < anchor ? anchor - 1 : anchor;
+            if (from != to) {
+                move(list, from, to);
+                operations.add(SuggestionDelta.MOVE, from, to);
+            }
+        }
+        if (insertCount > 0) {
+            operations.add(SuggestionDelta.INSERT, insertPosition, insertCount);
+        }
+
+        for (int j = 0; j < newSize; j++) {
+            if (sources[j] != -1 && !sameValue(previous.get(sources[j]), items.get(j))) {
+                final int start = j;
+                while (j + 1 < newSize && sources[j + 1] != -1 && !sameValue(previous.get(sources[j + 1]), items.get(j + 1))) {
+                    j++;
+                }
+                operations.add(SuggestionDelta.CHANGE, start, j - start + 1);
+            }
+        }
+
+        keys = newKeys;
+        previous = items;
+        return new SuggestionDelta<>(items, ids, operations.values, operations.count);
+    }
+
+    private static boolean sameValue(@NonNull SuggestionItem a, @NonNull SuggestionItem b) {
+        final Object first = a.value();
+        final Object second = b.value();
+        return first == null ? second == null : first.equals(second);
+    }
+
+    private static int tokenOf(@NonNull int[] sources, int position) {
+        return sources[position] != -1 ? sources[position] : -(position + 1);
+    }
+
+    private static int indexOf(@NonNull int[] list, int size, int token) {
+        for (int i = 0; i < size; i++) {
+            if (list[i] == token) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Missing " + token);
+    }
+
+    private static void move(@NonNull int[] list, int from, int to) {
+        final int token = list[from];
+        if (from < to) {
+            System.arraycopy(list, from + 1, list, from, to - from);
+        } else {
+            System.arraycopy(list, to, list, to + 1, from - to);
+        }
+        list[to] = token;
+    }
+
+    /**
+     * Marks the matched items forming a longest run of increasing old positions, which can stay
+     * where they are.
+     */
+    @NonNull
+    private static boolean[] longestIncreasingRun(@NonNull int[] sources) {
+        final int[] tails = new int[sources.length];
+        final int[] predecessors = new int[sources.length];
+        int length = 0;
+        for (int j = 0; j < sources.length; j++) {
+            if (sources[j] == -1) {
+                continue;
+            }
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (sources[tails[middle]] < sources[j]) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            predecessors[j] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = j;
+            if (low == length) {
+                length++;
+            }
+        }
+        final boolean[] stable = new boolean[sources.length];
+        for (int j = length > 0 ? tails[length - 1] : -1; j != -1; j = predecessors[j]) {
+            stable[j] = true;
+        }
+        return stable;
+    }
+
+    private static final class Operations {
+        int[] values = new int[24];
+        int count;
+
+        void add(int type, int first, int second) {
+            if (count * 3 == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[count * 3] = type;
+            values[count * 3 + 1] = first;
+            values[count * 3 + 2] = second;
+            count++;
+        }
+    }
+}
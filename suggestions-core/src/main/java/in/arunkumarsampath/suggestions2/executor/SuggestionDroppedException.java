@@ -0,0 +1,46 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package in.arunkumarsampath.suggestions2.executor;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Error of a call dropped by a {@link SuggestionExecutor}, from a full queue or after shutdown.
+ * <p>
+ * A dropped call says nothing about its query, so it fails instead of completing empty, which
+ * caches above the executor would store as the answer. Callers that prefer an empty result, like
+ * {@link in.arunkumarsampath.suggestions2.transformer.SuggestionsTransformer}, recover from it.
+ */
+public final class SuggestionDroppedException extends RejectedExecutionException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SuggestionDroppedException(@NonNull String message) {
+        super(message);
+    }
+
+    /**
+     * Drops are expected under load and raised from the executor, so a stack trace is of no use.
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
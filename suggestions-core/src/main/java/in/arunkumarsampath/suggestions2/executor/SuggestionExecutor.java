@@ -0,0 +1,211 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.executor;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import in.arunkumarsampath.suggestions2.item.SuggestionItem;
+import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.MaybeEmitter;
+
+/**
+ * Bounded pool of threads for running blocking suggestion sources, as an alternative to
+ * {@link io.reactivex.schedulers.Schedulers#io()} whose threads grow without bound when requests
+ * arrive faster than they complete.
+ * <p>
+ * At most {@code poolSize} calls run at once and at most {@code queueCapacity} wait for a thread.
+ * When the queue is full, the oldest waiting call is dropped in favour of the new one, since a
+ * newer query makes an older one obsolete while typing. Dropped calls fail with a
+ * {@link SuggestionDroppedException}, so that caches above the executor do not store them as empty
+ * results, and are counted in {@link #droppedCount()}. Calls cancelled while waiting leave the
+ * queue right away.
+ * <p>
+ * Idle threads are stopped after {@code keepAlive}, so an idle executor holds no threads.
+ */
+public final class SuggestionExecutor {
+
+    public static final int DEFAULT_POOL_SIZE = 4;
+    public static final int DEFAULT_QUEUE_CAPACITY = 8;
+    public static final long DEFAULT_KEEP_ALIVE_SECONDS = 30;
+
+    @NonNull
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    public SuggestionExecutor() {
+        this(DEFAULT_POOL_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public SuggestionExecutor(int poolSize, int queueCapacity) {
+        this(poolSize, queueCapacity, DEFAULT_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param poolSize      Maximum number of calls running at once.
+     * @param queueCapacity Maximum number of calls waiting for a thread.
+     * @param keepAlive     Time after which an idle thread is stopped.
+     * @param unit          Unit of {@code keepAlive}.
+     */
+    public SuggestionExecutor(int poolSize, int queueCapacity, long keepAlive, @NonNull TimeUnit unit) {
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("poolSize <= 0: " + poolSize);
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity <= 0: " + queueCapacity);
+        }
+        if (keepAlive <= 0) {
+            throw new IllegalArgumentException("keepAlive <= 0: " + keepAlive);
+        }
+        executor = new ThreadPoolExecutor(poolSize, poolSize, keepAlive, unit,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new SuggestionThreadFactory(),
+                new DropOldestPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return Executor with default settings shared by every caller of this method.
+     */
+    @NonNull
+    public static SuggestionExecutor shared() {
+        return Shared.INSTANCE;
+    }
+
+    /**
+     * Subscribes to {@code flowable} on one of the threads of this executor once one is
+     * available, so that any blocking work it does on subscription runs there.
+     *
+     * @return {@code flowable}, or a flowable failing with {@link SuggestionDroppedException} if
+     * the call is dropped.
+     */
+    @NonNull
+    public <T> Flowable<T> submit(@NonNull Flowable<T> flowable) {
+        return Maybe.<Boolean>create(emitter -> {
+            final Task task = new Task(emitter);
+            emitter.setCancellable(() -> executor.remove(task));
+            submittedCount.incrementAndGet();
+            executor.execute(task);
+        }).flatMapPublisher(started -> flowable);
+    }
+
+    /**
+     * @return A source calling {@code source} on this executor.
+     */
+    @NonNull
+    public <T extends SuggestionItem> SuggestionSource<T> wrap(@NonNull SuggestionSource<T> source) {
+        return value -> submit(source.getSuggestions(value));
+    }
+
+    /**
+     * @return Number of calls submitted.
+     */
+    public long submittedCount() {
+        return submittedCount.get();
+    }
+
+    /**
+     * @return Number of calls dropped from a full queue.
+     */
+    public long droppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return Number of threads currently alive, at most {@code poolSize}.
+     */
+    public int poolSize() {
+        return executor.getPoolSize();
+    }
+
+    /**
+     * @return Number of calls waiting for a thread.
+     */
+    public int queuedCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stops accepting calls. Calls submitted afterwards are dropped, running calls are not affected.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private final class Task implements Runnable {
+        @NonNull
+        private final MaybeEmitter<Boolean> emitter;
+
+        Task(@NonNull MaybeEmitter<Boolean> emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void run() {
+            emitter.onSuccess(Boolean.TRUE);
+        }
+
+        void drop(@NonNull String reason) {
+            droppedCount.incrementAndGet();
+            emitter.onError(new SuggestionDroppedException(reason));
+        }
+    }
+
+    private static final class DropOldestPolicy implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                ((Task) runnable).drop("Executor shut down");
+                return;
+            }
+            final Runnable oldest = executor.getQueue().poll();
+            if (oldest != null) {
+                ((Task) oldest).drop("Dropped for a newer call");
+            }
+            executor.execute(runnable);
+        }
+    }
+
+    private static final class SuggestionThreadFactory implements ThreadFactory {
+        private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+        private final String prefix = "suggestions-" + POOL_NUMBER.incrementAndGet() + "-";
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            final Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private static final class Shared {
+        static final SuggestionExecutor INSTANCE = new SuggestionExecutor();
+    }
+}
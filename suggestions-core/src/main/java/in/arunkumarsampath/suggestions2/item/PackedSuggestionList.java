@@ -0,0 +1,159 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package in.arunkumarsampath.suggestions2.item;
+
+import android.support.annotation.NonNull;
+
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list of {@link ScoredSuggestionItem}s packed into a few primitive arrays, for holding
+ * large result sets or many cached results.
+ * <p>
+ * Values are stored as UTF-8 in a single byte array, next to their ids, scores and source ids. This
+ * takes a fraction of the memory of one item object, one string and one key per suggestion, at
+ * the cost of decoding the value whenever an item is read with {@link #get(int)}. Ids, scores and
+ * source ids can be read without creating an item, so deduplicating or ranking a packed list
+ * allocates nothing.
+ */
+public final class PackedSuggestionList extends AbstractList<ScoredSuggestionItem> implements RandomAccess {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @NonNull
+    private final byte[] values;
+    /**
+     * Start of each value in {@link #values}, and the end of the last one.
+     */
+    @NonNull
+    private final int[] offsets;
+    @NonNull
+    private final long[] ids;
+    @NonNull
+    private final double[] scores;
+    @NonNull
+    private final int[] sourceIds;
+    /**
+     * Bit {@code i} is set when the value of item {@code i} is its own key.
+     */
+    @NonNull
+    private final long[] normalized;
+
+    private PackedSuggestionList(@NonNull byte[] values,
+                                 @NonNull int[] offsets,
+                                 @NonNull long[] ids,
+                                 @NonNull double[] scores,
+                                 @NonNull int[] sourceIds,
+                                 @NonNull long[] normalized) {
+        this.values = values;
+        this.offsets = offsets;
+        this.ids = ids;
+        this.scores = scores;
+        this.sourceIds = sourceIds;
+        this.normalized = normalized;
+    }
+
+    /**
+     * Packs {@code items}. Items that are not {@link ScoredSuggestionItem}s get a score of
+     * {@code 0} and {@link ScoredSuggestionItem#NO_SOURCE}.
+     */
+    @NonNull
+    public static PackedSuggestionList pack(@NonNull List<? extends SuggestionItem> items) {
+        if (items instanceof PackedSuggestionList) {
+            return (PackedSuggestionList) items;
+        }
+        final int size = items.size();
+        final byte[][] encoded = new byte[size][];
+        final int[] offsets = new int[size + 1];
+        final long[] ids = new long[size];
+        final double[] scores = new double[size];
+        final int[] sourceIds = new int[size];
+        final long[] normalized = new long[(size + 63) >>> 6];
+        for (int i = 0; i < size; i++) {
+            final ScoredSuggestionItem item = ScoredSuggestionItem.of(items.get(i));
+            encoded[i] = item.value().getBytes(UTF_8);
+            offsets[i + 1] = offsets[i] + encoded[i].length;
+            ids[i] = item.id();
+            scores[i] = item.score();
+            sourceIds[i] = item.sourceId();
+            if (item.key().equals(item.value())) {
+                normalized[i >>> 6] |= 1L << i;
+            }
+        }
+        final byte[] values = new byte[offsets[size]];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(encoded[i], 0, values, offsets[i], encoded[i].length);
+        }
+        return new PackedSuggestionList(values, offsets, ids, scores, sourceIds, normalized);
+    }
+
+    /**
+     * Decodes the item at {@code index}. Its key is only computed again if it differs from the
+     * value.
+     */
+    @NonNull
+    @Override
+    public ScoredSuggestionItem get(int index) {
+        final String value = value(index);
+        final String key = (normalized[index >>> 6] & 1L << index) != 0 ? value : SuggestionKeys.normalize(value);
+        return new ScoredSuggestionItem(value, key, ids[index], scores[index], sourceIds[index]);
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    @NonNull
+    public String value(int index) {
+        checkIndex(index);
+        return new String(values, offsets[index], offsets[index + 1] - offsets[index], UTF_8);
+    }
+
+    public long id(int index) {
+        checkIndex(index);
+        return ids[index];
+    }
+
+    public double score(int index) {
+        checkIndex(index);
+        return scores[index];
+    }
+
+    public int sourceId(int index) {
+        checkIndex(index);
+        return sourceIds[index];
+    }
+
+    /**
+     * @return Approximate number of bytes held by the arrays of this list.
+     */
+    public long sizeInBytes() {
+        return values.length + 4L * offsets.length + 8L * ids.length + 8L * scores.length
+                + 4L * sourceIds.length + 8L * normalized.length;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= ids.length) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + ids.length);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package in.arunkumarsampath.suggestions2.item;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * {@link SuggestionItem} holding a {@link String} together with a score and the id of the source
+ * it came from.
+ * <p>
+ * The normalized key and id of the value, see {@link SuggestionKeys}, are computed once on
+ * construction, so deduplicating, merging and diffing these items neither normalizes nor hashes
+ * them again. When the value is already normalized, the key is the value itself and costs no
+ * memory. Items are equal when their values, scores and source ids are.
+ */
+public final class ScoredSuggestionItem implements SuggestionItem<String> {
+
+    /**
+     * Source id of items whose source is not known.
+     */
+    public static final int NO_SOURCE = -1;
+
+    @NonNull
+    private final String value;
+    @NonNull
+    private final String key;
+    private final long id;
+    private final double score;
+    private final int sourceId;
+
+    public ScoredSuggestionItem(@NonNull String value) {
+        this(value, 0, NO_SOURCE);
+    }
+
+    /**
+     * @param value    Suggested text.
+     * @param score    Score of the suggestion, higher is better.
+     * @param sourceId Id of the source the suggestion came from, or {@link #NO_SOURCE}.
+     */
+    public ScoredSuggestionItem(@NonNull String value, double score, int sourceId) {
+        this(value, SuggestionKeys.normalize(value), score, sourceId);
+    }
+
+    private ScoredSuggestionItem(@NonNull String value, @NonNull String key, double score, int sourceId) {
+        this(value, key, SuggestionKeys.hash(key), score, sourceId);
+    }
+
+    ScoredSuggestionItem(@NonNull String value, @NonNull String key, long id, double score, int sourceId) {
+        this.value = value;
+        this.key = key;
+        this.id = id;
+        this.score = score;
+        this.sourceId = sourceId;
+    }
+
+    /**
+     * @return Item with the same value, key and id for any {@link SuggestionItem}.
+     */
+    @NonNull
+    public static ScoredSuggestionItem of(@NonNull SuggestionItem item) {
+        if (item instanceof ScoredSuggestionItem) {
+            return (ScoredSuggestionItem) item;
+        }
+        return new ScoredSuggestionItem(String.valueOf(item.value()));
+    }
+
+    @Override
+    public String value() {
+        return value;
+    }
+
+    /**
+     * @return Normalized key of the value, see {@link SuggestionKeys#keyOf(SuggestionItem)}.
+     */
+    @NonNull
+    public String key() {
+        return key;
+    }
+
+    /**
+     * @return Stable id of the value, see {@link SuggestionKeys#idOf(SuggestionItem)}.
+     */
+    public long id() {
+        return id;
+    }
+
+    public double score() {
+        return score;
+    }
+
+    public int sourceId() {
+        return sourceId;
+    }
+
+    /**
+     * @return This item with {@code score}, reusing its key and id.
+     */
+    @NonNull
+    public ScoredSuggestionItem withScore(double score) {
+        return new ScoredSuggestionItem(value, key, id, score, sourceId);
+    }
+
+    /**
+     * @return This item attributed to {@code sourceId}, reusing its key and id.
+     */
+    @NonNull
+    public ScoredSuggestionItem withSourceId(int sourceId) {
+        return new ScoredSuggestionItem(value, key, id, score, sourceId);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ScoredSuggestionItem)) {
+            return false;
+        }
+        final ScoredSuggestionItem item = (ScoredSuggestionItem) other;
+        return id == item.id
+                && sourceId == item.sourceId
+                && Double.compare(score, item.score) == 0
+                && value.equals(item.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (id ^ (id >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package in.arunkumarsampath.suggestions2.item;
+
+import android.support.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * Normalized keys and 64 bit ids of {@link SuggestionItem}s, shared by everything that deduplicates
+ * or matches items so that they agree on which items are the same.
+ * <p>
+ * The key of an item is its value lower cased independently of the default locale, its id the FNV-1a hash of the key. Both are
+ * precomputed by {@link ScoredSuggestionItem} and {@link PackedSuggestionList}, and computed on
+ * every call for other items.
+ */
+public final class SuggestionKeys {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private SuggestionKeys() {
+    }
+
+    /**
+     * @return Key {@code item} is deduplicated and matched on.
+     */
+    @NonNull
+    public static String keyOf(@NonNull SuggestionItem item) {
+        if (item instanceof ScoredSuggestionItem) {
+            return ((ScoredSuggestionItem) item).key();
+        }
+        return normalize(String.valueOf(item.value()));
+    }
+
+    /**
+     * @return Stable id of {@code item}, equal for items with equal keys.
+     */
+    public static long idOf(@NonNull SuggestionItem item) {
+        return idOf(item, keyOf(item));
+    }
+
+    /**
+     * @param key {@link #keyOf(SuggestionItem)} of {@code item}, when the caller already has it.
+     * @return Stable id of {@code item}, equal for items with equal keys.
+     */
+    public static long idOf(@NonNull SuggestionItem item, @NonNull String key) {
+        if (item instanceof ScoredSuggestionItem) {
+            return ((ScoredSuggestionItem) item).id();
+        }
+        return hash(key);
+    }
+
+    /**
+     * @return Key of an item with {@code value}. Already normalized values are returned as is.
+     */
+    @NonNull
+    public static String normalize(@NonNull String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return 64 bit FNV-1a hash of {@code key}.
+     */
+    public static long hash(@NonNull CharSequence key) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.metrics;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.Flowable;
+
+/**
+ * Collects the measurements of one suggestion call and reports them to a
+ * {@link SuggestionMetricsListener} exactly once.
+ * <p>
+ * Create one per subscription, for example inside {@link Flowable#defer}, and hook it into the
+ * call with {@link #instrument(Flowable)}. Sources that know more about the call can report the
+ * additional phases through the remaining methods.
+ */
+public final class CallRecorder {
+
+    @NonNull
+    private final SuggestionMetricsListener listener;
+    @NonNull
+    private final String source;
+    @NonNull
+    private final String query;
+
+    private final long start = System.nanoTime();
+    private final AtomicBoolean reported = new AtomicBoolean();
+
+    private volatile long connectNanos = -1;
+    private volatile long firstByteNanos = -1;
+    private volatile long firstItemNanos = -1;
+    private volatile long bytesRead = -1;
+    private volatile int itemCount;
+    private volatile boolean truncated;
+
+    public CallRecorder(@NonNull SuggestionMetricsListener listener, @NonNull String source, @NonNull String query) {
+        this.listener = listener;
+        this.source = source;
+        this.query = query;
+    }
+
+    /**
+     * Counts emitted items and reports the metrics when {@code call} terminates or is cancelled.
+     */
+    @NonNull
+    public <T> Flowable<T> instrument(@NonNull Flowable<T> call) {
+        return call.doOnNext(item -> onItem())
+                .doOnComplete(() -> report(truncated ? SuggestionCallMetrics.Outcome.TRUNCATED : SuggestionCallMetrics.Outcome.COMPLETED, null))
+                .doOnError(throwable -> report(SuggestionCallMetrics.Outcome.FAILED, throwable))
+                .doOnCancel(() -> report(SuggestionCallMetrics.Outcome.CANCELLED, null));
+    }
+
+    /**
+     * Records connection phases, see {@link SuggestionCallMetrics#connectNanos()} and
+     * {@link SuggestionCallMetrics#firstByteNanos()}.
+     */
+    public void onResponse(long connectNanos, long firstByteNanos) {
+        this.connectNanos = connectNanos;
+        this.firstByteNanos = firstByteNanos;
+    }
+
+    /**
+     * Marks the call as having stopped before all suggestions were read.
+     */
+    public void onTruncated() {
+        truncated = true;
+    }
+
+    /**
+     * @return {@code body} wrapped so that bytes read from it are counted.
+     */
+    @NonNull
+    public InputStream countBytes(@NonNull InputStream body) {
+        bytesRead = 0;
+        return new FilterInputStream(body) {
+            @Override
+            public int read() throws IOException {
+                final int read = super.read();
+                if (read != -1) {
+                    bytesRead++;
+                }
+                return read;
+            }
+
+            @Override
+            public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+                final int read = super.read(buffer, offset, length);
+                if (read > 0) {
+                    bytesRead += read;
+                }
+                return read;
+            }
+        };
+    }
+
+    private void onItem() {
+        if (itemCount++ == 0) {
+            firstItemNanos = System.nanoTime() - start;
+        }
+    }
+
+    private void report(@NonNull SuggestionCallMetrics.Outcome outcome, @Nullable Throwable error) {
+        if (reported.compareAndSet(false, true)) {
+            listener.onCallFinished(new SuggestionCallMetrics(source, query, outcome, error,
+                    connectNanos, firstByteNanos, firstItemNanos, System.nanoTime() - start,
+                    bytesRead, itemCount));
+        }
+    }
+}
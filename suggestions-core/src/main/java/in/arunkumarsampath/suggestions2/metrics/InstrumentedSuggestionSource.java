@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.metrics;
+
+import android.support.annotation.NonNull;
+
+import in.arunkumarsampath.suggestions2.item.SuggestionItem;
+import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+import io.reactivex.Flowable;
+
+/**
+ * A {@link SuggestionSource} decorator reporting {@link SuggestionCallMetrics} for every call to the
+ * wrapped source.
+ * <p>
+ * Only phases visible from outside the source are measured: time to first item, total time, item
+ * count and the outcome. Sources that perform I/O, such as
+ * {@link in.arunkumarsampath.suggestions2.source.google.GoogleSuggestionSource}, can be given a
+ * listener directly to also report connection phases and bytes read.
+ */
+public final class InstrumentedSuggestionSource<T extends SuggestionItem> implements SuggestionSource<T> {
+
+    @NonNull
+    private final String name;
+    @NonNull
+    private final SuggestionSource<T> source;
+    @NonNull
+    private final SuggestionMetricsListener listener;
+
+    /**
+     * @param name     Name reported as {@link SuggestionCallMetrics#source()}.
+     * @param source   Source to instrument.
+     * @param listener Listener to report to.
+     */
+    public InstrumentedSuggestionSource(@NonNull String name,
+                                        @NonNull SuggestionSource<T> source,
+                                        @NonNull SuggestionMetricsListener listener) {
+        this.name = name;
+        this.source = source;
+        this.listener = listener;
+    }
+
+    @NonNull
+    @Override
+    public Flowable<T> getSuggestions(@NonNull String value) {
+        if (listener == SuggestionMetricsListener.NONE) {
+            return source.getSuggestions(value);
+        }
+        return Flowable.defer(() -> new CallRecorder(listener, name, value).instrument(source.getSuggestions(value)));
+    }
+}
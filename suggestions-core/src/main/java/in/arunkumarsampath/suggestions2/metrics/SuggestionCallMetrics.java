@@ -0,0 +1,163 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.metrics;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Measurements of a single {@code getSuggestions} call.
+ * <p>
+ * Durations are in nanoseconds and measured from the moment the call was subscribed to. Phases
+ * that do not apply to the source or were not reached are {@code -1}.
+ */
+public final class SuggestionCallMetrics {
+
+    public enum Outcome {
+        /**
+         * All suggestions were emitted.
+         */
+        COMPLETED,
+        /**
+         * The call completed early because downstream stopped requesting items.
+         */
+        TRUNCATED,
+        /**
+         * Downstream cancelled the call.
+         */
+        CANCELLED,
+        /**
+         * The call failed, see {@link #error()}.
+         */
+        FAILED
+    }
+
+    @NonNull
+    private final String source;
+    @NonNull
+    private final String query;
+    @NonNull
+    private final Outcome outcome;
+    @Nullable
+    private final Throwable error;
+    private final long connectNanos;
+    private final long firstByteNanos;
+    private final long firstItemNanos;
+    private final long totalNanos;
+    private final long bytesRead;
+    private final int itemCount;
+
+    SuggestionCallMetrics(@NonNull String source,
+                          @NonNull String query,
+                          @NonNull Outcome outcome,
+                          @Nullable Throwable error,
+                          long connectNanos,
+                          long firstByteNanos,
+                          long firstItemNanos,
+                          long totalNanos,
+                          long bytesRead,
+                          int itemCount) {
+        this.source = source;
+        this.query = query;
+        this.outcome = outcome;
+        this.error = error;
+        this.connectNanos = connectNanos;
+        this.firstByteNanos = firstByteNanos;
+        this.firstItemNanos = firstItemNanos;
+        this.totalNanos = totalNanos;
+        this.bytesRead = bytesRead;
+        this.itemCount = itemCount;
+    }
+
+    /**
+     * @return Name of the instrumented source.
+     */
+    @NonNull
+    public String source() {
+        return source;
+    }
+
+    @NonNull
+    public String query() {
+        return query;
+    }
+
+    @NonNull
+    public Outcome outcome() {
+        return outcome;
+    }
+
+    @Nullable
+    public Throwable error() {
+        return error;
+    }
+
+    /**
+     * @return Time spent establishing the connection.
+     */
+    public long connectNanos() {
+        return connectNanos;
+    }
+
+    /**
+     * @return Time from the connection being established until the response headers arrived.
+     */
+    public long firstByteNanos() {
+        return firstByteNanos;
+    }
+
+    /**
+     * @return Time until the first suggestion was emitted.
+     */
+    public long firstItemNanos() {
+        return firstItemNanos;
+    }
+
+    /**
+     * @return Time until the call terminated.
+     */
+    public long totalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return Number of response body bytes read, or {@code -1} if the source does not read a body.
+     */
+    public long bytesRead() {
+        return bytesRead;
+    }
+
+    public int itemCount() {
+        return itemCount;
+    }
+
+    @Override
+    public String toString() {
+        return "SuggestionCallMetrics{" +
+                "source='" + source + '\'' +
+                ", query='" + query + '\'' +
+                ", outcome=" + outcome +
+                ", error=" + error +
+                ", connectNanos=" + connectNanos +
+                ", firstByteNanos=" + firstByteNanos +
+                ", firstItemNanos=" + firstItemNanos +
+                ", totalNanos=" + totalNanos +
+                ", bytesRead=" + bytesRead +
+                ", itemCount=" + itemCount +
+                '}';
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.metrics;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Receives {@link SuggestionCallMetrics} for every finished suggestion call of an instrumented
+ * source.
+ * <p>
+ * Called synchronously on the thread on which the call terminated, so implementations should
+ * only record the metrics and return quickly.
+ */
+public interface SuggestionMetricsListener {
+
+    /**
+     * Listener that disables instrumentation. Sources configured with it skip all measurements.
+     */
+    SuggestionMetricsListener NONE = metrics -> {
+    };
+
+    void onCallFinished(@NonNull SuggestionCallMetrics metrics);
+}
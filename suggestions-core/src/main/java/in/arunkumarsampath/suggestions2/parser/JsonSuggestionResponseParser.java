@@ -0,0 +1,169 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.parser;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import io.reactivex.FlowableEmitter;
+
+/**
+ * Parses the JSON format returned for {@code client=firefox}, an array whose first element is the
+ * query and whose second element is the array of suggestions:
+ * <pre>
+ * ["bat",["batman","bathroom"]]
+ * </pre>
+ * Only the suggestions array is read, one string at a time, without building a document tree.
+ * Anything following it is left unread.
+ */
+public final class JsonSuggestionResponseParser implements SuggestionResponseParser {
+
+    private static final int BUFFER_SIZE = 512;
+
+    @Override
+    public boolean parse(@NonNull InputStream inputStream,
+                         @NonNull String encoding,
+                         @NonNull FlowableEmitter<SimpleSuggestionItem> emitter) throws Exception {
+        final Cursor cursor = new Cursor(new InputStreamReader(inputStream, encoding));
+        final StringBuilder builder = new StringBuilder(32);
+
+        cursor.expect('[');
+        cursor.readString(builder); // Echoed query.
+        cursor.expect(',');
+        cursor.expect('[');
+        if (cursor.peekNonWhitespace() == ']') {
+            return true;
+        }
+        while (canEmit(emitter)) {
+            builder.setLength(0);
+            cursor.readString(builder);
+            emitter.onNext(new SimpleSuggestionItem(builder.toString()));
+            if (cursor.nextNonWhitespace() == ']') {
+                return true;
+            }
+            cursor.unread();
+            cursor.expect(',');
+        }
+        return false;
+    }
+
+    private static boolean canEmit(FlowableEmitter<SimpleSuggestionItem> emitter) {
+        return !emitter.isCancelled() && emitter.requested() > 0;
+    }
+
+    /**
+     * Minimal buffered reader over the response with just enough JSON lexing for the format above.
+     */
+    private static final class Cursor {
+        private final Reader reader;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private int position;
+        private int limit;
+
+        Cursor(Reader reader) {
+            this.reader = reader;
+        }
+
+        void expect(char expected) throws IOException {
+            final char actual = nextNonWhitespace();
+            if (actual != expected) {
+                throw new IOException("Expected '" + expected + "' but was '" + actual + "'");
+            }
+        }
+
+        char peekNonWhitespace() throws IOException {
+            final char c = nextNonWhitespace();
+            unread();
+            return c;
+        }
+
+        void unread() {
+            position--;
+        }
+
+        char nextNonWhitespace() throws IOException {
+            char c;
+            do {
+                c = next();
+            } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+            return c;
+        }
+
+        void readString(StringBuilder out) throws IOException {
+            expect('"');
+            while (true) {
+                final char c = next();
+                if (c == '"') {
+                    return;
+                }
+                if (c != '\\') {
+                    out.append(c);
+                    continue;
+                }
+                final char escaped = next();
+                switch (escaped) {
+                    case 'b':
+                        out.append('\b');
+                        break;
+                    case 'f':
+                        out.append('\f');
+                        break;
+                    case 'n':
+                        out.append('\n');
+                        break;
+                    case 'r':
+                        out.append('\r');
+                        break;
+                    case 't':
+                        out.append('\t');
+                        break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            final int digit = Character.digit(next(), 16);
+                            if (digit == -1) {
+                                throw new IOException("Malformed unicode escape");
+                            }
+                            code = (code << 4) | digit;
+                        }
+                        out.append((char) code);
+                        break;
+                    default:
+                        // \", \\ and \/ stand for themselves.
+                        out.append(escaped);
+                }
+            }
+        }
+
+        private char next() throws IOException {
+            if (position == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                if (limit <= 0) {
+                    limit = 0;
+                    throw new IOException("Unexpected end of response");
+                }
+                position = 0;
+            }
+            return buffer[position++];
+        }
+    }
+}
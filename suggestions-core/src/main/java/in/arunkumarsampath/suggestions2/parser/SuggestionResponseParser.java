@@ -0,0 +1,46 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.parser;
+
+import android.support.annotation.NonNull;
+
+import java.io.InputStream;
+
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import io.reactivex.FlowableEmitter;
+
+/**
+ * Parses a suggestion response body into {@link SimpleSuggestionItem}s.
+ * <p>
+ * Implementations must emit items only while the emitter is not cancelled and downstream has
+ * outstanding requests, and return as soon as either is no longer the case. Terminating the
+ * emitter is left to the caller. Implementations must be safe for use from multiple threads.
+ */
+public interface SuggestionResponseParser {
+
+    /**
+     * @param inputStream Response body.
+     * @param encoding    Character encoding of the body.
+     * @param emitter     Emitter to deliver parsed items to.
+     * @return {@code true} if the whole response was parsed, {@code false} if parsing stopped
+     * early because the emitter was cancelled or had no outstanding requests.
+     * @throws Exception If the body could not be read or parsed.
+     */
+    boolean parse(@NonNull InputStream inputStream,
+                  @NonNull String encoding,
+                  @NonNull FlowableEmitter<SimpleSuggestionItem> emitter) throws Exception;
+}
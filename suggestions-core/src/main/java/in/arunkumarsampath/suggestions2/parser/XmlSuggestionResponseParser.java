@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.parser;
+
+import android.support.annotation.NonNull;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.InputStream;
+import java.io.Reader;
+
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import io.reactivex.FlowableEmitter;
+
+import static org.xmlpull.v1.XmlPullParser.END_DOCUMENT;
+import static org.xmlpull.v1.XmlPullParser.START_TAG;
+
+/**
+ * Parses the XML format returned for {@code client=toolbar}, where every suggestion is the
+ * {@code data} attribute of a {@code suggestion} element.
+ * <p>
+ * The {@link XmlPullParserFactory} is looked up once and each thread reuses its own
+ * {@link XmlPullParser}, so parsing a response does not allocate a new parser.
+ */
+public final class XmlSuggestionResponseParser implements SuggestionResponseParser {
+
+    private static final String SUGGESTION = "suggestion";
+
+    /**
+     * Parser used when no XmlPull implementation is registered, as is the case on a plain JVM
+     * with kXML on the classpath. Android ships the same implementation.
+     */
+    private static final String KXML_PARSER = "org.kxml2.io.KXmlParser";
+
+    private static volatile XmlPullParserFactory factory;
+
+    private static final ThreadLocal<XmlPullParser> PARSERS = new ThreadLocal<>();
+
+    @Override
+    public boolean parse(@NonNull InputStream inputStream,
+                         @NonNull String encoding,
+                         @NonNull FlowableEmitter<SimpleSuggestionItem> emitter) throws Exception {
+        final XmlPullParser xmlParser = acquireParser();
+        try {
+            xmlParser.setInput(inputStream, encoding);
+
+            int eventType = xmlParser.getEventType();
+
+            while (isFlowableEmissionValid(emitter, eventType)) { // Perform back pressure aware iteration.
+                if (eventType == START_TAG && isSuggestion(xmlParser.getName())) {
+                    final String suggestion = xmlParser.getAttributeValue(0);
+                    emitter.onNext(new SimpleSuggestionItem(suggestion));
+                }
+                eventType = xmlParser.next();
+            }
+            return eventType == END_DOCUMENT;
+        } finally {
+            // Do not keep the response reachable from the thread local parser.
+            xmlParser.setInput((Reader) null);
+            PARSERS.set(xmlParser);
+        }
+    }
+
+    /**
+     * Method to check if XML iteration can be still performed.
+     * <p>
+     * Checks if {@link io.reactivex.Flowable} is still valid based on:
+     * <ul>
+     * <li>Downstream is actively requesting further elements.</li>
+     * <li>XML document end has not reached.</li>
+     * </ul>
+     *
+     * @param emitter   The emitter to currently handling events.
+     * @param eventType XML document event type.
+     * @return {@code true} if Flowable emission is valid.
+     */
+    private static boolean isFlowableEmissionValid(FlowableEmitter<SimpleSuggestionItem> emitter, int eventType) {
+        return eventType != END_DOCUMENT && !emitter.isCancelled() && emitter.requested() > 0;
+    }
+
+    /**
+     * Matches the tag name without a case insensitive comparison for the common exact case and
+     * rejects tags of different length, which is every other tag in the response, immediately.
+     */
+    private static boolean isSuggestion(String name) {
+        return name != null
+                && name.length() == SUGGESTION.length()
+                && (name.equals(SUGGESTION) || name.equalsIgnoreCase(SUGGESTION));
+    }
+
+    /**
+     * Takes this thread's parser, leaving none behind so that a parse started from within
+     * {@code onNext} on the same thread gets a parser of its own.
+     */
+    @NonNull
+    private static XmlPullParser acquireParser() throws XmlPullParserException {
+        final XmlPullParser xmlParser = PARSERS.get();
+        if (xmlParser == null) {
+            return factory().newPullParser();
+        }
+        PARSERS.set(null);
+        return xmlParser;
+    }
+
+    @NonNull
+    private static XmlPullParserFactory factory() throws XmlPullParserException {
+        XmlPullParserFactory result = factory;
+        if (result == null) {
+            synchronized (XmlSuggestionResponseParser.class) {
+                result = factory;
+                if (result == null) {
+                    try {
+                        result = XmlPullParserFactory.newInstance();
+                    } catch (XmlPullParserException e) {
+                        result = XmlPullParserFactory.newInstance(KXML_PARSER, null);
+                    }
+                    factory = result;
+                }
+            }
+        }
+        return result;
+    }
+}
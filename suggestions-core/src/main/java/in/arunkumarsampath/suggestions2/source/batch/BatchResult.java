@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package in.arunkumarsampath.suggestions2.source.batch;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of resolving a single query of a batch: the suggestions for {@link #query()}, or the
+ * error that prevented resolving it.
+ */
+public final class BatchResult<T> {
+
+    @NonNull
+    private final String query;
+    @NonNull
+    private final List<T> items;
+    @Nullable
+    private final Throwable error;
+
+    private BatchResult(@NonNull String query, @NonNull List<T> items, @Nullable Throwable error) {
+        this.query = query;
+        this.items = items;
+        this.error = error;
+    }
+
+    /**
+     * @param items Suggestions for {@code query}, copied defensively.
+     */
+    @NonNull
+    public static <T> BatchResult<T> success(@NonNull String query, @NonNull List<T> items) {
+        return new BatchResult<>(query, Collections.unmodifiableList(new ArrayList<>(items)), null);
+    }
+
+    @NonNull
+    public static <T> BatchResult<T> failure(@NonNull String query, @NonNull Throwable error) {
+        return new BatchResult<>(query, Collections.<T>emptyList(), error);
+    }
+
+    /**
+     * @return Query as passed to the batch.
+     */
+    @NonNull
+    public String query() {
+        return query;
+    }
+
+    /**
+     * @return Suggestions for the query, empty if it failed.
+     */
+    @NonNull
+    public List<T> items() {
+        return items;
+    }
+
+    /**
+     * @return Error that prevented resolving the query, {@code null} if it succeeded.
+     */
+    @Nullable
+    public Throwable error() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult[" + query + ", " + (error == null ? items.size() + " items" : error) + "]";
+    }
+}
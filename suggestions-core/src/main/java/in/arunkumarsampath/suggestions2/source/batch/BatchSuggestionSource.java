@@ -0,0 +1,47 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package in.arunkumarsampath.suggestions2.source.batch;
+
+import android.support.annotation.NonNull;
+
+import java.util.Collection;
+
+import in.arunkumarsampath.suggestions2.item.SuggestionItem;
+import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+import io.reactivex.Flowable;
+
+/**
+ * A {@link SuggestionSource} that resolves many queries at once more efficiently than calling
+ * {@link #getSuggestions(String)} for each of them, for example by answering from memory in a
+ * single pass.
+ * <p>
+ * Any source can be batched with {@link Batches#getSuggestionsBatch(SuggestionSource, Collection)},
+ * which uses this interface when implemented, or run in parallel with
+ * {@link ParallelBatchSuggestionSource}.
+ */
+public interface BatchSuggestionSource<T extends SuggestionItem> extends SuggestionSource<T> {
+
+    /**
+     * Resolves every query of {@code queries}. A query that fails results in a failed
+     * {@link BatchResult} rather than an error, so the remaining queries are still resolved.
+     *
+     * @return One result per query, in an order defined by the implementation.
+     */
+    @NonNull
+    Flowable<BatchResult<T>> getSuggestionsBatch(@NonNull Collection<String> queries);
+}
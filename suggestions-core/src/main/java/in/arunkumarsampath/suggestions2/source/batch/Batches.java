@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package in.arunkumarsampath.suggestions2.source.batch;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import in.arunkumarsampath.suggestions2.item.SuggestionItem;
+import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+import io.reactivex.Flowable;
+
+/**
+ * Helpers for resolving batches of queries with any {@link SuggestionSource}.
+ */
+public final class Batches {
+
+    private Batches() {
+    }
+
+    /**
+     * Resolves {@code queries} with {@code source}, natively if it is a
+     * {@link BatchSuggestionSource} and otherwise one query after another in order.
+     */
+    @NonNull
+    @SuppressWarnings("unchecked")
+    public static <T extends SuggestionItem> Flowable<BatchResult<T>> getSuggestionsBatch(@NonNull SuggestionSource<T> source,
+                                                                                         @NonNull Collection<String> queries) {
+        if (source instanceof BatchSuggestionSource) {
+            return ((BatchSuggestionSource<T>) source).getSuggestionsBatch(queries);
+        }
+        return Flowable.defer(() -> Flowable.fromIterable(new ArrayList<>(queries)))
+                .concatMap(query -> resolve(source, query));
+    }
+
+    /**
+     * @return A flowable emitting the single result of resolving {@code query} with {@code source}.
+     */
+    @NonNull
+    public static <T extends SuggestionItem> Flowable<BatchResult<T>> resolve(@NonNull SuggestionSource<T> source,
+                                                                             @NonNull String query) {
+        return Flowable.defer(() -> source.getSuggestions(query))
+                .toList()
+                .map(items -> BatchResult.success(query, items))
+                .onErrorReturn(error -> BatchResult.<T>failure(query, error))
+                .toFlowable();
+    }
+}
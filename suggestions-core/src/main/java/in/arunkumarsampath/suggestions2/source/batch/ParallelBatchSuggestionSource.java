@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package in.arunkumarsampath.suggestions2.source.batch;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import in.arunkumarsampath.suggestions2.item.SuggestionItem;
+import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * A {@link BatchSuggestionSource} that resolves the queries of a batch by calling a wrapped
+ * source for up to {@code maxConcurrency} queries at once, each subscribed to on
+ * {@code scheduler}.
+ * <p>
+ * Results are emitted as queries complete, or in the order of the queries when {@code ordered}
+ * is set, in which case a slow query holds back the results after it but not their resolution.
+ * Single queries are passed through to the wrapped source unchanged.
+ * <p>
+ * Meant for offline evaluation and cache warming. For the latter, wrap the network source in this
+ * and that in a {@link in.arunkumarsampath.suggestions2.source.cache.CachingSuggestionSource},
+ * whose batches then fetch their misses in parallel.
+ */
+public final class ParallelBatchSuggestionSource<T extends SuggestionItem> implements BatchSuggestionSource<T> {
+
+    public static final int DEFAULT_MAX_CONCURRENCY = 4;
+
+    @NonNull
+    private final SuggestionSource<T> source;
+    private final int maxConcurrency;
+    private final boolean ordered;
+    @NonNull
+    private final Scheduler scheduler;
+
+    public ParallelBatchSuggestionSource(@NonNull SuggestionSource<T> source) {
+        this(source, DEFAULT_MAX_CONCURRENCY, false, Schedulers.io());
+    }
+
+    /**
+     * @param source         Source to resolve queries with.
+     * @param maxConcurrency Maximum number of queries resolved at once.
+     * @param ordered        Whether results are emitted in the order of the queries.
+     * @param scheduler      Scheduler each query is subscribed to on. At most
+     *                       {@code maxConcurrency} of its threads are used at once.
+     */
+    public ParallelBatchSuggestionSource(@NonNull SuggestionSource<T> source,
+                                         int maxConcurrency,
+                                         boolean ordered,
+                                         @NonNull Scheduler scheduler) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency <= 0: " + maxConcurrency);
+        }
+        this.source = source;
+        this.maxConcurrency = maxConcurrency;
+        this.ordered = ordered;
+        this.scheduler = scheduler;
+    }
+
+    @NonNull
+    @Override
+    public Flowable<T> getSuggestions(@NonNull String value) {
+        return source.getSuggestions(value);
+    }
+
+    @NonNull
+    @Override
+    public Flowable<BatchResult<T>> getSuggestionsBatch(@NonNull Collection<String> queries) {
+        final Flowable<String> batch = Flowable.defer(() -> Flowable.fromIterable(new ArrayList<>(queries)));
+        if (ordered) {
+            return batch.concatMapEager(query -> Batches.resolve(source, query).subscribeOn(scheduler), maxConcurrency, 1);
+        }
+        return batch.flatMap(query -> Batches.resolve(source, query).subscribeOn(scheduler), maxConcurrency);
+    }
+}
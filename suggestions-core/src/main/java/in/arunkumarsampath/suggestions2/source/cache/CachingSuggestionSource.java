@@ -0,0 +1,354 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.source.cache;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import in.arunkumarsampath.suggestions2.item.PackedSuggestionList;
+import in.arunkumarsampath.suggestions2.item.ScoredSuggestionItem;
+import in.arunkumarsampath.suggestions2.item.SuggestionItem;
+import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+import in.arunkumarsampath.suggestions2.source.batch.BatchResult;
+import in.arunkumarsampath.suggestions2.source.batch.BatchSuggestionSource;
+import in.arunkumarsampath.suggestions2.source.batch.Batches;
+import in.arunkumarsampath.suggestions2.util.Util;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * A {@link SuggestionSource} decorator that remembers the results of a wrapped source in a size
+ * bounded, time expiring in memory cache.
+ * <p>
+ * Entries are keyed on the search term normalized by {@link Util#prepareSearchTerm(String)} so
+ * that {@code "batman "} and {@code "batman"} share the same entry. When an entry is present and
+ * has not expired, it is replayed without subscribing to the wrapped source. Otherwise the wrapped
+ * source is drained completely and the result is stored before being emitted, since a partially
+ * requested result cannot be told apart from a complete one.
+ * <p>
+ * Least recently used entries are evicted once {@code maxSize} is exceeded. Results made up of
+ * {@link ScoredSuggestionItem}s are stored as a {@link PackedSuggestionList}, which takes a fraction
+ * of their memory and decodes items as they are replayed.
+ * <p>
+ * Batches are answered natively: cached queries are emitted right away, ahead of the misses, which
+ * are passed to the wrapped source as one batch without repeats, see
+ * {@link #getSuggestionsBatch(Collection)}.
+ */
+public final class CachingSuggestionSource<T extends SuggestionItem> implements BatchSuggestionSource<T> {
+
+    public static final int DEFAULT_MAX_SIZE = 64;
+    public static final long DEFAULT_TTL_MINUTES = 5;
+
+    @NonNull
+    private final SuggestionSource<T> source;
+    private final int maxSize;
+    private final long ttlMillis;
+    @NonNull
+    private final Scheduler clock;
+
+    private final Map<String, CacheEntry<T>> cache;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public CachingSuggestionSource(@NonNull SuggestionSource<T> source) {
+        this(source, DEFAULT_MAX_SIZE, DEFAULT_TTL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public CachingSuggestionSource(@NonNull SuggestionSource<T> source, int maxSize, long ttl, @NonNull TimeUnit unit) {
+        this(source, maxSize, ttl, unit, Schedulers.computation());
+    }
+
+    /**
+     * @param source  The source whose results should be cached.
+     * @param maxSize Maximum number of search terms to remember.
+     * @param ttl     Duration for which a cached result is considered valid.
+     * @param unit    Unit of {@code ttl}.
+     * @param clock   Scheduler used as the time source for expiry.
+     */
+    public CachingSuggestionSource(@NonNull SuggestionSource<T> source,
+                                   int maxSize,
+                                   long ttl,
+                                   @NonNull TimeUnit unit,
+                                   @NonNull Scheduler clock) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0: " + maxSize);
+        }
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("ttl <= 0: " + ttl);
+        }
+        this.source = source;
+        this.maxSize = maxSize;
+        this.ttlMillis = unit.toMillis(ttl);
+        this.clock = clock;
+        this.cache = new LinkedHashMap<String, CacheEntry<T>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry<T>> eldest) {
+                final boolean evict = size() > CachingSuggestionSource.this.maxSize;
+                if (evict) {
+                    evictionCount.incrementAndGet();
+                }
+                return evict;
+            }
+        };
+    }
+
+    @NonNull
+    @Override
+    public Flowable<T> getSuggestions(@NonNull String value) {
+        return Flowable.defer(() -> {
+            final String key = Util.prepareSearchTerm(value);
+            final List<T> cached = get(key);
+            if (cached != null) {
+                hitCount.incrementAndGet();
+                return Flowable.fromIterable(cached);
+            }
+            missCount.incrementAndGet();
+            return source.getSuggestions(value)
+                    .toList()
+                    .doOnSuccess(items -> put(key, items))
+                    .flattenAsFlowable(items -> items);
+        });
+    }
+
+    /**
+     * Emits the results of cached queries first, then resolves the remaining queries with
+     * {@link Batches#getSuggestionsBatch(SuggestionSource, Collection)} on the wrapped source and
+     * caches the successful ones, which makes this suitable for warming the cache.
+     * <p>
+     * Hits always come before misses, so results are not in the order of {@code queries} even when
+     * the wrapped source keeps that order. Queries that normalize to the same term are fetched once
+     * and each get a result. Queries count as hits and misses like single calls made in order, so
+     * repeats of a missed query count as hits.
+     */
+    @NonNull
+    @Override
+    public Flowable<BatchResult<T>> getSuggestionsBatch(@NonNull Collection<String> queries) {
+        return Flowable.defer(() -> {
+            final List<BatchResult<T>> hits = new ArrayList<>();
+            final Map<String, List<String>> missesByKey = new LinkedHashMap<>();
+            int repeats = 0;
+            for (String query : queries) {
+                final String key = Util.prepareSearchTerm(query);
+                final List<T> cached = get(key);
+                if (cached != null) {
+                    hits.add(BatchResult.success(query, cached));
+                    continue;
+                }
+                List<String> sameKey = missesByKey.get(key);
+                if (sameKey == null) {
+                    sameKey = new ArrayList<>(1);
+                    missesByKey.put(key, sameKey);
+                } else {
+                    repeats++;
+                }
+                sameKey.add(query);
+            }
+            final List<String> misses = new ArrayList<>(missesByKey.size());
+            for (List<String> sameKey : missesByKey.values()) {
+                misses.add(sameKey.get(0));
+            }
+            hitCount.addAndGet(hits.size() + repeats);
+            missCount.addAndGet(misses.size());
+            final Flowable<BatchResult<T>> fetched = Batches.getSuggestionsBatch(source, misses)
+                    .concatMapIterable(result -> {
+                        final String key = Util.prepareSearchTerm(result.query());
+                        if (result.isSuccess()) {
+                            put(key, result.items());
+                        }
+                        return resultsFor(missesByKey.get(key), result);
+                    });
+            return hits.isEmpty() ? fetched : Flowable.fromIterable(hits).concatWith(fetched);
+        });
+    }
+
+    /**
+     * @return A source that only replays cached results and never calls the wrapped source, for
+     * use as a fallback while it is unavailable. Misses complete empty and do not affect hit or
+     * miss counts.
+     */
+    @NonNull
+    public SuggestionSource<T> cachedOnly() {
+        return value -> Flowable.defer(() -> {
+            final List<T> cached = get(Util.prepareSearchTerm(value));
+            return cached != null ? Flowable.fromIterable(cached) : Flowable.<T>empty();
+        });
+    }
+
+    /**
+     * @return A completable that fetches {@code value} from the wrapped source into the cache
+     * unless it is already cached, for warming the cache ahead of a call. Does not affect hit or
+     * miss counts.
+     */
+    @NonNull
+    public Completable prefetch(@NonNull String value) {
+        return Completable.defer(() -> {
+            final String key = Util.prepareSearchTerm(value);
+            if (get(key) != null) {
+                return Completable.complete();
+            }
+            return source.getSuggestions(value)
+                    .toList()
+                    .doOnSuccess(items -> put(key, items))
+                    .ignoreElement();
+        });
+    }
+
+    /**
+     * Returns the cached result for the given normalized {@code key} if present and not expired.
+     * Does not affect hit or miss counts.
+     *
+     * @param key Search term already normalized with {@link Util#prepareSearchTerm(String)}
+     * @return Cached items or {@code null}
+     */
+    @Nullable
+    public List<T> get(@NonNull String key) {
+        synchronized (cache) {
+            final CacheEntry<T> entry = cache.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (now() - entry.createdAt >= ttlMillis) {
+                cache.remove(key);
+                evictionCount.incrementAndGet();
+                return null;
+            }
+            return entry.items;
+        }
+    }
+
+    /**
+     * Stores {@code items} as the result for the given normalized {@code key}.
+     *
+     * @param key   Search term already normalized with {@link Util#prepareSearchTerm(String)}
+     * @param items Items to cache, copied defensively, packed if they are all
+     *              {@link ScoredSuggestionItem}s.
+     */
+    public void put(@NonNull String key, @NonNull List<T> items) {
+        final List<T> copy = isPackable(items)
+                ? packed(items)
+                : Collections.unmodifiableList(new ArrayList<>(items));
+        synchronized (cache) {
+            cache.put(key, new CacheEntry<>(copy, now()));
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * @return Number of {@link #getSuggestions(String)} calls served from the cache.
+     */
+    public long hitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return Number of {@link #getSuggestions(String)} calls that were forwarded to the wrapped source.
+     */
+    public long missCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return Number of entries dropped either for exceeding the size limit or for having expired.
+     */
+    public long evictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return {@code result} for each of {@code queries}, which normalize to the query of {@code result}.
+     */
+    @NonNull
+    private static <T> List<BatchResult<T>> resultsFor(@Nullable List<String> queries, @NonNull BatchResult<T> result) {
+        if (queries == null || queries.size() == 1) {
+            return Collections.singletonList(result);
+        }
+        final List<BatchResult<T>> results = new ArrayList<>(queries.size());
+        for (String query : queries) {
+            if (query.equals(result.query())) {
+                results.add(result);
+            } else if (result.isSuccess()) {
+                results.add(BatchResult.success(query, result.items()));
+            } else {
+                results.add(BatchResult.<T>failure(query, result.error()));
+            }
+        }
+        return results;
+    }
+
+    private static boolean isPackable(@NonNull List<? extends SuggestionItem> items) {
+        if (items.isEmpty()) {
+            return false;
+        }
+        if (items instanceof PackedSuggestionList) {
+            return true;
+        }
+        for (SuggestionItem item : items) {
+            if (!(item instanceof ScoredSuggestionItem)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Safe since every item is a {@link ScoredSuggestionItem}, a final class, so {@code T} is one
+     * of its supertypes.
+     */
+    @SuppressWarnings("unchecked")
+    @NonNull
+    private static <T extends SuggestionItem> List<T> packed(@NonNull List<T> items) {
+        return (List<T>) (List<?>) PackedSuggestionList.pack(items);
+    }
+
+    private long now() {
+        return clock.now(TimeUnit.MILLISECONDS);
+    }
+
+    private static final class CacheEntry<T> {
+        final List<T> items;
+        final long createdAt;
+
+        CacheEntry(List<T> items, long createdAt) {
+            this.items = items;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.source.cache;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import in.arunkumarsampath.suggestions2.item.SuggestionItem;
+import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+import in.arunkumarsampath.suggestions2.util.Util;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.functions.Function;
+import io.reactivex.observers.DisposableCompletableObserver;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * A {@link SuggestionSource} decorator that persists results of the wrapped source in a
+ * {@link DiskSuggestionCache}, so that they survive process restarts.
+ * <p>
+ * A stored result younger than {@code maxAge} is emitted without waiting for the wrapped source.
+ * If it is also older than {@code revalidateAfter}, the wrapped source is queried on
+ * {@code scheduler} in the background and its result replaces the stored one for the next call.
+ * Anything else is fetched from the wrapped source and stored.
+ * <p>
+ * Items are stored as the string form of {@link SuggestionItem#value()} and recreated with
+ * {@code itemFactory}. Failures of the disk cache are treated as a miss.
+ */
+public final class DiskCachingSuggestionSource<T extends SuggestionItem> implements SuggestionSource<T> {
+
+    public static final long DEFAULT_REVALIDATE_AFTER_MINUTES = 60;
+    public static final long DEFAULT_MAX_AGE_MINUTES = 7 * 24 * 60;
+
+    @NonNull
+    private final SuggestionSource<T> source;
+    @NonNull
+    private final DiskSuggestionCache cache;
+    @NonNull
+    private final Function<String, T> itemFactory;
+    private final long revalidateAfterMillis;
+    private final long maxAgeMillis;
+    @NonNull
+    private final Scheduler scheduler;
+
+    private final Set<String> revalidating = new HashSet<>();
+    private final CompositeDisposable revalidations = new CompositeDisposable();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public DiskCachingSuggestionSource(@NonNull SuggestionSource<T> source,
+                                       @NonNull DiskSuggestionCache cache,
+                                       @NonNull Function<String, T> itemFactory) {
+        this(source, cache, itemFactory, DEFAULT_REVALIDATE_AFTER_MINUTES, DEFAULT_MAX_AGE_MINUTES, TimeUnit.MINUTES, Schedulers.io());
+    }
+
+    /**
+     * @param source          Source whose results should be persisted.
+     * @param cache           Cache to persist results in.
+     * @param itemFactory     Recreates an item from its stored value.
+     * @param revalidateAfter Age after which a served result is refreshed in the background.
+     * @param maxAge          Age after which a stored result is no longer served.
+     * @param unit            Unit of {@code revalidateAfter} and {@code maxAge}.
+     * @param scheduler       Scheduler for background refreshes, also used as the clock.
+     */
+    public DiskCachingSuggestionSource(@NonNull SuggestionSource<T> source,
+                                       @NonNull DiskSuggestionCache cache,
+                                       @NonNull Function<String, T> itemFactory,
+                                       long revalidateAfter,
+                                       long maxAge,
+                                       @NonNull TimeUnit unit,
+                                       @NonNull Scheduler scheduler) {
+        if (revalidateAfter < 0) {
+            throw new IllegalArgumentException("revalidateAfter < 0: " + revalidateAfter);
+        }
+        if (maxAge <= 0) {
+            throw new IllegalArgumentException("maxAge <= 0: " + maxAge);
+        }
+        this.source = source;
+        this.cache = cache;
+        this.itemFactory = itemFactory;
+        this.revalidateAfterMillis = unit.toMillis(revalidateAfter);
+        this.maxAgeMillis = unit.toMillis(maxAge);
+        this.scheduler = scheduler;
+    }
+
+    @NonNull
+    @Override
+    public Flowable<T> getSuggestions(@NonNull String value) {
+        return Flowable.defer(() -> {
+            final String key = Util.prepareSearchTerm(value);
+            final DiskSuggestionCache.Entry entry = read(key);
+            final long age = entry == null ? Long.MAX_VALUE : now() - entry.timestamp();
+            if (age >= maxAgeMillis) {
+                missCount.incrementAndGet();
+                return fetch(value, key);
+            }
+            hitCount.incrementAndGet();
+            if (age >= revalidateAfterMillis) {
+                revalidateInBackground(value, key);
+            }
+            return Flowable.fromIterable(entry.values()).map(itemFactory);
+        });
+    }
+
+    /**
+     * Cancels pending background refreshes.
+     */
+    public void cancelRevalidations() {
+        revalidations.clear();
+    }
+
+    /**
+     * @return Number of calls served from disk.
+     */
+    public long hitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return Number of calls forwarded to the wrapped source.
+     */
+    public long missCount() {
+        return missCount.get();
+    }
+
+    @NonNull
+    private Flowable<T> fetch(@NonNull String value, @NonNull String key) {
+        return source.getSuggestions(value)
+                .toList()
+                .doOnSuccess(items -> write(key, items))
+                .flattenAsFlowable(items -> items);
+    }
+
+    private void revalidateInBackground(@NonNull String value, @NonNull String key) {
+        synchronized (revalidating) {
+            if (!revalidating.add(key)) {
+                return;
+            }
+        }
+        // Added before subscribing and deleted once finished, so that only running revalidations
+        // are retained even when one finishes before subscribe returns.
+        final DisposableCompletableObserver revalidation = new DisposableCompletableObserver() {
+            @Override
+            public void onComplete() {
+                revalidations.delete(this);
+            }
+
+            @Override
+            public void onError(@NonNull Throwable error) {
+                revalidations.delete(this);
+            }
+        };
+        revalidations.add(revalidation);
+        fetch(value, key)
+                .subscribeOn(scheduler)
+                .doFinally(() -> {
+                    synchronized (revalidating) {
+                        revalidating.remove(key);
+                    }
+                })
+                .ignoreElements()
+                .subscribe(revalidation);
+    }
+
+    /**
+     * @return Number of background revalidations still running.
+     */
+    int pendingRevalidationCount() {
+        return revalidations.size();
+    }
+
+    @Nullable
+    private DiskSuggestionCache.Entry read(@NonNull String key) {
+        try {
+            return cache.get(key);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void write(@NonNull String key, @NonNull List<T> items) {
+        final List<String> values = new ArrayList<>(items.size());
+        for (T item : items) {
+            values.add(String.valueOf(item.value()));
+        }
+        try {
+            cache.put(key, values, now());
+        } catch (IOException ignored) {
+            // Not being able to persist only costs a future network request.
+        }
+    }
+
+    private long now() {
+        return scheduler.now(TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,516 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.source.cache;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent store of suggestion results keyed by normalized query.
+ * <p>
+ * Results are appended to a log file as checksummed records; replacing a result appends a new
+ * record. A memory-mapped open addressing hash table maps the 64 bit hash of each key to the
+ * offset of its latest record, so opening the cache does not require reading the log and a lookup
+ * costs one probe sequence plus one record read. Hash collisions are resolved by comparing the key
+ * stored in the record.
+ * <p>
+ * Once the log grows beyond {@code maxBytes} it is compacted: the latest record of every key is
+ * rewritten, newest first, until half of {@code maxBytes} is used, and older keys are dropped.
+ * <p>
+ * The log is the source of truth. Records appended after the index was last updated, for example
+ * because the process died in between, are indexed when the cache is opened, and a missing or
+ * invalid index is rebuilt from the log. A torn record at the end of the log is discarded.
+ * <p>
+ * All methods are synchronized. Call {@link #close()} to flush the index to disk.
+ */
+public final class DiskSuggestionCache implements Closeable {
+
+    public static final long DEFAULT_MAX_BYTES = 512 * 1024;
+
+    private static final String DATA_FILE = "suggestions.log";
+    private static final String INDEX_FILE = "suggestions.idx";
+    private static final String COMPACT_SUFFIX = ".compact";
+
+    private static final int INDEX_MAGIC = 0x53474958;
+    private static final int INDEX_VERSION = 1;
+    // magic, version, capacity, count, indexed data length
+    private static final int INDEX_HEADER_BYTES = 4 + 4 + 4 + 4 + 8;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int COUNT_OFFSET = 12;
+    private static final int DATA_LENGTH_OFFSET = 16;
+    // key hash, record offset
+    private static final int SLOT_BYTES = 8 + 8;
+    private static final int MIN_CAPACITY = 64;
+    private static final long EMPTY = 0;
+
+    private static final int RECORD_MAGIC = 0x53475245;
+    // magic, body length
+    private static final int RECORD_HEADER_BYTES = 4 + 4;
+    private static final int RECORD_CRC_BYTES = 4;
+    private static final int MAX_RECORD_BYTES = 1024 * 1024;
+
+    @NonNull
+    private final File directory;
+    private final long maxBytes;
+
+    private RandomAccessFile dataFile;
+    private FileChannel data;
+    private long dataLength;
+
+    private MappedByteBuffer index;
+    private int capacity;
+    private int count;
+
+    /**
+     * Opens the cache stored in {@code directory}, creating it if needed.
+     *
+     * @param directory Directory to keep the cache files in.
+     * @param maxBytes  Size of the log after which it is compacted.
+     * @throws IOException If the cache files could not be opened.
+     */
+    public DiskSuggestionCache(@NonNull File directory, long maxBytes) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes <= 0: " + maxBytes);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        openData();
+        openIndex();
+    }
+
+    /**
+     * @param key Normalized query.
+     * @return Latest result stored for {@code key} or {@code null}.
+     * @throws IOException If the log could not be read.
+     */
+    @Nullable
+    public synchronized Entry get(@NonNull String key) throws IOException {
+        ensureOpen();
+        final long hash = hash(key);
+        for (int slot = slotOf(hash); ; slot = (slot + 1) & (capacity - 1)) {
+            final long slotHash = index.getLong(slotPosition(slot));
+            if (slotHash == EMPTY) {
+                return null;
+            }
+            if (slotHash == hash) {
+                final Entry entry = readRecord(index.getLong(slotPosition(slot) + 8));
+                if (entry != null && entry.key.equals(key)) {
+                    return entry;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores {@code values} as the latest result for {@code key}.
+     *
+     * @param key       Normalized query.
+     * @param values    Suggestions to store.
+     * @param timestamp Time the result was obtained, in milliseconds.
+     * @throws IOException If the cache files could not be written.
+     */
+    public synchronized void put(@NonNull String key, @NonNull List<String> values, long timestamp) throws IOException {
+        ensureOpen();
+        final byte[] record = encodeRecord(new Entry(key, values, timestamp));
+        if (dataLength + record.length > maxBytes) {
+            compact(maxBytes / 2 - record.length);
+        }
+        final long offset = dataLength;
+        writeFully(data, ByteBuffer.wrap(record), offset);
+        dataLength += record.length;
+        indexRecord(key, offset);
+        index.putLong(DATA_LENGTH_OFFSET, dataLength);
+    }
+
+    /**
+     * @return Number of keys stored.
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * @return Current size of the log in bytes, including replaced records not yet compacted.
+     */
+    public synchronized long dataBytes() {
+        return dataLength;
+    }
+
+    public synchronized void clear() throws IOException {
+        ensureOpen();
+        data.truncate(0);
+        dataLength = 0;
+        createIndex(MIN_CAPACITY);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (dataFile == null) {
+            return;
+        }
+        index.force();
+        data.force(false);
+        dataFile.close();
+        dataFile = null;
+        data = null;
+        index = null;
+    }
+
+    private void openData() throws IOException {
+        dataFile = new RandomAccessFile(new File(directory, DATA_FILE), "rw");
+        data = dataFile.getChannel();
+        dataLength = data.size();
+    }
+
+    private void openIndex() throws IOException {
+        final File indexFile = new File(directory, INDEX_FILE);
+        if (indexFile.length() >= INDEX_HEADER_BYTES) {
+            index = map(indexFile, indexFile.length());
+            capacity = index.getInt(CAPACITY_OFFSET);
+            count = index.getInt(COUNT_OFFSET);
+            final long indexedLength = index.getLong(DATA_LENGTH_OFFSET);
+            final boolean valid = index.getInt(0) == INDEX_MAGIC
+                    && index.getInt(4) == INDEX_VERSION
+                    && capacity >= MIN_CAPACITY
+                    && Integer.bitCount(capacity) == 1
+                    && indexFile.length() == INDEX_HEADER_BYTES + (long) capacity * SLOT_BYTES
+                    && count >= 0 && count <= capacity / 2
+                    && indexedLength <= dataLength;
+            if (valid) {
+                indexLog(indexedLength);
+                return;
+            }
+        }
+        createIndex(MIN_CAPACITY);
+        indexLog(0);
+    }
+
+    /**
+     * Indexes the records of the log starting at {@code offset} and truncates the log after the
+     * last valid record.
+     */
+    private void indexLog(long offset) throws IOException {
+        long position = offset;
+        while (position < dataLength) {
+            final Entry entry = readRecord(position);
+            if (entry == null) {
+                break;
+            }
+            indexRecord(entry.key, position);
+            position += entry.recordLength;
+        }
+        if (position < dataLength) {
+            data.truncate(position);
+            dataLength = position;
+        }
+        index.putLong(DATA_LENGTH_OFFSET, dataLength);
+    }
+
+    private void indexRecord(@NonNull String key, long offset) throws IOException {
+        final long hash = hash(key);
+        for (int slot = slotOf(hash); ; slot = (slot + 1) & (capacity - 1)) {
+            final int position = slotPosition(slot);
+            final long slotHash = index.getLong(position);
+            if (slotHash == EMPTY) {
+                index.putLong(position + 8, offset);
+                index.putLong(position, hash);
+                count++;
+                index.putInt(COUNT_OFFSET, count);
+                if (count > capacity / 2) {
+                    growIndex();
+                }
+                return;
+            }
+            if (slotHash == hash) {
+                final Entry existing = readRecord(index.getLong(position + 8));
+                if (existing == null || existing.key.equals(key)) {
+                    index.putLong(position + 8, offset);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void growIndex() throws IOException {
+        final long[] hashes = new long[count];
+        final long[] offsets = new long[count];
+        int live = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            final long slotHash = index.getLong(slotPosition(slot));
+            if (slotHash != EMPTY) {
+                hashes[live] = slotHash;
+                offsets[live] = index.getLong(slotPosition(slot) + 8);
+                live++;
+            }
+        }
+        createIndex(capacity * 2);
+        for (int i = 0; i < live; i++) {
+            int slot = slotOf(hashes[i]);
+            while (index.getLong(slotPosition(slot)) != EMPTY) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            index.putLong(slotPosition(slot), hashes[i]);
+            index.putLong(slotPosition(slot) + 8, offsets[i]);
+        }
+        count = live;
+        index.putInt(COUNT_OFFSET, count);
+        index.putLong(DATA_LENGTH_OFFSET, dataLength);
+    }
+
+    /**
+     * Rewrites the latest record of each key, newest first, while the log stays within
+     * {@code targetBytes}.
+     */
+    private void compact(long targetBytes) throws IOException {
+        final List<Entry> entries = new ArrayList<>(count);
+        for (int slot = 0; slot < capacity; slot++) {
+            if (index.getLong(slotPosition(slot)) != EMPTY) {
+                final Entry entry = readRecord(index.getLong(slotPosition(slot) + 8));
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            }
+        }
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry left, Entry right) {
+                return Long.compare(right.timestamp, left.timestamp);
+            }
+        });
+
+        final File compacted = new File(directory, DATA_FILE + COMPACT_SUFFIX);
+        final List<Entry> kept = new ArrayList<>(entries.size());
+        final List<Long> keptOffsets = new ArrayList<>(entries.size());
+        long length = 0;
+        try (RandomAccessFile compactedFile = new RandomAccessFile(compacted, "rw")) {
+            compactedFile.setLength(0);
+            final FileChannel channel = compactedFile.getChannel();
+            for (Entry entry : entries) {
+                if (length + entry.recordLength > targetBytes) {
+                    break;
+                }
+                writeFully(channel, ByteBuffer.wrap(encodeRecord(entry)), length);
+                kept.add(entry);
+                keptOffsets.add(length);
+                length += entry.recordLength;
+            }
+            channel.force(false);
+        }
+
+        dataFile.close();
+        if (!compacted.renameTo(new File(directory, DATA_FILE))) {
+            openData();
+            throw new IOException("Could not replace " + DATA_FILE);
+        }
+        openData();
+
+        createIndex(MIN_CAPACITY);
+        for (int i = 0; i < kept.size(); i++) {
+            indexRecord(kept.get(i).key, keptOffsets.get(i));
+        }
+        index.putLong(DATA_LENGTH_OFFSET, dataLength);
+    }
+
+    private void createIndex(int newCapacity) throws IOException {
+        final File indexFile = new File(directory, INDEX_FILE);
+        final File tempFile = new File(directory, INDEX_FILE + COMPACT_SUFFIX);
+        final long size = INDEX_HEADER_BYTES + (long) newCapacity * SLOT_BYTES;
+        try (RandomAccessFile file = new RandomAccessFile(tempFile, "rw")) {
+            // Truncating first zero fills every slot.
+            file.setLength(0);
+            file.setLength(size);
+        }
+        final MappedByteBuffer newIndex = map(tempFile, size);
+        newIndex.putInt(0, INDEX_MAGIC);
+        newIndex.putInt(4, INDEX_VERSION);
+        newIndex.putInt(CAPACITY_OFFSET, newCapacity);
+        newIndex.putInt(COUNT_OFFSET, 0);
+        newIndex.putLong(DATA_LENGTH_OFFSET, 0);
+        if (!tempFile.renameTo(indexFile)) {
+            throw new IOException("Could not replace " + INDEX_FILE);
+        }
+        index = newIndex;
+        capacity = newCapacity;
+        count = 0;
+    }
+
+    @NonNull
+    private static MappedByteBuffer map(@NonNull File file, long size) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            // The mapping stays valid after the channel is closed.
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * @return The record at {@code offset}, or {@code null} if there is no valid record there.
+     */
+    @Nullable
+    private Entry readRecord(long offset) throws IOException {
+        if (offset < 0 || offset + RECORD_HEADER_BYTES > dataLength) {
+            return null;
+        }
+        final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        readFully(data, header, offset);
+        final int magic = header.getInt(0);
+        final int bodyLength = header.getInt(4);
+        if (magic != RECORD_MAGIC || bodyLength < 0 || bodyLength > MAX_RECORD_BYTES
+                || offset + RECORD_HEADER_BYTES + bodyLength + RECORD_CRC_BYTES > dataLength) {
+            return null;
+        }
+        final ByteBuffer body = ByteBuffer.allocate(bodyLength + RECORD_CRC_BYTES);
+        readFully(data, body, offset + RECORD_HEADER_BYTES);
+        final CRC32 crc = new CRC32();
+        crc.update(body.array(), 0, bodyLength);
+        if ((int) crc.getValue() != body.getInt(bodyLength)) {
+            return null;
+        }
+        final DataInputStream input = new DataInputStream(new ByteArrayInputStream(body.array(), 0, bodyLength));
+        final long timestamp = input.readLong();
+        final String key = input.readUTF();
+        final int size = input.readInt();
+        final List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(input.readUTF());
+        }
+        return new Entry(key, Collections.unmodifiableList(values), timestamp,
+                RECORD_HEADER_BYTES + bodyLength + RECORD_CRC_BYTES);
+    }
+
+    @NonNull
+    private static byte[] encodeRecord(@NonNull Entry entry) throws IOException {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream(64);
+        final DataOutputStream output = new DataOutputStream(body);
+        output.writeInt(RECORD_MAGIC);
+        output.writeInt(0); // Body length, filled in below.
+        output.writeLong(entry.timestamp);
+        output.writeUTF(entry.key);
+        output.writeInt(entry.values.size());
+        for (String value : entry.values) {
+            output.writeUTF(value);
+        }
+        output.writeInt(0); // CRC, filled in below.
+        final byte[] record = body.toByteArray();
+        final int bodyLength = record.length - RECORD_HEADER_BYTES - RECORD_CRC_BYTES;
+        final CRC32 crc = new CRC32();
+        crc.update(record, RECORD_HEADER_BYTES, bodyLength);
+        final ByteBuffer buffer = ByteBuffer.wrap(record);
+        buffer.putInt(4, bodyLength);
+        buffer.putInt(record.length - RECORD_CRC_BYTES, (int) crc.getValue());
+        return record;
+    }
+
+    private static void readFully(@NonNull FileChannel channel, @NonNull ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1) {
+                throw new IOException("Unexpected end of " + DATA_FILE);
+            }
+        }
+    }
+
+    private static void writeFully(@NonNull FileChannel channel, @NonNull ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (dataFile == null) {
+            throw new IOException("Cache is closed");
+        }
+    }
+
+    private int slotOf(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & (capacity - 1);
+    }
+
+    private static int slotPosition(int slot) {
+        return INDEX_HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the UTF-16 code units of {@code key}, never {@link #EMPTY}.
+     */
+    private static long hash(@NonNull String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    /**
+     * A stored result.
+     */
+    public static final class Entry {
+        @NonNull
+        private final String key;
+        @NonNull
+        private final List<String> values;
+        private final long timestamp;
+        private final int recordLength;
+
+        Entry(@NonNull String key, @NonNull List<String> values, long timestamp) {
+            this(key, values, timestamp, 0);
+        }
+
+        Entry(@NonNull String key, @NonNull List<String> values, long timestamp, int recordLength) {
+            this.key = key;
+            this.values = values;
+            this.timestamp = timestamp;
+            this.recordLength = recordLength;
+        }
+
+        @NonNull
+        public String key() {
+            return key;
+        }
+
+        @NonNull
+        public List<String> values() {
+            return values;
+        }
+
+        /**
+         * @return Time the result was obtained, in milliseconds.
+         */
+        public long timestamp() {
+            return timestamp;
+        }
+    }
+}
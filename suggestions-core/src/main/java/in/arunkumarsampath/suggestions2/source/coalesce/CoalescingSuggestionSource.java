@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.source.coalesce;
+
+import android.support.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import in.arunkumarsampath.suggestions2.item.SuggestionItem;
+import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+import in.arunkumarsampath.suggestions2.util.Util;
+import io.reactivex.Flowable;
+
+/**
+ * A {@link SuggestionSource} decorator that shares a single in-flight request among all concurrent
+ * subscribers asking for the same normalized search term.
+ * <p>
+ * The first subscriber for a term subscribes to the wrapped source; subscribers arriving while
+ * that request is still running join it and receive every item emitted so far. The shared request
+ * is cancelled once its last subscriber cancels, and forgotten once it terminates, so a later call
+ * for the same term goes to the wrapped source again.
+ * <p>
+ * The wrapped source is always requested without bound so that a slow or partially requesting
+ * subscriber does not truncate the result seen by the others.
+ */
+public final class CoalescingSuggestionSource<T extends SuggestionItem> implements SuggestionSource<T> {
+
+    @NonNull
+    private final SuggestionSource<T> source;
+
+    private final Map<String, InFlight> inFlight = new HashMap<>();
+
+    private final AtomicLong upstreamCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    public CoalescingSuggestionSource(@NonNull SuggestionSource<T> source) {
+        this.source = source;
+    }
+
+    @NonNull
+    @Override
+    public Flowable<T> getSuggestions(@NonNull String value) {
+        return Flowable.defer(() -> {
+            final String key = Util.prepareSearchTerm(value);
+            synchronized (inFlight) {
+                InFlight request = inFlight.get(key);
+                if (request != null) {
+                    coalescedCount.incrementAndGet();
+                } else {
+                    request = new InFlight(key, value);
+                    inFlight.put(key, request);
+                }
+                return request.shared;
+            }
+        });
+    }
+
+    /**
+     * @return Number of requests made to the wrapped source.
+     */
+    public long upstreamCount() {
+        return upstreamCount.get();
+    }
+
+    /**
+     * @return Number of calls that joined a request already in flight instead of making a new one.
+     */
+    public long coalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * @return Number of distinct terms currently being fetched.
+     */
+    public int inFlightCount() {
+        synchronized (inFlight) {
+            return inFlight.size();
+        }
+    }
+
+    private final class InFlight {
+        @NonNull
+        final String key;
+        @NonNull
+        final Flowable<T> shared;
+
+        InFlight(@NonNull String key, @NonNull String value) {
+            this.key = key;
+            this.shared = source.getSuggestions(value)
+                    .doOnSubscribe(subscription -> upstreamCount.incrementAndGet())
+                    .onBackpressureBuffer()
+                    .doFinally(this::release)
+                    .replay()
+                    .refCount();
+        }
+
+        private void release() {
+            synchronized (inFlight) {
+                if (inFlight.get(key) == this) {
+                    inFlight.remove(key);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.source.composite;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import in.arunkumarsampath.suggestions2.item.ScoredSuggestionItem;
+import in.arunkumarsampath.suggestions2.item.SuggestionItem;
+import in.arunkumarsampath.suggestions2.item.SuggestionKeys;
+import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * A {@link SuggestionSource} that queries several sources in parallel and merges their results.
+ * <p>
+ * Every source is subscribed to on {@code scheduler}, by default a small fixed pool shared by all
+ * instances. Items are deduplicated case insensitively on their {@link SuggestionKeys key} and
+ * ranked by the sum of their scores in each source, where an item at {@code position} of a source
+ * with {@code weight} scores {@code weight * positionScore(position)}, or {@code weight * score()}
+ * if it is a {@link ScoredSuggestionItem}, whose precomputed key is used as is. Sources that fail
+ * or do not complete within the deadline are left out of the result.
+ * <p>
+ * {@link #getSuggestions(String)} emits the final ranking once all sources are done.
+ * {@link #getRankedSnapshots(String)} instead emits the ranking again every time a source finishes,
+ * so that fast sources can be shown before slow ones arrive.
+ * <p>
+ * Use {@link Builder} to create an instance.
+ */
+public final class CompositeSuggestionSource<T extends SuggestionItem> implements SuggestionSource<T> {
+
+    public static final long DEFAULT_DEADLINE_MILLIS = 1500;
+    public static final int DEFAULT_MAX_RESULTS = 10;
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    private static volatile Scheduler defaultScheduler;
+
+    @NonNull
+    private final List<WeightedSource<T>> sources;
+    @NonNull
+    private final PositionScore positionScore;
+    private final long deadlineMillis;
+    private final int maxResults;
+    @NonNull
+    private final Scheduler scheduler;
+    @NonNull
+    private final Scheduler timeScheduler;
+
+    private CompositeSuggestionSource(@NonNull Builder<T> builder) {
+        this.sources = Collections.unmodifiableList(new ArrayList<>(builder.sources));
+        this.positionScore = builder.positionScore;
+        this.deadlineMillis = builder.deadlineMillis;
+        this.maxResults = builder.maxResults;
+        this.scheduler = builder.scheduler != null ? builder.scheduler : defaultScheduler();
+        this.timeScheduler = builder.timeScheduler;
+    }
+
+    @NonNull
+    @Override
+    public Flowable<T> getSuggestions(@NonNull String value) {
+        return getRankedSnapshots(value)
+                .lastElement()
+                .flattenAsFlowable(items -> items);
+    }
+
+    /**
+     * Emits the merged and ranked result of all sources that finished so far, once per finished
+     * source, and completes when every source has finished or missed the deadline.
+     *
+     * @param value Search term.
+     * @return Flowable of immutable ranked lists.
+     */
+    @NonNull
+    public Flowable<List<T>> getRankedSnapshots(@NonNull String value) {
+        return Flowable.fromIterable(sources)
+                .flatMap(source -> source.source.getSuggestions(value)
+                        .subscribeOn(scheduler)
+                        .toList()
+                        .timeout(deadlineMillis, TimeUnit.MILLISECONDS, timeScheduler)
+                        .onErrorReturnItem(Collections.emptyList())
+                        .map(items -> new SourceResult<T>(source.weight, items))
+                        .toFlowable())
+                .scanWith(Merger::new, Merger::add)
+                .skip(1)
+                .map(merger -> merger.ranked(maxResults));
+    }
+
+    @NonNull
+    private static Scheduler defaultScheduler() {
+        Scheduler scheduler = defaultScheduler;
+        if (scheduler == null) {
+            synchronized (CompositeSuggestionSource.class) {
+                scheduler = defaultScheduler;
+                if (scheduler == null) {
+                    final ExecutorService executor = Executors.newFixedThreadPool(DEFAULT_PARALLELISM, new ThreadFactory() {
+                        private final AtomicInteger count = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(@NonNull Runnable runnable) {
+                            final Thread thread = new Thread(runnable, "CompositeSuggestionSource-" + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    scheduler = Schedulers.from(executor);
+                    defaultScheduler = scheduler;
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * Score of an item based on its position in the result of a single source.
+     */
+    public interface PositionScore {
+        /**
+         * Reciprocal rank, {@code 1 / (position + 1)}.
+         */
+        PositionScore RECIPROCAL = position -> 1.0 / (position + 1);
+
+        double score(int position);
+    }
+
+    private static final class WeightedSource<T extends SuggestionItem> {
+        final SuggestionSource<? extends T> source;
+        final double weight;
+
+        WeightedSource(SuggestionSource<? extends T> source, double weight) {
+            this.source = source;
+            this.weight = weight;
+        }
+    }
+
+    private static final class SourceResult<T> {
+        final double weight;
+        final List<? extends T> items;
+
+        SourceResult(double weight, List<? extends T> items) {
+            this.weight = weight;
+            this.items = items;
+        }
+    }
+
+    private static final class Candidate<T> {
+        final T item;
+        final int order;
+        double score;
+
+        Candidate(T item, int order) {
+            this.item = item;
+            this.order = order;
+        }
+    }
+
+    /**
+     * Accumulates source results for a single call.
+     */
+    private final class Merger {
+        private final Map<String, Candidate<T>> candidates = new LinkedHashMap<>();
+
+        Merger add(SourceResult<T> result) {
+            final List<? extends T> items = result.items;
+            for (int position = 0; position < items.size(); position++) {
+                final T item = items.get(position);
+                final String key = SuggestionKeys.keyOf(item);
+                Candidate<T> candidate = candidates.get(key);
+                if (candidate == null) {
+                    candidate = new Candidate<>(item, candidates.size());
+                    candidates.put(key, candidate);
+                }
+                final double score = item instanceof ScoredSuggestionItem
+                        ? ((ScoredSuggestionItem) item).score()
+                        : positionScore.score(position);
+                candidate.score += result.weight * score;
+            }
+            return this;
+        }
+
+        List<T> ranked(int limit) {
+            final List<Candidate<T>> sorted = new ArrayList<>(candidates.values());
+            Collections.sort(sorted, new Comparator<Candidate<T>>() {
+                @Override
+                public int compare(Candidate<T> left, Candidate<T> right) {
+                    final int byScore = Double.compare(right.score, left.score);
+                    return byScore != 0 ? byScore : left.order - right.order;
+                }
+            });
+            final int size = Math.min(limit, sorted.size());
+            final List<T> ranked = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                ranked.add(sorted.get(i).item);
+            }
+            return Collections.unmodifiableList(ranked);
+        }
+    }
+
+    public static final class Builder<T extends SuggestionItem> {
+        private final List<WeightedSource<T>> sources = new ArrayList<>();
+        @NonNull
+        private PositionScore positionScore = PositionScore.RECIPROCAL;
+        private long deadlineMillis = DEFAULT_DEADLINE_MILLIS;
+        private int maxResults = DEFAULT_MAX_RESULTS;
+        private Scheduler scheduler;
+        @NonNull
+        private Scheduler timeScheduler = Schedulers.computation();
+
+        /**
+         * Adds a source with weight {@code 1}.
+         */
+        @NonNull
+        public Builder<T> add(@NonNull SuggestionSource<? extends T> source) {
+            return add(source, 1);
+        }
+
+        /**
+         * Adds a source whose item scores are multiplied by {@code weight}.
+         */
+        @NonNull
+        public Builder<T> add(@NonNull SuggestionSource<? extends T> source, double weight) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("weight < 0: " + weight);
+            }
+            sources.add(new WeightedSource<>(source, weight));
+            return this;
+        }
+
+        @NonNull
+        public Builder<T> positionScore(@NonNull PositionScore positionScore) {
+            this.positionScore = positionScore;
+            return this;
+        }
+
+        /**
+         * Time after which a source that has not completed is left out of the result.
+         */
+        @NonNull
+        public Builder<T> deadline(long deadline, @NonNull TimeUnit unit) {
+            if (deadline <= 0) {
+                throw new IllegalArgumentException("deadline <= 0: " + deadline);
+            }
+            this.deadlineMillis = unit.toMillis(deadline);
+            return this;
+        }
+
+        @NonNull
+        public Builder<T> maxResults(int maxResults) {
+            if (maxResults <= 0) {
+                throw new IllegalArgumentException("maxResults <= 0: " + maxResults);
+            }
+            this.maxResults = maxResults;
+            return this;
+        }
+
+        /**
+         * Scheduler the sources are subscribed to on. Defaults to a shared pool of
+         * {@link #DEFAULT_PARALLELISM} threads.
+         */
+        @NonNull
+        public Builder<T> scheduler(@NonNull Scheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Scheduler used to time the deadline. Defaults to {@link Schedulers#computation()}.
+         */
+        @NonNull
+        public Builder<T> timeScheduler(@NonNull Scheduler timeScheduler) {
+            this.timeScheduler = timeScheduler;
+            return this;
+        }
+
+        @NonNull
+        public CompositeSuggestionSource<T> build() {
+            if (sources.isEmpty()) {
+                throw new IllegalStateException("No sources added");
+            }
+            return new CompositeSuggestionSource<>(this);
+        }
+    }
+}
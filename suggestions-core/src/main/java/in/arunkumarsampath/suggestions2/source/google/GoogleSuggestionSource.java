@@ -19,83 +19,181 @@ package in.arunkumarsampath.suggestions2.source.google;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
-import org.xmlpull.v1.XmlPullParser;
-import org.xmlpull.v1.XmlPullParserFactory;
-
 import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 
+import in.arunkumarsampath.suggestions2.executor.SuggestionExecutor;
 import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import in.arunkumarsampath.suggestions2.metrics.CallRecorder;
+import in.arunkumarsampath.suggestions2.metrics.SuggestionMetricsListener;
+import in.arunkumarsampath.suggestions2.parser.JsonSuggestionResponseParser;
+import in.arunkumarsampath.suggestions2.parser.SuggestionResponseParser;
+import in.arunkumarsampath.suggestions2.parser.XmlSuggestionResponseParser;
 import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+import in.arunkumarsampath.suggestions2.transport.HttpUrlConnectionTransport;
+import in.arunkumarsampath.suggestions2.transport.SuggestionResponse;
+import in.arunkumarsampath.suggestions2.transport.SuggestionTransport;
+import in.arunkumarsampath.suggestions2.util.UrlTemplate;
 import in.arunkumarsampath.suggestions2.util.Util;
 import io.reactivex.BackpressureStrategy;
 import io.reactivex.Flowable;
-import io.reactivex.FlowableEmitter;
-
-import static org.xmlpull.v1.XmlPullParser.END_DOCUMENT;
-import static org.xmlpull.v1.XmlPullParser.START_TAG;
 
 /**
  * A suggestion source backed by Google suggest API.
+ * <p>
+ * Requests are made through a {@link SuggestionTransport}, by default a shared
+ * {@link HttpUrlConnectionTransport} so that connections are reused across instances. Responses
+ * are requested in the XML {@code toolbar} format unless configured otherwise with {@link Builder}.
+ * <p>
+ * Calls block the subscribing thread unless a {@link SuggestionExecutor} is configured, in which
+ * case they run on its bounded pool and fail with a
+ * {@link in.arunkumarsampath.suggestions2.executor.SuggestionDroppedException} when dropped.
  */
 public final class GoogleSuggestionSource implements SuggestionSource<SimpleSuggestionItem> {
 
-    private static final String SUGGEST_URL_FORMAT = "http://suggestqueries.google.com/complete/search?client=toolbar&q=%s";
-    private static final String SUGGESTION = "suggestion";
+    public static final String TOOLBAR_URL_FORMAT = "http://suggestqueries.google.com/complete/search?client=toolbar&q=%s";
+    public static final String FIREFOX_URL_FORMAT = "http://suggestqueries.google.com/complete/search?client=firefox&q=%s";
+
+    private static final String METRICS_NAME = "google";
+
+    private static final UrlTemplate TOOLBAR_URL_TEMPLATE = new UrlTemplate(TOOLBAR_URL_FORMAT);
+
+    private static final SuggestionTransport DEFAULT_TRANSPORT = new HttpUrlConnectionTransport();
+    private static final SuggestionResponseParser XML_PARSER = new XmlSuggestionResponseParser();
+    private static final SuggestionResponseParser JSON_PARSER = new JsonSuggestionResponseParser();
+
+    @NonNull
+    private final SuggestionTransport transport;
+    @NonNull
+    private final SuggestionResponseParser parser;
+    @NonNull
+    private final UrlTemplate urlTemplate;
+    @NonNull
+    private final SuggestionMetricsListener metricsListener;
+    @Nullable
+    private final SuggestionExecutor executor;
+
+    public GoogleSuggestionSource() {
+        this(new Builder());
+    }
+
+    public GoogleSuggestionSource(@NonNull SuggestionTransport transport) {
+        this(new Builder().transport(transport));
+    }
+
+    private GoogleSuggestionSource(@NonNull Builder builder) {
+        this.transport = builder.transport;
+        this.parser = builder.parser;
+        this.urlTemplate = builder.urlTemplate;
+        this.metricsListener = builder.metricsListener;
+        this.executor = builder.executor;
+    }
 
     @NonNull
     @Override
     public Flowable<SimpleSuggestionItem> getSuggestions(@NonNull String value) {
-        return Flowable.fromCallable(() -> {
-            final String suggestUrl = String.format(SUGGEST_URL_FORMAT, Util.prepareSearchTerm(value));
-            final URL url = new URL(suggestUrl);
-            HttpURLConnection httpURLConnection = (HttpURLConnection) url.openConnection();
-            httpURLConnection.connect();
-            return httpURLConnection;
-        }).flatMap(httpURLConnection -> Flowable.create(emitter -> {
-            try (final InputStream inputStream = httpURLConnection.getInputStream()) {
-                final XmlPullParser xmlParser = XmlPullParserFactory.newInstance().newPullParser();
-                xmlParser.setInput(inputStream, Util.extractEncoding(httpURLConnection.getContentType()));
-
-                int eventType = xmlParser.getEventType();
-
-                while (isFlowableEmissionValid(emitter, eventType)) { // Perform back pressure aware iteration.
-                    boolean validEvent = eventType == START_TAG && xmlParser.getName().equalsIgnoreCase(SUGGESTION);
-                    if (validEvent) {
-                        final String suggestion = xmlParser.getAttributeValue(0);
-                        emitter.onNext(new SimpleSuggestionItem(suggestion));
-                    }
-                    eventType = xmlParser.next();
-                }
-                emitter.onComplete();
-            } finally {
-                cancel(httpURLConnection);
-            }
-            emitter.setCancellable(() -> cancel(httpURLConnection));
-        }, BackpressureStrategy.LATEST));
+        final Flowable<SimpleSuggestionItem> suggestions;
+        if (metricsListener == SuggestionMetricsListener.NONE) {
+            suggestions = fetch(value, null);
+        } else {
+            suggestions = Flowable.defer(() -> {
+                final CallRecorder recorder = new CallRecorder(metricsListener, METRICS_NAME, value);
+                return recorder.instrument(fetch(value, recorder));
+            });
+        }
+        return executor != null ? executor.submit(suggestions) : suggestions;
     }
 
-    /**
-     * Method to check if XML iteration can be still performed.
-     * <p>
-     * Checks if {@link Flowable} is still valid based on:
-     * <ul>
-     * <li>Downstream is actively requesting further elements.</li>
-     * <li>XML document end has not reached.</li>
-     * </ul>
-     *
-     * @param emitter   The emitter to currently handling events.
-     * @param eventType XML document event type.
-     * @return {@code true} if Flowable emission is valid.
-     */
-    private boolean isFlowableEmissionValid(FlowableEmitter<SimpleSuggestionItem> emitter, int eventType) {
-        return eventType != END_DOCUMENT && !emitter.isCancelled() && emitter.requested() > 0;
+    @NonNull
+    private Flowable<SimpleSuggestionItem> fetch(@NonNull String value, @Nullable CallRecorder recorder) {
+        return Flowable.using(() -> {
+            return transport.execute(urlTemplate.expand(value));
+        }, response -> Flowable.<SimpleSuggestionItem>create(emitter -> {
+            // Register before reading so that downstream cancellation, for example from switchMap,
+            // aborts a response that is still being read.
+            emitter.setCancellable(response::cancel);
+
+            InputStream body = response.body();
+            if (recorder != null) {
+                recorder.onResponse(response.connectNanos(), response.firstByteNanos());
+                body = recorder.countBytes(body);
+            }
+            final boolean parsedAll = parser.parse(body, Util.extractEncoding(response.contentType()), emitter);
+            if (!parsedAll && recorder != null) {
+                recorder.onTruncated();
+            }
+
+            // Release the connection for reuse before completing, anything else aborts it.
+            response.close();
+            emitter.onComplete();
+        }, BackpressureStrategy.LATEST), SuggestionResponse::cancel);
     }
 
-    private void cancel(@Nullable HttpURLConnection httpURLConnection) {
-        if (httpURLConnection != null) {
-            httpURLConnection.disconnect();
+    public static final class Builder {
+        @NonNull
+        private SuggestionTransport transport = DEFAULT_TRANSPORT;
+        @NonNull
+        private SuggestionResponseParser parser = XML_PARSER;
+        @NonNull
+        private UrlTemplate urlTemplate = TOOLBAR_URL_TEMPLATE;
+        @NonNull
+        private SuggestionMetricsListener metricsListener = SuggestionMetricsListener.NONE;
+        @Nullable
+        private SuggestionExecutor executor;
+
+        /**
+         * Transport to make requests with. Defaults to a {@link HttpUrlConnectionTransport} shared by
+         * all instances.
+         */
+        @NonNull
+        public Builder transport(@NonNull SuggestionTransport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * Requests the lighter JSON {@code firefox} format instead of XML.
+         */
+        @NonNull
+        public Builder json() {
+            return parser(JSON_PARSER, FIREFOX_URL_FORMAT);
+        }
+
+        /**
+         * Uses a custom parser for responses of the given URL.
+         *
+         * @param parser    Parser able to read responses of {@code urlFormat}.
+         * @param urlFormat Format of the request URL, where the single {@code %s} is replaced with the search term.
+         */
+        @NonNull
+        public Builder parser(@NonNull SuggestionResponseParser parser, @NonNull String urlFormat) {
+            this.parser = parser;
+            this.urlTemplate = new UrlTemplate(urlFormat);
+            return this;
+        }
+
+        /**
+         * Listener to report per call metrics to, including connection phases and bytes read.
+         * Defaults to {@link SuggestionMetricsListener#NONE}, which skips all measurements.
+         */
+        @NonNull
+        public Builder metricsListener(@NonNull SuggestionMetricsListener metricsListener) {
+            this.metricsListener = metricsListener;
+            return this;
+        }
+
+        /**
+         * Executor to make requests on, for example {@link SuggestionExecutor#shared()}. By default
+         * requests are made on the subscribing thread.
+         */
+        @NonNull
+        public Builder executor(@Nullable SuggestionExecutor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        @NonNull
+        public GoogleSuggestionSource build() {
+            return new GoogleSuggestionSource(this);
         }
     }
 }
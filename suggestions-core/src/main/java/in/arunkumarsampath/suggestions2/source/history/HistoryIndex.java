@@ -0,0 +1,336 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package in.arunkumarsampath.suggestions2.source.history;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * In memory index of history phrases, a character trie in which every node keeps the
+ * {@code topN} highest ranked phrases below it, so that completing a prefix of length {@code k}
+ * walks {@code k} nodes and reads one precomputed list.
+ * <p>
+ * Ranks are decayed scores on a logarithmic scale: a phrase selected at times {@code t1..tn},
+ * measured in half-lives, has the rank {@code log2(2^t1 + ... + 2^tn)}. Its decayed score
+ * {@code 2^(t1 - now) + ... + 2^(tn - now)} is {@code 2^(rank - now)}, so ordering by rank is
+ * ordering by decayed score at any time, and ranks never need to be updated as time passes.
+ * <p>
+ * Nodes and phrases are kept in parallel primitive arrays indexed by id. Removing a phrase leaves
+ * its nodes in place; they are dropped when the index is rebuilt on compaction.
+ * <p>
+ * Not thread safe.
+ */
+final class HistoryIndex {
+
+    private static final int NONE = -1;
+    private static final int ROOT = 0;
+
+    private final int topN;
+
+    private char[] labels;
+    private int[] parents;
+    private int[] firstChildren;
+    private int[] nextSiblings;
+    /**
+     * Phrase ending at each node, or {@link #NONE}.
+     */
+    private int[] terminals;
+    /**
+     * Highest ranked phrases below each node, {@code topN} slots per node, best first.
+     */
+    private int[] tops;
+    private int[] topCounts;
+    private int nodeCount;
+
+    private String[] phrases;
+    private double[] ranks;
+    /**
+     * Ids below this are either in use or in the free list.
+     */
+    private int phraseLimit;
+    private int[] freeIds = new int[8];
+    private int freeCount;
+    private int size;
+
+    HistoryIndex(int topN) {
+        this.topN = topN;
+        labels = new char[64];
+        parents = new int[64];
+        firstChildren = new int[64];
+        nextSiblings = new int[64];
+        terminals = new int[64];
+        topCounts = new int[64];
+        tops = new int[64 * topN];
+        phrases = new String[16];
+        ranks = new double[16];
+        newNode(NONE, '\0');
+    }
+
+    /**
+     * @return Number of phrases.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Adds the score of rank {@code rank} to the score of {@code phrase}, adding the phrase if
+     * necessary.
+     */
+    void add(@NonNull String phrase, double rank) {
+        int node = ROOT;
+        for (int i = 0; i < phrase.length(); i++) {
+            final char c = phrase.charAt(i);
+            int child = child(node, c);
+            if (child == NONE) {
+                child = newNode(node, c);
+            }
+            node = child;
+        }
+        int id = terminals[node];
+        if (id == NONE) {
+            id = newPhrase(phrase, rank);
+            terminals[node] = id;
+        } else {
+            ranks[id] = combine(ranks[id], rank);
+        }
+        // Ranks only grow, so the phrase can only move up in the lists on its path.
+        for (int n = node; n != NONE; n = parents[n]) {
+            promote(n, id);
+        }
+    }
+
+    /**
+     * Removes {@code phrase} if present.
+     *
+     * @return {@code true} if the phrase was present.
+     */
+    boolean remove(@NonNull String phrase) {
+        final int node = find(phrase);
+        if (node == NONE || terminals[node] == NONE) {
+            return false;
+        }
+        final int id = terminals[node];
+        terminals[node] = NONE;
+        // A node whose list does not hold the phrase has a full list of better phrases, which its
+        // ancestors hold too, so refilling can stop there.
+        for (int n = node; n != NONE && removeTop(n, id); n = parents[n]) {
+            refill(n);
+        }
+        phrases[id] = null;
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+        size--;
+        return true;
+    }
+
+    /**
+     * @return The lowest ranked phrase, or {@code null} if empty.
+     */
+    @Nullable
+    String lowest() {
+        int lowest = NONE;
+        for (int id = 0; id < phraseLimit; id++) {
+            if (phrases[id] != null && (lowest == NONE || ranks[id] < ranks[lowest])) {
+                lowest = id;
+            }
+        }
+        return lowest == NONE ? null : phrases[lowest];
+    }
+
+    /**
+     * Adds the highest ranked phrases starting with {@code prefix} to {@code out}, best first.
+     */
+    void top(@NonNull CharSequence prefix, @NonNull List<String> out) {
+        final int node = find(prefix);
+        if (node == NONE) {
+            return;
+        }
+        final int offset = node * topN;
+        for (int i = 0; i < topCounts[node]; i++) {
+            out.add(phrases[tops[offset + i]]);
+        }
+    }
+
+    /**
+     * Calls {@code visitor} with every phrase and its rank.
+     */
+    void forEach(@NonNull Visitor visitor) {
+        for (int id = 0; id < phraseLimit; id++) {
+            if (phrases[id] != null) {
+                visitor.visit(phrases[id], ranks[id]);
+            }
+        }
+    }
+
+    /**
+     * @return Rank of the sum of the scores of ranks {@code a} and {@code b}.
+     */
+    static double combine(double a, double b) {
+        final double high = Math.max(a, b);
+        final double low = Math.min(a, b);
+        return high + Math.log1p(Math.pow(2, low - high)) / Math.log(2);
+    }
+
+    interface Visitor {
+        void visit(@NonNull String phrase, double rank);
+    }
+
+    private int find(@NonNull CharSequence key) {
+        int node = ROOT;
+        for (int i = 0; i < key.length() && node != NONE; i++) {
+            node = child(node, key.charAt(i));
+        }
+        return node;
+    }
+
+    private int child(int node, char c) {
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            if (labels[child] == c) {
+                return child;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Moves {@code id}, whose rank grew, to its place in the list of {@code node}.
+     */
+    private void promote(int node, int id) {
+        final int offset = node * topN;
+        int count = topCounts[node];
+        int position = indexOf(node, id);
+        if (position == NONE) {
+            if (count == topN) {
+                if (ranks[tops[offset + count - 1]] >= ranks[id]) {
+                    return;
+                }
+                count--;
+            }
+            position = count;
+            topCounts[node] = count + 1;
+        }
+        while (position > 0 && ranks[tops[offset + position - 1]] < ranks[id]) {
+            tops[offset + position] = tops[offset + position - 1];
+            position--;
+        }
+        tops[offset + position] = id;
+    }
+
+    /**
+     * @return {@code true} if {@code id} was in the list of {@code node}.
+     */
+    private boolean removeTop(int node, int id) {
+        final int position = indexOf(node, id);
+        if (position == NONE) {
+            return false;
+        }
+        final int offset = node * topN;
+        System.arraycopy(tops, offset + position + 1, tops, offset + position, topCounts[node] - position - 1);
+        topCounts[node]--;
+        return true;
+    }
+
+    /**
+     * Refills the list of {@code node} from its own phrase and the lists of its children, which
+     * must be complete.
+     */
+    private void refill(int node) {
+        topCounts[node] = 0;
+        if (terminals[node] != NONE) {
+            promote(node, terminals[node]);
+        }
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            final int childOffset = child * topN;
+            for (int i = 0; i < topCounts[child]; i++) {
+                final int count = topCounts[node];
+                final int id = tops[childOffset + i];
+                if (count == topN && ranks[tops[node * topN + count - 1]] >= ranks[id]) {
+                    // The rest of the child's list ranks lower still.
+                    break;
+                }
+                promote(node, id);
+            }
+        }
+    }
+
+    private int indexOf(int node, int id) {
+        final int offset = node * topN;
+        for (int i = 0; i < topCounts[node]; i++) {
+            if (tops[offset + i] == id) {
+                return i;
+            }
+        }
+        return NONE;
+    }
+
+    private int newNode(int parent, char label) {
+        if (nodeCount == labels.length) {
+            growNodes(nodeCount * 2);
+        }
+        final int node = nodeCount++;
+        labels[node] = label;
+        parents[node] = parent;
+        firstChildren[node] = NONE;
+        terminals[node] = NONE;
+        topCounts[node] = 0;
+        if (parent != NONE) {
+            nextSiblings[node] = firstChildren[parent];
+            firstChildren[parent] = node;
+        } else {
+            nextSiblings[node] = NONE;
+        }
+        return node;
+    }
+
+    private int newPhrase(@NonNull String phrase, double rank) {
+        final int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            if (phraseLimit == phrases.length) {
+                growPhrases(phraseLimit * 2);
+            }
+            id = phraseLimit++;
+        }
+        phrases[id] = phrase;
+        ranks[id] = rank;
+        size++;
+        return id;
+    }
+
+    private void growNodes(int capacity) {
+        labels = Arrays.copyOf(labels, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        terminals = Arrays.copyOf(terminals, capacity);
+        topCounts = Arrays.copyOf(topCounts, capacity);
+        tops = Arrays.copyOf(tops, capacity * topN);
+    }
+
+    private void growPhrases(int capacity) {
+        phrases = Arrays.copyOf(phrases, capacity);
+        ranks = Arrays.copyOf(ranks, capacity);
+    }
+}
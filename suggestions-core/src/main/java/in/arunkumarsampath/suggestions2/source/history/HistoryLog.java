@@ -0,0 +1,225 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package in.arunkumarsampath.suggestions2.source.history;
+
+import android.support.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of history changes: a phrase gaining score, or a phrase being removed.
+ * <p>
+ * Each change is one checksummed record, so recording a selection costs a single small append.
+ * Replaying the log in order recreates the history. A torn or corrupt record, for example from a
+ * process dying mid write, ends the log and is truncated on {@link #replay(HistoryIndex.Visitor, Removals)}.
+ * <p>
+ * As phrases are selected repeatedly the log grows beyond the history it describes.
+ * {@link #rewrite(HistoryIndex)} replaces it with a single record per phrase.
+ * <p>
+ * Only uses {@code java.io}, so it works on any JVM. Not thread safe.
+ */
+final class HistoryLog implements Closeable {
+
+    private static final String COMPACT_SUFFIX = ".compact";
+
+    private static final int RECORD_MAGIC = 0x53474853;
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    // magic, body length
+    private static final int RECORD_HEADER_BYTES = 4 + 4;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    @NonNull
+    private final File file;
+    private FileOutputStream out;
+    private int recordCount;
+
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Opens the log stored in {@code file}, creating it if needed.
+     */
+    HistoryLog(@NonNull File file) throws IOException {
+        this.file = file;
+        final File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        out = new FileOutputStream(file, true);
+    }
+
+    interface Removals {
+        void remove(@NonNull String phrase);
+    }
+
+    /**
+     * Calls {@code adds} and {@code removals} with every record in order, then truncates the log
+     * after the last valid record.
+     */
+    void replay(@NonNull HistoryIndex.Visitor adds, @NonNull Removals removals) throws IOException {
+        long validLength = 0;
+        int records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                final byte[] body = readRecord(in);
+                if (body == null) {
+                    break;
+                }
+                final DataInputStream fields = new DataInputStream(new ByteArrayInputStream(body));
+                final byte type = fields.readByte();
+                final String phrase = fields.readUTF();
+                if (type == ADD) {
+                    adds.visit(phrase, fields.readDouble());
+                } else if (type == REMOVE) {
+                    removals.remove(phrase);
+                } else {
+                    break;
+                }
+                validLength += RECORD_HEADER_BYTES + body.length + 4;
+                records++;
+            }
+        }
+        if (validLength < file.length()) {
+            out.close();
+            try (RandomAccessFile truncated = new RandomAccessFile(file, "rw")) {
+                truncated.setLength(validLength);
+            }
+            out = new FileOutputStream(file, true);
+        }
+        recordCount = records;
+    }
+
+    void appendAdd(@NonNull String phrase, double rank) throws IOException {
+        out.write(encode(ADD, phrase, rank));
+        recordCount++;
+    }
+
+    void appendRemove(@NonNull String phrase) throws IOException {
+        out.write(encode(REMOVE, phrase, 0));
+        recordCount++;
+    }
+
+    /**
+     * Replaces the log with one record per phrase of {@code index}.
+     */
+    void rewrite(@NonNull HistoryIndex index) throws IOException {
+        final File compacted = new File(file.getPath() + COMPACT_SUFFIX);
+        final int[] records = {0};
+        try (FileOutputStream compactedOut = new FileOutputStream(compacted)) {
+            final IOException[] failure = {null};
+            index.forEach((phrase, rank) -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                try {
+                    compactedOut.write(encode(ADD, phrase, rank));
+                    records[0]++;
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            compactedOut.getFD().sync();
+        }
+        out.close();
+        if (!compacted.renameTo(file)) {
+            out = new FileOutputStream(file, true);
+            throw new IOException("Could not replace " + file);
+        }
+        out = new FileOutputStream(file, true);
+        recordCount = records[0];
+    }
+
+    /**
+     * @return Number of records in the log.
+     */
+    int recordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    @NonNull
+    private byte[] encode(byte type, @NonNull String phrase, double rank) throws IOException {
+        recordBytes.reset();
+        record.writeInt(RECORD_MAGIC);
+        record.writeInt(0);
+        record.writeByte(type);
+        record.writeUTF(phrase);
+        if (type == ADD) {
+            record.writeDouble(rank);
+        }
+        final int bodyLength = recordBytes.size() - RECORD_HEADER_BYTES;
+        record.writeInt(0);
+        final byte[] bytes = recordBytes.toByteArray();
+        writeInt(bytes, 4, bodyLength);
+        crc.reset();
+        crc.update(bytes, RECORD_HEADER_BYTES, bodyLength);
+        writeInt(bytes, RECORD_HEADER_BYTES + bodyLength, (int) crc.getValue());
+        return bytes;
+    }
+
+    /**
+     * @return Body of the next record, or {@code null} at the end of the log or at an invalid record.
+     */
+    private byte[] readRecord(@NonNull DataInputStream in) throws IOException {
+        try {
+            if (in.readInt() != RECORD_MAGIC) {
+                return null;
+            }
+            final int bodyLength = in.readInt();
+            if (bodyLength <= 0 || bodyLength > MAX_BODY_BYTES) {
+                return null;
+            }
+            final byte[] body = new byte[bodyLength];
+            in.readFully(body);
+            final int checksum = in.readInt();
+            crc.reset();
+            crc.update(body, 0, bodyLength);
+            return (int) crc.getValue() == checksum ? body : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static void writeInt(@NonNull byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+}
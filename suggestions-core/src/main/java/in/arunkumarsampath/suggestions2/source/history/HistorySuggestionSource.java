@@ -0,0 +1,369 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package in.arunkumarsampath.suggestions2.source.history;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+import in.arunkumarsampath.suggestions2.util.Util;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.CompletableSubject;
+
+/**
+ * A {@link SuggestionSource} that completes prefixes from the phrases the user selected before,
+ * most frequently and recently selected first.
+ * <p>
+ * Every selection passed to {@link #record(String)} adds a score that halves every
+ * {@code halfLife}, so a phrase picked often last month ranks below one picked a few times
+ * today. Phrases are normalized like those of
+ * {@link in.arunkumarsampath.suggestions2.source.local.LocalCorpusSuggestionSource}, and an empty
+ * query returns the top phrases overall. Only the {@code maxEntries} highest ranked phrases are
+ * kept.
+ * <p>
+ * Phrases are held in a trie of primitive arrays whose nodes keep their best completions, so a
+ * lookup costs the length of the prefix, not the size of the history. Calls only take a read lock
+ * and never touch the disk.
+ * <p>
+ * Changes are applied one at a time on a worker of {@code scheduler}: the index is updated under a
+ * short write lock and the change is appended to the history file afterwards. Once the file holds
+ * more than twice as many records as there are phrases, it is rewritten with one record per phrase
+ * and the index is rebuilt without its removed nodes. The history file is read by the first task of
+ * the worker, so calls made right after construction may not see it yet.
+ * <p>
+ * Use {@link Builder} to create an instance and {@link #close()} it when done.
+ */
+public final class HistorySuggestionSource implements SuggestionSource<SimpleSuggestionItem>, Closeable {
+
+    public static final long DEFAULT_HALF_LIFE_DAYS = 7;
+    public static final int DEFAULT_MAX_ENTRIES = 500;
+    public static final int DEFAULT_MAX_RESULTS = 10;
+
+    private static final int COMPACTION_SLACK = 64;
+
+    private final int maxEntries;
+    private final int maxResults;
+    private final double halfLifeMillis;
+    @NonNull
+    private final Scheduler clock;
+    @NonNull
+    private final Scheduler.Worker worker;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    @NonNull
+    private HistoryIndex index;
+    /**
+     * Only used on {@link #worker}.
+     */
+    @Nullable
+    private HistoryLog log;
+    /**
+     * Completes once {@link #close()} has closed the history file and disposed {@link #worker}.
+     */
+    private final CompletableSubject closed = CompletableSubject.create();
+
+    private final AtomicLong writeErrorCount = new AtomicLong();
+
+    private HistorySuggestionSource(@NonNull Builder builder) {
+        this.maxEntries = builder.maxEntries;
+        this.maxResults = builder.maxResults;
+        this.halfLifeMillis = builder.halfLifeMillis;
+        this.clock = builder.scheduler;
+        this.worker = builder.scheduler.createWorker();
+        this.index = new HistoryIndex(maxResults);
+        if (builder.file != null) {
+            final File file = builder.file;
+            worker.schedule(() -> load(file));
+        }
+    }
+
+    @NonNull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @NonNull
+    @Override
+    public Flowable<SimpleSuggestionItem> getSuggestions(@NonNull String value) {
+        return Flowable.defer(() -> {
+            final StringBuilder prefix = Util.appendNormalizedPhrase(value, new StringBuilder(value.length()));
+            final List<String> phrases = new ArrayList<>(maxResults);
+            lock.readLock().lock();
+            try {
+                index.top(prefix, phrases);
+            } finally {
+                lock.readLock().unlock();
+            }
+            return Flowable.fromIterable(phrases).map(SimpleSuggestionItem::new);
+        });
+    }
+
+    /**
+     * Records that {@code phrase} was selected now. Returns right away, the change is applied in
+     * the background. Ignored once closed.
+     */
+    public void record(@NonNull String phrase) {
+        final String normalized = normalize(phrase);
+        if (normalized.isEmpty()) {
+            return;
+        }
+        final double rank = clock.now(TimeUnit.MILLISECONDS) / halfLifeMillis;
+        worker.schedule(() -> add(normalized, rank));
+    }
+
+    /**
+     * Forgets {@code phrase}, for example when the user deletes it from their history. Returns right
+     * away, the change is applied in the background. Ignored once closed.
+     */
+    public void remove(@NonNull String phrase) {
+        final String normalized = normalize(phrase);
+        worker.schedule(() -> removePhrase(normalized));
+    }
+
+    /**
+     * @return Completes once every change made before subscribing has been applied and written,
+     * or once the source is closed, since the worker no longer runs anything after that.
+     */
+    @NonNull
+    public Completable flush() {
+        return Completable.create(emitter -> worker.schedule(emitter::onComplete)).ambWith(closed);
+    }
+
+    /**
+     * @return Number of phrases in the history.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Number of changes that could not be read from or written to the history file. They
+     * are still applied in memory.
+     */
+    public long writeErrorCount() {
+        return writeErrorCount.get();
+    }
+
+    /**
+     * Closes the history file after pending changes are written. Later changes are ignored.
+     */
+    @Override
+    public void close() {
+        worker.schedule(() -> {
+            if (log != null) {
+                try {
+                    log.close();
+                } catch (IOException e) {
+                    writeErrorCount.incrementAndGet();
+                }
+                log = null;
+            }
+            worker.dispose();
+            closed.onComplete();
+        });
+    }
+
+    private void load(@NonNull File file) {
+        final HistoryIndex loaded = new HistoryIndex(maxResults);
+        try {
+            log = new HistoryLog(file);
+            log.replay(loaded::add, loaded::remove);
+        } catch (IOException e) {
+            writeErrorCount.incrementAndGet();
+        }
+        while (loaded.size() > maxEntries) {
+            loaded.remove(loaded.lowest());
+        }
+        swap(loaded);
+        maybeCompact();
+    }
+
+    private void add(@NonNull String phrase, double rank) {
+        String evicted = null;
+        lock.writeLock().lock();
+        try {
+            index.add(phrase, rank);
+            if (index.size() > maxEntries) {
+                evicted = index.lowest();
+                index.remove(evicted);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (log == null) {
+            return;
+        }
+        try {
+            log.appendAdd(phrase, rank);
+            if (evicted != null) {
+                log.appendRemove(evicted);
+            }
+        } catch (IOException e) {
+            writeErrorCount.incrementAndGet();
+        }
+        maybeCompact();
+    }
+
+    private void removePhrase(@NonNull String phrase) {
+        final boolean removed;
+        lock.writeLock().lock();
+        try {
+            removed = index.remove(phrase);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (!removed || log == null) {
+            return;
+        }
+        try {
+            log.appendRemove(phrase);
+        } catch (IOException e) {
+            writeErrorCount.incrementAndGet();
+        }
+        maybeCompact();
+    }
+
+    /**
+     * Rewrites the history file and rebuilds the index once the file has grown well beyond the
+     * history it holds. The index is only changed on the worker, so it can be read here without a
+     * lock.
+     */
+    private void maybeCompact() {
+        if (log == null || log.recordCount() <= 2 * index.size() + COMPACTION_SLACK) {
+            return;
+        }
+        try {
+            log.rewrite(index);
+        } catch (IOException e) {
+            writeErrorCount.incrementAndGet();
+            return;
+        }
+        final HistoryIndex rebuilt = new HistoryIndex(maxResults);
+        index.forEach(rebuilt::add);
+        swap(rebuilt);
+    }
+
+    private void swap(@NonNull HistoryIndex index) {
+        lock.writeLock().lock();
+        try {
+            this.index = index;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @NonNull
+    private static String normalize(@NonNull String phrase) {
+        return Util.appendNormalizedPhrase(phrase, new StringBuilder(phrase.length())).toString();
+    }
+
+    public static final class Builder {
+        @Nullable
+        private File file;
+        private double halfLifeMillis = TimeUnit.DAYS.toMillis(DEFAULT_HALF_LIFE_DAYS);
+        private int maxEntries = DEFAULT_MAX_ENTRIES;
+        private int maxResults = DEFAULT_MAX_RESULTS;
+        @NonNull
+        private Scheduler scheduler = Schedulers.io();
+
+        private Builder() {
+        }
+
+        /**
+         * File the history is kept in, created if needed. Without one the history only lives in
+         * memory.
+         */
+        @NonNull
+        public Builder file(@NonNull File file) {
+            this.file = file;
+            return this;
+        }
+
+        /**
+         * Time after which the score of a selection has halved. Defaults to
+         * {@link #DEFAULT_HALF_LIFE_DAYS} days.
+         */
+        @NonNull
+        public Builder halfLife(long halfLife, @NonNull TimeUnit unit) {
+            if (halfLife <= 0) {
+                throw new IllegalArgumentException("halfLife <= 0: " + halfLife);
+            }
+            this.halfLifeMillis = unit.toMillis(halfLife);
+            return this;
+        }
+
+        /**
+         * Maximum number of phrases kept, the lowest ranked are forgotten first. Defaults to
+         * {@link #DEFAULT_MAX_ENTRIES}.
+         */
+        @NonNull
+        public Builder maxEntries(int maxEntries) {
+            if (maxEntries <= 0) {
+                throw new IllegalArgumentException("maxEntries <= 0: " + maxEntries);
+            }
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * Maximum number of completions per call. Defaults to {@link #DEFAULT_MAX_RESULTS}.
+         */
+        @NonNull
+        public Builder maxResults(int maxResults) {
+            if (maxResults <= 0) {
+                throw new IllegalArgumentException("maxResults <= 0: " + maxResults);
+            }
+            this.maxResults = maxResults;
+            return this;
+        }
+
+        /**
+         * Scheduler whose worker applies and writes changes one at a time, also used as the clock.
+         * Defaults to {@link Schedulers#io()}.
+         */
+        @NonNull
+        public Builder scheduler(@NonNull Scheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        @NonNull
+        public HistorySuggestionSource build() {
+            return new HistorySuggestionSource(this);
+        }
+    }
+}
@@ -0,0 +1,448 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.source.local;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Immutable weighted phrase index stored entirely in primitive arrays.
+ * <p>
+ * Phrases are normalized, sorted and concatenated into a single {@code char[]}, so all phrases
+ * starting with a prefix form a contiguous range found by two binary searches. A segment tree over
+ * the weights answers "heaviest phrase in range" in {@code O(log n)}, and the top {@code k}
+ * phrases of a range are enumerated best first by repeatedly splitting the range around its
+ * heaviest phrase.
+ * <p>
+ * Per phrase this costs its characters plus four to six {@code int}s: its offset, its weight and
+ * two to four segment tree nodes, since the tree has a power of two leaves. There is no object per
+ * phrase.
+ */
+final class CorpusIndex {
+
+    @NonNull
+    private final char[] chars;
+    /**
+     * Start of phrase {@code i} in {@link #chars}, with a trailing entry marking the end of the last.
+     */
+    @NonNull
+    private final int[] offsets;
+    @NonNull
+    private final int[] weights;
+    /**
+     * Segment tree of phrase indices; node {@code n} holds the heaviest phrase of its range,
+     * leaves start at {@link #leaves}.
+     */
+    @NonNull
+    private final int[] tree;
+    private final int leaves;
+    private final int size;
+
+    private CorpusIndex(@NonNull char[] chars, @NonNull int[] offsets, @NonNull int[] weights, int size) {
+        this.chars = chars;
+        this.offsets = offsets;
+        this.weights = weights;
+        this.size = size;
+        int leaves = 1;
+        while (leaves < size) {
+            leaves <<= 1;
+        }
+        this.leaves = leaves;
+        this.tree = new int[2 * leaves];
+        Arrays.fill(tree, -1);
+        for (int i = 0; i < size; i++) {
+            tree[leaves + i] = i;
+        }
+        for (int node = leaves - 1; node >= 1; node--) {
+            tree[node] = heavier(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int weight(int phrase) {
+        return weights[phrase];
+    }
+
+    int length(int phrase) {
+        return offsets[phrase + 1] - offsets[phrase];
+    }
+
+    char charAt(int phrase, int index) {
+        return chars[offsets[phrase] + index];
+    }
+
+    @NonNull
+    String phrase(int phrase) {
+        return new String(chars, offsets[phrase], length(phrase));
+    }
+
+    /**
+     * @return First phrase that starts with {@code prefix} or sorts after it.
+     */
+    int lowerBound(@NonNull CharSequence prefix) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (comparePrefix(middle, prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return First phrase after {@code from} that sorts after every phrase starting with {@code prefix}.
+     */
+    int upperBound(@NonNull CharSequence prefix, int from) {
+        int low = from;
+        int high = size;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (comparePrefix(middle, prefix) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return First phrase after {@code phrase} that does not share its first {@code depth}
+     * characters, which must all exist.
+     */
+    int subtreeEnd(int phrase, int depth) {
+        final int start = offsets[phrase];
+        // Gallop first, most subtrees searched for are only a few phrases long.
+        int low = phrase + 1;
+        int step = 1;
+        while (low < size && sharesPrefix(low, start, depth)) {
+            low = phrase + 1 + step;
+            step <<= 1;
+        }
+        int high = Math.min(low, size);
+        low = phrase + 1 + (step >>> 2);
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (sharesPrefix(middle, start, depth)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Heaviest phrase in {@code [from, to)}, preferring the earlier one on equal weights, or
+     * {@code -1} for an empty range.
+     */
+    int heaviest(int from, int to) {
+        int best = -1;
+        for (int low = from + leaves, high = to + leaves; low < high; low >>>= 1, high >>>= 1) {
+            if ((low & 1) == 1) {
+                best = heavier(best, tree[low++]);
+            }
+            if ((high & 1) == 1) {
+                best = heavier(best, tree[--high]);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Compares phrase {@code phrase} with the range of phrases starting with {@code prefix}.
+     *
+     * @return Negative if the phrase sorts before the range, {@code 0} if it starts with
+     * {@code prefix}, positive if it sorts after the range.
+     */
+    private int comparePrefix(int phrase, @NonNull CharSequence prefix) {
+        final int start = offsets[phrase];
+        final int length = offsets[phrase + 1] - start;
+        final int common = Math.min(length, prefix.length());
+        for (int i = 0; i < common; i++) {
+            final int difference = chars[start + i] - prefix.charAt(i);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length < prefix.length() ? -1 : 0;
+    }
+
+    private boolean sharesPrefix(int phrase, int prefixStart, int depth) {
+        final int start = offsets[phrase];
+        if (offsets[phrase + 1] - start < depth) {
+            return false;
+        }
+        for (int i = 0; i < depth; i++) {
+            if (chars[start + i] != chars[prefixStart + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int heavier(int left, int right) {
+        if (left == -1) {
+            return right;
+        }
+        if (right == -1) {
+            return left;
+        }
+        if (weights[left] != weights[right]) {
+            return weights[left] > weights[right] ? left : right;
+        }
+        return left < right ? left : right;
+    }
+
+    /**
+     * Enumerates the phrases of a range heaviest first.
+     * <p>
+     * Keeps a max-heap of sub ranges keyed by their heaviest phrase. Taking the top range yields
+     * its heaviest phrase and pushes the two sub ranges on either side of it, so producing {@code k}
+     * phrases takes {@code O(k log k + k log n)} time and {@code O(k)} memory.
+     */
+    final class TopK {
+        private final int[] from;
+        private final int[] to;
+        private final int[] best;
+        private int count;
+        private int remaining;
+
+        TopK(int rangeFrom, int rangeTo, int limit) {
+            this(1, limit);
+            push(rangeFrom, rangeTo);
+        }
+
+        /**
+         * Creates an empty enumeration to be seeded with up to {@code ranges} disjoint ranges
+         * through {@link #add(int, int)}.
+         */
+        TopK(int ranges, int limit) {
+            final int capacity = Math.max(1, ranges + 2 * limit);
+            from = new int[capacity];
+            to = new int[capacity];
+            best = new int[capacity];
+            remaining = limit;
+        }
+
+        void add(int rangeFrom, int rangeTo) {
+            push(rangeFrom, rangeTo);
+        }
+
+        /**
+         * @return Next heaviest phrase, or {@code -1} once the range or the limit is exhausted.
+         */
+        int next() {
+            if (count == 0 || remaining == 0) {
+                return -1;
+            }
+            final int rangeFrom = from[0];
+            final int rangeTo = to[0];
+            final int phrase = best[0];
+            count--;
+            if (count > 0) {
+                move(count, 0);
+                siftDown(0);
+            }
+            remaining--;
+            if (remaining > 0) {
+                push(rangeFrom, phrase);
+                push(phrase + 1, rangeTo);
+            }
+            return phrase;
+        }
+
+        private void push(int rangeFrom, int rangeTo) {
+            final int phrase = heaviest(rangeFrom, rangeTo);
+            if (phrase == -1) {
+                return;
+            }
+            int slot = count++;
+            from[slot] = rangeFrom;
+            to[slot] = rangeTo;
+            best[slot] = phrase;
+            while (slot > 0) {
+                final int parent = (slot - 1) >>> 1;
+                if (heavier(best[parent], best[slot]) == best[parent]) {
+                    break;
+                }
+                swap(parent, slot);
+                slot = parent;
+            }
+        }
+
+        private void siftDown(int slot) {
+            while (true) {
+                final int left = 2 * slot + 1;
+                if (left >= count) {
+                    return;
+                }
+                final int right = left + 1;
+                int child = left;
+                if (right < count && heavier(best[left], best[right]) == best[right]) {
+                    child = right;
+                }
+                if (heavier(best[slot], best[child]) == best[slot]) {
+                    return;
+                }
+                swap(slot, child);
+                slot = child;
+            }
+        }
+
+        private void move(int source, int target) {
+            from[target] = from[source];
+            to[target] = to[source];
+            best[target] = best[source];
+        }
+
+        private void swap(int a, int b) {
+            int temp = from[a];
+            from[a] = from[b];
+            from[b] = temp;
+            temp = to[a];
+            to[a] = to[b];
+            to[b] = temp;
+            temp = best[a];
+            best[a] = best[b];
+            best[b] = temp;
+        }
+    }
+
+    /**
+     * Accumulates phrases in growable primitive arrays and sorts them into a {@link CorpusIndex}.
+     */
+    static final class Builder {
+        private char[] chars = new char[1024];
+        private int[] offsets = new int[65];
+        private int[] weights = new int[64];
+        private int charCount;
+        private int size;
+
+        /**
+         * @param phrase Phrase, already normalized.
+         * @param weight Weight of the phrase, heavier phrases are returned first.
+         */
+        void add(@NonNull CharSequence phrase, int weight) {
+            if (phrase.length() == 0) {
+                return;
+            }
+            if (charCount + phrase.length() > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + phrase.length()));
+            }
+            if (size == weights.length) {
+                weights = Arrays.copyOf(weights, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2 + 1);
+            }
+            for (int i = 0; i < phrase.length(); i++) {
+                chars[charCount++] = phrase.charAt(i);
+            }
+            weights[size] = weight;
+            offsets[++size] = charCount;
+        }
+
+        /**
+         * Sorts the phrases, keeps the heaviest of duplicate phrases and builds the index. The
+         * builder must not be used afterwards.
+         */
+        @NonNull
+        CorpusIndex build() {
+            final int[] order = sortedOrder();
+            final char[] sortedChars = new char[charCount];
+            final int[] sortedOffsets = new int[size + 1];
+            final int[] sortedWeights = new int[size];
+            int sortedSize = 0;
+            int position = 0;
+            for (int i = 0; i < size; i++) {
+                final int phrase = order[i];
+                if (sortedSize > 0 && compare(phrase, order[i - 1]) == 0) {
+                    sortedWeights[sortedSize - 1] = Math.max(sortedWeights[sortedSize - 1], weights[phrase]);
+                    continue;
+                }
+                final int length = offsets[phrase + 1] - offsets[phrase];
+                System.arraycopy(chars, offsets[phrase], sortedChars, position, length);
+                sortedOffsets[sortedSize] = position;
+                sortedWeights[sortedSize] = weights[phrase];
+                position += length;
+                sortedSize++;
+                sortedOffsets[sortedSize] = position;
+            }
+            chars = null;
+            offsets = null;
+            weights = null;
+            return new CorpusIndex(
+                    position == sortedChars.length ? sortedChars : Arrays.copyOf(sortedChars, position),
+                    sortedSize == size ? sortedOffsets : Arrays.copyOf(sortedOffsets, sortedSize + 1),
+                    sortedSize == size ? sortedWeights : Arrays.copyOf(sortedWeights, sortedSize),
+                    sortedSize);
+        }
+
+        /**
+         * Bottom up merge sort of phrase indices, avoiding boxed comparators.
+         */
+        @NonNull
+        private int[] sortedOrder() {
+            int[] order = new int[size];
+            int[] buffer = new int[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            for (int width = 1; width < size; width *= 2) {
+                for (int low = 0; low < size; low += 2 * width) {
+                    final int middle = Math.min(low + width, size);
+                    final int high = Math.min(low + 2 * width, size);
+                    int left = low;
+                    int right = middle;
+                    for (int out = low; out < high; out++) {
+                        if (left < middle && (right >= high || compare(order[left], order[right]) <= 0)) {
+                            buffer[out] = order[left++];
+                        } else {
+                            buffer[out] = order[right++];
+                        }
+                    }
+                }
+                final int[] temp = order;
+                order = buffer;
+                buffer = temp;
+            }
+            return order;
+        }
+
+        private int compare(int a, int b) {
+            final int aStart = offsets[a];
+            final int aLength = offsets[a + 1] - aStart;
+            final int bStart = offsets[b];
+            final int bLength = offsets[b + 1] - bStart;
+            final int common = Math.min(aLength, bLength);
+            for (int i = 0; i < common; i++) {
+                final int difference = chars[aStart + i] - chars[bStart + i];
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+            return aLength - bLength;
+        }
+    }
+}
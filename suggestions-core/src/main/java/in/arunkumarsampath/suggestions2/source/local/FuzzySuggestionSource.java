@@ -0,0 +1,338 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.source.local;
+
+import android.support.annotation.NonNull;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+import in.arunkumarsampath.suggestions2.util.Util;
+import io.reactivex.Flowable;
+
+/**
+ * A {@link SuggestionSource} that completes prefixes from a {@link LocalCorpusSuggestionSource}
+ * while tolerating typos, so that {@code "batmna"} and {@code "btaman"} still complete to
+ * {@code "batman"}.
+ * <p>
+ * A phrase matches when some prefix of it is within a bounded optimal string alignment distance of
+ * the query, counting insertions, deletions, substitutions and adjacent transpositions as one edit
+ * each. The sorted corpus is walked as an implicit trie: consecutive phrases reuse the distance
+ * rows of their common prefix, and a whole run of phrases sharing a prefix is skipped with a binary
+ * search as soon as that prefix can no longer match. A prefix that matches is recorded as a range
+ * of phrases rather than phrase by phrase, so matching does not allocate per candidate.
+ * <p>
+ * Results are ordered by distance and then by weight. The number of edits allowed grows with the
+ * query, one per three characters up to {@code maxEdits}, since short queries with typos match
+ * almost anything. Each number of edits is searched in turn, comparing at most
+ * {@code maxPrefixes} phrase prefixes with the query, so that a long query close to nothing still
+ * returns within a bounded time, with the closest completions found until then.
+ */
+public final class FuzzySuggestionSource implements SuggestionSource<SimpleSuggestionItem> {
+
+    public static final int DEFAULT_MAX_EDITS = 2;
+    public static final int DEFAULT_MAX_PREFIXES = 2048;
+
+    @NonNull
+    private final CorpusIndex index;
+    private final int maxEdits;
+    private final int maxResults;
+    private final int maxPrefixes;
+
+    public FuzzySuggestionSource(@NonNull LocalCorpusSuggestionSource corpus) {
+        this(corpus, DEFAULT_MAX_EDITS, LocalCorpusSuggestionSource.DEFAULT_MAX_RESULTS);
+    }
+
+    public FuzzySuggestionSource(@NonNull LocalCorpusSuggestionSource corpus, int maxEdits, int maxResults) {
+        this(corpus, maxEdits, maxResults, DEFAULT_MAX_PREFIXES);
+    }
+
+    /**
+     * @param corpus      Corpus to complete from.
+     * @param maxEdits    Maximum number of edits tolerated for long queries.
+     * @param maxResults  Maximum number of completions returned per query.
+     * @param maxPrefixes Maximum number of phrase prefixes compared with the query per number of
+     *                    edits, bounding the time a query takes.
+     */
+    public FuzzySuggestionSource(@NonNull LocalCorpusSuggestionSource corpus, int maxEdits, int maxResults, int maxPrefixes) {
+        if (maxEdits < 0) {
+            throw new IllegalArgumentException("maxEdits < 0: " + maxEdits);
+        }
+        if (maxResults <= 0) {
+            throw new IllegalArgumentException("maxResults <= 0: " + maxResults);
+        }
+        if (maxPrefixes <= 0) {
+            throw new IllegalArgumentException("maxPrefixes <= 0: " + maxPrefixes);
+        }
+        this.index = corpus.index();
+        this.maxEdits = maxEdits;
+        this.maxResults = maxResults;
+        this.maxPrefixes = maxPrefixes;
+    }
+
+    @NonNull
+    @Override
+    public Flowable<SimpleSuggestionItem> getSuggestions(@NonNull String value) {
+        return Flowable.generate(() -> new Matcher(value).match(), (results, emitter) -> {
+            if (results.position == results.count) {
+                emitter.onComplete();
+            } else {
+                emitter.onNext(new SimpleSuggestionItem(index.phrase(results.phrases[results.position++])));
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Matched phrases in result order.
+     */
+    private static final class Results {
+        final int[] phrases;
+        int count;
+        int position;
+
+        Results(int capacity) {
+            phrases = new int[capacity];
+        }
+
+        boolean contains(int phrase) {
+            for (int i = 0; i < count; i++) {
+                if (phrases[i] == phrase) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * State of a single query. All buffers are sized up front from the query length, except the
+     * list of matched ranges which grows geometrically.
+     */
+    private final class Matcher {
+        private final char[] query;
+        private final int edits;
+        private final int columns;
+        /**
+         * Distance rows, row {@code d} holding the distances between the first {@code d}
+         * characters of the current phrase and every prefix of the query.
+         */
+        private final int[] rows;
+        /**
+         * Lowest distance recorded for a prefix of the current phrase no longer than {@code d}.
+         */
+        private final int[] best;
+
+        /**
+         * Phrases starting with the first character of the query, searched first.
+         */
+        private final int firstFrom;
+        private final int firstTo;
+        /**
+         * Prefixes compared with the query by the current pass.
+         */
+        private int prefixes;
+
+        private int[] rangeFrom = new int[16];
+        private int[] rangeTo = new int[16];
+        private int[] rangeDistance = new int[16];
+        private int rangeCount;
+
+        Matcher(@NonNull String value) {
+            final StringBuilder normalized = Util.appendNormalizedPhrase(value, new StringBuilder(value.length()));
+            query = new char[normalized.length()];
+            normalized.getChars(0, query.length, query, 0);
+            edits = Math.min(maxEdits, query.length / 3);
+            columns = query.length + 1;
+            final int maxDepth = query.length + edits;
+            rows = new int[(maxDepth + 1) * columns];
+            best = new int[maxDepth + 1];
+            for (int j = 0; j < columns; j++) {
+                rows[j] = j;
+            }
+            best[0] = Integer.MAX_VALUE;
+            if (query.length > 0) {
+                final CharSequence first = CharBuffer.wrap(query, 0, 1);
+                firstFrom = index.lowerBound(first);
+                firstTo = index.upperBound(first, firstFrom);
+            } else {
+                firstFrom = 0;
+                firstTo = 0;
+            }
+        }
+
+        /**
+         * Searches with an increasing number of edits, stopping as soon as a pass fills the
+         * results. Every phrase found by a pass ranks ahead of any phrase only a later pass would
+         * find, so each pass only adds the phrases at its own distance, and a typo free or single
+         * typo query rarely needs the expensive last pass.
+         * <p>
+         * A pass that compares more than {@code maxPrefixes} prefixes stops early and adds what it
+         * found so far. Long queries that match nothing closely otherwise run every pass over a
+         * large part of the corpus. Typos are rarest in the first character, so phrases starting
+         * with it are searched first.
+         */
+        @NonNull
+        Results match() {
+            final Results results = new Results(maxResults);
+            if (query.length == 0) {
+                return results;
+            }
+            for (int pass = 0; pass <= edits && results.count < maxResults; pass++) {
+                rangeCount = 0;
+                prefixes = 0;
+                final boolean complete = collectRanges(firstFrom, firstTo, pass)
+                        && collectRanges(0, firstFrom, pass)
+                        && collectRanges(firstTo, index.size(), pass);
+                collectResults(pass, results);
+                if (!complete) {
+                    break;
+                }
+            }
+            return results;
+        }
+
+        private void collectResults(int distance, @NonNull Results results) {
+            int ranges = 0;
+            for (int r = 0; r < rangeCount; r++) {
+                if (rangeDistance[r] == distance) {
+                    ranges++;
+                }
+            }
+            if (ranges == 0) {
+                return;
+            }
+            // Ranges of one distance are disjoint, but may contain ranges of a smaller distance
+            // whose phrases were already taken, so allow for skipping that many duplicates.
+            final CorpusIndex.TopK topK = index.new TopK(ranges, maxResults);
+            for (int r = 0; r < rangeCount; r++) {
+                if (rangeDistance[r] == distance) {
+                    topK.add(rangeFrom[r], rangeTo[r]);
+                }
+            }
+            int phrase;
+            while (results.count < maxResults && (phrase = topK.next()) != -1) {
+                if (!results.contains(phrase)) {
+                    results.phrases[results.count++] = phrase;
+                }
+            }
+        }
+
+        /**
+         * Searches the phrases in {@code [from, to)}, which must not split a run of phrases sharing
+         * their first character.
+         *
+         * @return Whether every phrase was searched, rather than stopping after
+         * {@code maxPrefixes} prefixes.
+         */
+        private boolean collectRanges(int from, int to, int edits) {
+            final int maxDepth = query.length + edits;
+            int previous = -1;
+            int previousDepth = 0;
+            int phrase = from;
+            while (phrase < to) {
+                final int length = index.length(phrase);
+                int depth = previous == -1 ? 0 : commonPrefix(previous, phrase, Math.min(previousDepth, length));
+                int next = phrase + 1;
+                final int limit = Math.min(length, maxDepth);
+                while (depth < limit) {
+                    if (++prefixes > maxPrefixes) {
+                        return false;
+                    }
+                    depth++;
+                    final int rowMin = computeRow(phrase, depth, edits);
+                    final int distance = query.length <= depth + edits ? rows[depth * columns + query.length] : edits + 1;
+                    int bestDistance = best[depth - 1];
+                    if (distance <= edits && distance < bestDistance) {
+                        bestDistance = distance;
+                        addRange(phrase, index.subtreeEnd(phrase, depth), distance);
+                    }
+                    best[depth] = bestDistance;
+                    if (rowMin > edits || rowMin >= bestDistance || depth == maxDepth) {
+                        // No longer phrase under this prefix can match, or match any closer.
+                        next = index.subtreeEnd(phrase, depth);
+                        break;
+                    }
+                }
+                previous = phrase;
+                previousDepth = depth;
+                phrase = next;
+            }
+            return true;
+        }
+
+        /**
+         * Fills row {@code depth} for the {@code depth}-th character of {@code phrase}. Only the
+         * band of columns within {@code edits} of the diagonal is computed, since every cell
+         * outside it exceeds {@code edits}, so a row costs {@code 2 * edits + 1} cells whatever
+         * the length of the query. The cells bordering the band are set to {@code edits + 1}.
+         *
+         * @return Smallest value in the row, exact if it is at most {@code edits}.
+         */
+        private int computeRow(int phrase, int depth, int edits) {
+            final int row = depth * columns;
+            final int above = row - columns;
+            final char c = index.charAt(phrase, depth - 1);
+            final char before = depth > 1 ? index.charAt(phrase, depth - 2) : 0;
+            final int from = Math.max(1, depth - edits);
+            final int to = Math.min(query.length, depth + edits);
+            rows[row] = depth;
+            if (from > 1) {
+                rows[row + from - 1] = edits + 1;
+            }
+            if (to < query.length) {
+                rows[row + to + 1] = edits + 1;
+            }
+            int rowMin = depth;
+            for (int j = from; j <= to; j++) {
+                final char q = query[j - 1];
+                int value = Math.min(rows[above + j] + 1, rows[row + j - 1] + 1);
+                value = Math.min(value, rows[above + j - 1] + (q == c ? 0 : 1));
+                if (depth > 1 && j > 1 && q == before && query[j - 2] == c) {
+                    value = Math.min(value, rows[above - columns + j - 2] + 1);
+                }
+                rows[row + j] = value;
+                if (value < rowMin) {
+                    rowMin = value;
+                }
+            }
+            return rowMin;
+        }
+
+        private int commonPrefix(int a, int b, int limit) {
+            int i = 0;
+            while (i < limit && index.charAt(a, i) == index.charAt(b, i)) {
+                i++;
+            }
+            return i;
+        }
+
+        private void addRange(int from, int to, int distance) {
+            if (rangeCount == rangeFrom.length) {
+                rangeFrom = Arrays.copyOf(rangeFrom, rangeCount * 2);
+                rangeTo = Arrays.copyOf(rangeTo, rangeCount * 2);
+                rangeDistance = Arrays.copyOf(rangeDistance, rangeCount * 2);
+            }
+            rangeFrom[rangeCount] = from;
+            rangeTo[rangeCount] = to;
+            rangeDistance[rangeCount] = distance;
+            rangeCount++;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.source.local;
+
+import android.support.annotation.NonNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+import in.arunkumarsampath.suggestions2.source.batch.BatchResult;
+import in.arunkumarsampath.suggestions2.source.batch.BatchSuggestionSource;
+import in.arunkumarsampath.suggestions2.util.Util;
+import io.reactivex.Flowable;
+
+/**
+ * A {@link SuggestionSource} that completes prefixes from a weighted phrase list held in memory,
+ * without any network access.
+ * <p>
+ * Phrases are normalized to lower case with single spaces and kept in a {@link CorpusIndex}, which
+ * stores the whole corpus in a handful of primitive arrays rather than one object per phrase or
+ * trie node. Completions are produced heaviest first and only as they are requested, so a
+ * subscriber taking a single item does not pay for {@code maxResults}.
+ * <p>
+ * Corpora are usually loaded with {@link Builder#load(Reader)} from lines of the form
+ * {@code phrase<TAB>weight}.
+ * <p>
+ * Batches are resolved in query order on the subscribing thread, one query per request, reusing
+ * a single normalization buffer across the batch.
+ */
+public final class LocalCorpusSuggestionSource implements BatchSuggestionSource<SimpleSuggestionItem> {
+
+    public static final int DEFAULT_MAX_RESULTS = 10;
+
+    @NonNull
+    private final CorpusIndex index;
+    private final int maxResults;
+
+    private LocalCorpusSuggestionSource(@NonNull Builder builder) {
+        this.index = builder.index.build();
+        this.maxResults = builder.maxResults;
+    }
+
+    @NonNull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @NonNull
+    @Override
+    public Flowable<SimpleSuggestionItem> getSuggestions(@NonNull String value) {
+        return Flowable.generate(() -> topK(value, new StringBuilder(value.length())), (topK, emitter) -> {
+            final int phrase = topK.next();
+            if (phrase == -1) {
+                emitter.onComplete();
+            } else {
+                emitter.onNext(new SimpleSuggestionItem(index.phrase(phrase)));
+            }
+            return topK;
+        });
+    }
+
+    @NonNull
+    @Override
+    public Flowable<BatchResult<SimpleSuggestionItem>> getSuggestionsBatch(@NonNull Collection<String> queries) {
+        return Flowable.generate(() -> new Batch(new ArrayList<>(queries).iterator()), (batch, emitter) -> {
+            if (!batch.queries.hasNext()) {
+                emitter.onComplete();
+                return batch;
+            }
+            final String query = batch.queries.next();
+            batch.prefix.setLength(0);
+            final CorpusIndex.TopK topK = topK(query, batch.prefix);
+            final List<SimpleSuggestionItem> items = new ArrayList<>(maxResults);
+            int phrase;
+            while ((phrase = topK.next()) != -1) {
+                items.add(new SimpleSuggestionItem(index.phrase(phrase)));
+            }
+            emitter.onNext(BatchResult.success(query, items));
+            return batch;
+        });
+    }
+
+    /**
+     * @param scratch Empty buffer to normalize {@code value} into.
+     * @return The heaviest completions of {@code value}.
+     */
+    @NonNull
+    private CorpusIndex.TopK topK(@NonNull String value, @NonNull StringBuilder scratch) {
+        final StringBuilder prefix = Util.appendNormalizedPhrase(value, scratch);
+        if (prefix.length() == 0) {
+            return index.new TopK(0, 0, 0);
+        }
+        final int from = index.lowerBound(prefix);
+        final int to = index.upperBound(prefix, from);
+        return index.new TopK(from, to, maxResults);
+    }
+
+    /**
+     * @return Number of distinct phrases in the corpus.
+     */
+    public int size() {
+        return index.size();
+    }
+
+    @NonNull
+    CorpusIndex index() {
+        return index;
+    }
+
+    private static final class Batch {
+        final Iterator<String> queries;
+        final StringBuilder prefix = new StringBuilder();
+
+        Batch(@NonNull Iterator<String> queries) {
+            this.queries = queries;
+        }
+    }
+
+    public static final class Builder {
+        private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+        private final CorpusIndex.Builder index = new CorpusIndex.Builder();
+        private final StringBuilder scratch = new StringBuilder();
+        private int maxResults = DEFAULT_MAX_RESULTS;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a phrase to the corpus. When the same normalized phrase is added more than once, the
+         * highest weight is kept.
+         *
+         * @param phrase Phrase to complete to.
+         * @param weight Weight of the phrase, heavier phrases are suggested first.
+         */
+        @NonNull
+        public Builder add(@NonNull CharSequence phrase, int weight) {
+            scratch.setLength(0);
+            index.add(Util.appendNormalizedPhrase(phrase, scratch), weight);
+            return this;
+        }
+
+        /**
+         * Adds every line of {@code reader} to the corpus. Lines are either a bare phrase with a
+         * weight of {@code 1} or a phrase and an integer weight separated by a tab. Blank lines are
+         * skipped. The reader is not closed.
+         *
+         * @throws IOException If reading fails or a weight is not an integer.
+         */
+        @NonNull
+        public Builder load(@NonNull Reader reader) throws IOException {
+            final BufferedReader lines = reader instanceof BufferedReader
+                    ? (BufferedReader) reader
+                    : new BufferedReader(reader);
+            String line;
+            int lineNumber = 0;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                final int tab = line.lastIndexOf('\t');
+                if (tab == -1) {
+                    add(line, 1);
+                    continue;
+                }
+                final int weight;
+                try {
+                    weight = Integer.parseInt(line.substring(tab + 1).trim());
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid weight on line " + lineNumber + ": " + line, e);
+                }
+                add(line.subSequence(0, tab), weight);
+            }
+            return this;
+        }
+
+        /**
+         * Same as {@link #load(Reader)} for UTF-8 encoded input. The stream is not closed.
+         */
+        @NonNull
+        public Builder load(@NonNull InputStream input) throws IOException {
+            return load(new InputStreamReader(input, UTF_8));
+        }
+
+        /**
+         * @param maxResults Maximum number of completions returned per query.
+         */
+        @NonNull
+        public Builder maxResults(int maxResults) {
+            if (maxResults <= 0) {
+                throw new IllegalArgumentException("maxResults <= 0: " + maxResults);
+            }
+            this.maxResults = maxResults;
+            return this;
+        }
+
+        /**
+         * Sorts and indexes the loaded phrases. The builder must not be used afterwards.
+         */
+        @NonNull
+        public LocalCorpusSuggestionSource build() {
+            return new LocalCorpusSuggestionSource(this);
+        }
+    }
+}
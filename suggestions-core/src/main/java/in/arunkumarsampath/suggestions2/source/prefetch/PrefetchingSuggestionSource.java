@@ -0,0 +1,276 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.source.prefetch;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import in.arunkumarsampath.suggestions2.item.SuggestionItem;
+import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+import in.arunkumarsampath.suggestions2.source.cache.CachingSuggestionSource;
+import in.arunkumarsampath.suggestions2.source.resilience.TokenBucket;
+import in.arunkumarsampath.suggestions2.util.Util;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * A {@link SuggestionSource} decorator that uses the idle time between keystrokes to fetch the
+ * queries the user is likely to type next into a {@link CachingSuggestionSource}.
+ * <p>
+ * Once a call for a query ends, whether it completed or was cancelled after the first few items
+ * by {@code take} or by a newer keystroke, the top suggestions seen that extend it predict the next
+ * keystroke: after {@code "bat"} returned {@code "batman"} and {@code "bath"}, the queries
+ * {@code "batm"} and {@code "bath"} are prefetched. At most {@code maxPrefetches} queries are
+ * predicted per call, and queries that are already cached are skipped.
+ * <p>
+ * Prefetching is best effort and bounded: a prediction is dropped rather than queued when
+ * {@code maxConcurrent} prefetches are already running or the {@link TokenBucket} is empty.
+ * Prefetches run on a low priority scheduler and their failures are ignored.
+ * <p>
+ * To have a keystroke join a prefetch of the same query that is still running rather than
+ * fetching it a second time, wrap the source inside the cache in a
+ * {@link in.arunkumarsampath.suggestions2.source.coalesce.CoalescingSuggestionSource}.
+ * <p>
+ * Use {@link Builder} to create an instance.
+ */
+public final class PrefetchingSuggestionSource<T extends SuggestionItem> implements SuggestionSource<T> {
+
+    public static final int DEFAULT_MAX_PREFETCHES = 3;
+    public static final int DEFAULT_MAX_CONCURRENT = 2;
+    public static final int DEFAULT_BURST = 8;
+    public static final long DEFAULT_REFILL_MILLIS = 500;
+
+    @NonNull
+    private final CachingSuggestionSource<T> cache;
+    private final int maxPrefetches;
+    @NonNull
+    private final Semaphore permits;
+    @NonNull
+    private final TokenBucket tokenBucket;
+    @NonNull
+    private final Scheduler scheduler;
+
+    private final AtomicLong prefetchCount = new AtomicLong();
+    private final AtomicLong skippedCount = new AtomicLong();
+
+    private PrefetchingSuggestionSource(@NonNull Builder<T> builder) {
+        this.cache = builder.cache;
+        this.maxPrefetches = builder.maxPrefetches;
+        this.permits = new Semaphore(builder.maxConcurrent);
+        this.scheduler = builder.scheduler != null ? builder.scheduler : LowPriority.SCHEDULER;
+        this.tokenBucket = builder.tokenBucket != null
+                ? builder.tokenBucket
+                : new TokenBucket(builder.burst, builder.refillNanos, TimeUnit.NANOSECONDS, scheduler);
+    }
+
+    @NonNull
+    @Override
+    public Flowable<T> getSuggestions(@NonNull String value) {
+        return Flowable.defer(() -> {
+            if (Util.prepareSearchTerm(value).isEmpty()) {
+                return cache.getSuggestions(value);
+            }
+            final List<String> predictions = new ArrayList<>(maxPrefetches);
+            // Callers usually take only the first few items, which cancels rather than completes,
+            // so prefetch whenever the call ends. Cancellation may come from another thread.
+            return cache.getSuggestions(value)
+                    .doOnNext(item -> {
+                        synchronized (predictions) {
+                            predict(value, item, predictions);
+                        }
+                    })
+                    .doFinally(() -> {
+                        final List<String> predicted;
+                        synchronized (predictions) {
+                            predicted = new ArrayList<>(predictions);
+                        }
+                        prefetch(predicted);
+                    });
+        });
+    }
+
+    /**
+     * Adds the query {@code value} extended by the next character of {@code item} to
+     * {@code predictions}, if {@code item} extends {@code value}. A space is followed by one more
+     * character, since a trailing space does not change the query.
+     */
+    private void predict(@NonNull String value, @NonNull T item, @NonNull List<String> predictions) {
+        if (predictions.size() == maxPrefetches) {
+            return;
+        }
+        final String suggestion = String.valueOf(item.value());
+        int end = value.length() + 1;
+        if (suggestion.length() < end || !suggestion.regionMatches(true, 0, value, 0, value.length())) {
+            return;
+        }
+        if (Character.isWhitespace(suggestion.charAt(end - 1))) {
+            if (suggestion.length() == end) {
+                return;
+            }
+            end++;
+        }
+        final String prediction = value + suggestion.substring(value.length(), end).toLowerCase(Locale.ROOT);
+        if (!predictions.contains(prediction)) {
+            predictions.add(prediction);
+        }
+    }
+
+    private void prefetch(@NonNull List<String> predictions) {
+        for (String prediction : predictions) {
+            if (cache.get(Util.prepareSearchTerm(prediction)) != null) {
+                continue;
+            }
+            if (!permits.tryAcquire()) {
+                skippedCount.incrementAndGet();
+                continue;
+            }
+            if (!tokenBucket.tryAcquire()) {
+                permits.release();
+                skippedCount.incrementAndGet();
+                continue;
+            }
+            prefetchCount.incrementAndGet();
+            cache.prefetch(prediction)
+                    .subscribeOn(scheduler)
+                    .doFinally(permits::release)
+                    .onErrorComplete()
+                    .subscribe();
+        }
+    }
+
+    /**
+     * @return Number of prefetches started.
+     */
+    public long prefetchCount() {
+        return prefetchCount.get();
+    }
+
+    /**
+     * @return Number of predicted queries that were not prefetched for lack of budget.
+     */
+    public long skippedCount() {
+        return skippedCount.get();
+    }
+
+    /**
+     * Default scheduler for prefetches, whose threads run at the lowest priority so that prefetching
+     * never competes with the UI or with requests for what the user actually typed.
+     */
+    private static final class LowPriority {
+        static final Scheduler SCHEDULER = Schedulers.from(Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "suggestions-prefetch");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }));
+    }
+
+    public static final class Builder<T extends SuggestionItem> {
+        @NonNull
+        private final CachingSuggestionSource<T> cache;
+        private int maxPrefetches = DEFAULT_MAX_PREFETCHES;
+        private int maxConcurrent = DEFAULT_MAX_CONCURRENT;
+        private TokenBucket tokenBucket;
+        private int burst = DEFAULT_BURST;
+        private long refillNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_REFILL_MILLIS);
+        private Scheduler scheduler;
+
+        /**
+         * @param cache Cache to fetch into, which also answers every call.
+         */
+        public Builder(@NonNull CachingSuggestionSource<T> cache) {
+            this.cache = cache;
+        }
+
+        /**
+         * Maximum number of queries predicted per call. Defaults to {@link #DEFAULT_MAX_PREFETCHES}.
+         */
+        @NonNull
+        public Builder<T> maxPrefetches(int maxPrefetches) {
+            if (maxPrefetches <= 0) {
+                throw new IllegalArgumentException("maxPrefetches <= 0: " + maxPrefetches);
+            }
+            this.maxPrefetches = maxPrefetches;
+            return this;
+        }
+
+        /**
+         * Maximum number of prefetches running at once. Defaults to {@link #DEFAULT_MAX_CONCURRENT}.
+         */
+        @NonNull
+        public Builder<T> maxConcurrent(int maxConcurrent) {
+            if (maxConcurrent <= 0) {
+                throw new IllegalArgumentException("maxConcurrent <= 0: " + maxConcurrent);
+            }
+            this.maxConcurrent = maxConcurrent;
+            return this;
+        }
+
+        /**
+         * Allows bursts of {@code burst} prefetches and one further prefetch every
+         * {@code refillPeriod}. Defaults to {@link #DEFAULT_BURST} prefetches and one per
+         * {@link #DEFAULT_REFILL_MILLIS}, 120 a minute.
+         */
+        @NonNull
+        public Builder<T> rateLimit(int burst, long refillPeriod, @NonNull TimeUnit unit) {
+            if (burst <= 0) {
+                throw new IllegalArgumentException("burst <= 0: " + burst);
+            }
+            if (refillPeriod <= 0) {
+                throw new IllegalArgumentException("refillPeriod <= 0: " + refillPeriod);
+            }
+            this.tokenBucket = null;
+            this.burst = burst;
+            this.refillNanos = unit.toNanos(refillPeriod);
+            return this;
+        }
+
+        /**
+         * Uses {@code tokenBucket}, which may be shared with a
+         * {@link in.arunkumarsampath.suggestions2.source.resilience.ResilientSuggestionSource} so
+         * that prefetches and regular calls draw on the same quota.
+         */
+        @NonNull
+        public Builder<T> rateLimit(@NonNull TokenBucket tokenBucket) {
+            this.tokenBucket = tokenBucket;
+            return this;
+        }
+
+        /**
+         * Scheduler prefetches run on and the clock of the rate limiter unless one is supplied.
+         * Defaults to a shared pool of minimum priority daemon threads.
+         */
+        @NonNull
+        public Builder<T> scheduler(@NonNull Scheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        @NonNull
+        public PrefetchingSuggestionSource<T> build() {
+            return new PrefetchingSuggestionSource<>(this);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.source.prefix;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import in.arunkumarsampath.suggestions2.item.SuggestionItem;
+import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+import in.arunkumarsampath.suggestions2.util.Util;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.observers.DisposableCompletableObserver;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * A {@link SuggestionSource} decorator that answers longer queries locally from the results of
+ * shorter queries it has already seen.
+ * <p>
+ * Every result returned by the wrapped source is indexed in a prefix trie against its normalized
+ * query. When a query such as {@code "batma"} arrives and {@code "bat"} was fetched earlier, the
+ * items of {@code "bat"} that start with {@code "batma"} are emitted immediately and the wrapped
+ * source is queried on {@code refreshScheduler} in the background so that the next keystroke sees
+ * complete results. Queries with no usable prefix, or whose refined result would be empty, go to
+ * the wrapped source directly.
+ * <p>
+ * Up to {@code maxEntries} queries are indexed; the oldest ones are dropped first. Indexed results
+ * expire after {@code ttl} like those of a
+ * {@link in.arunkumarsampath.suggestions2.source.cache.CachingSuggestionSource}, after which the
+ * query is fetched again.
+ */
+public final class PrefixRefiningSuggestionSource<T extends SuggestionItem> implements SuggestionSource<T> {
+
+    public static final int DEFAULT_MAX_ENTRIES = 128;
+    public static final long DEFAULT_TTL_MINUTES = 5;
+
+    @NonNull
+    private final SuggestionSource<T> source;
+    private final int maxEntries;
+    private final long ttlMillis;
+    @NonNull
+    private final Scheduler refreshScheduler;
+
+    private final PrefixTrie<Entry<T>> trie = new PrefixTrie<>();
+    private final ArrayDeque<String> insertionOrder = new ArrayDeque<>();
+    private final Set<String> refreshing = new HashSet<>();
+    private final CompositeDisposable refreshes = new CompositeDisposable();
+
+    public PrefixRefiningSuggestionSource(@NonNull SuggestionSource<T> source) {
+        this(source, DEFAULT_MAX_ENTRIES, Schedulers.io());
+    }
+
+    public PrefixRefiningSuggestionSource(@NonNull SuggestionSource<T> source,
+                                          int maxEntries,
+                                          @NonNull Scheduler refreshScheduler) {
+        this(source, maxEntries, DEFAULT_TTL_MINUTES, TimeUnit.MINUTES, refreshScheduler);
+    }
+
+    /**
+     * @param source           The source to refine results of.
+     * @param maxEntries       Maximum number of queries to keep indexed.
+     * @param ttl              Duration for which an indexed result is used.
+     * @param unit             Unit of {@code ttl}.
+     * @param refreshScheduler Scheduler on which background refreshes subscribe to {@code source},
+     *                         also used as the time source for expiry.
+     */
+    public PrefixRefiningSuggestionSource(@NonNull SuggestionSource<T> source,
+                                          int maxEntries,
+                                          long ttl,
+                                          @NonNull TimeUnit unit,
+                                          @NonNull Scheduler refreshScheduler) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries <= 0: " + maxEntries);
+        }
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("ttl <= 0: " + ttl);
+        }
+        this.source = source;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = unit.toMillis(ttl);
+        this.refreshScheduler = refreshScheduler;
+    }
+
+    @NonNull
+    @Override
+    public Flowable<T> getSuggestions(@NonNull String value) {
+        return Flowable.defer(() -> {
+            final String key = keyOf(value);
+            final List<T> refined;
+            final boolean exact;
+            synchronized (trie) {
+                final PrefixTrie.Match<Entry<T>> match = freshLongestPrefixOf(key);
+                if (match == null) {
+                    refined = null;
+                    exact = false;
+                } else {
+                    exact = match.length == key.length();
+                    refined = exact ? match.value.items : refine(match.value.items, key);
+                }
+            }
+            if (refined == null || refined.isEmpty()) {
+                return fetch(value, key);
+            }
+            if (!exact) {
+                refreshInBackground(value, key);
+            }
+            return Flowable.fromIterable(refined);
+        });
+    }
+
+    /**
+     * Cancels all pending background refreshes and drops every indexed result.
+     */
+    public void clear() {
+        refreshes.clear();
+        synchronized (trie) {
+            trie.clear();
+            insertionOrder.clear();
+            refreshing.clear();
+        }
+    }
+
+    /**
+     * @return Number of queries currently indexed, including expired ones not looked up since.
+     */
+    public int size() {
+        synchronized (trie) {
+            return trie.size();
+        }
+    }
+
+    /**
+     * @return Number of background refreshes still running.
+     */
+    int pendingRefreshCount() {
+        return refreshes.size();
+    }
+
+    /**
+     * Returns the longest indexed prefix of {@code key} that has not expired, removing the expired
+     * ones passed on the way. Must be called holding the lock on {@link #trie}.
+     */
+    @Nullable
+    private PrefixTrie.Match<Entry<T>> freshLongestPrefixOf(@NonNull String key) {
+        final long now = refreshScheduler.now(TimeUnit.MILLISECONDS);
+        PrefixTrie.Match<Entry<T>> match;
+        while ((match = trie.longestPrefixOf(key)) != null && match.length > 0) {
+            if (now - match.value.createdAt < ttlMillis) {
+                return match;
+            }
+            final String expired = key.substring(0, match.length);
+            trie.remove(expired);
+            insertionOrder.remove(expired);
+        }
+        return null;
+    }
+
+    @NonNull
+    private Flowable<T> fetch(@NonNull String value, @NonNull String key) {
+        return source.getSuggestions(value)
+                .toList()
+                .doOnSuccess(items -> index(key, items))
+                .flattenAsFlowable(items -> items);
+    }
+
+    private void refreshInBackground(@NonNull String value, @NonNull String key) {
+        synchronized (trie) {
+            if (!refreshing.add(key)) {
+                return;
+            }
+        }
+        // Added before subscribing and deleted once finished, so that only running refreshes are
+        // retained even when one finishes before subscribe returns.
+        final DisposableCompletableObserver refresh = new DisposableCompletableObserver() {
+            @Override
+            public void onComplete() {
+                refreshes.delete(this);
+            }
+
+            @Override
+            public void onError(@NonNull Throwable error) {
+                refreshes.delete(this);
+            }
+        };
+        refreshes.add(refresh);
+        fetch(value, key)
+                .subscribeOn(refreshScheduler)
+                .doFinally(() -> {
+                    synchronized (trie) {
+                        refreshing.remove(key);
+                    }
+                })
+                .ignoreElements()
+                .subscribe(refresh);
+    }
+
+    private void index(@NonNull String key, @NonNull List<T> items) {
+        final Entry<T> entry = new Entry<>(Collections.unmodifiableList(new ArrayList<>(items)),
+                refreshScheduler.now(TimeUnit.MILLISECONDS));
+        synchronized (trie) {
+            if (trie.get(key) == null) {
+                insertionOrder.addLast(key);
+            }
+            trie.put(key, entry);
+            while (trie.size() > maxEntries) {
+                trie.remove(insertionOrder.removeFirst());
+            }
+        }
+    }
+
+    @NonNull
+    private static <T extends SuggestionItem> List<T> refine(@NonNull List<T> items, @NonNull String key) {
+        final List<T> refined = new ArrayList<>(items.size());
+        for (T item : items) {
+            if (keyOf(String.valueOf(item.value())).startsWith(key)) {
+                refined.add(item);
+            }
+        }
+        return refined;
+    }
+
+    @NonNull
+    private static String keyOf(@Nullable String value) {
+        return value == null ? "" : Util.prepareSearchTerm(value.toLowerCase(Locale.ROOT));
+    }
+
+    private static final class Entry<T> {
+        final List<T> items;
+        final long createdAt;
+
+        Entry(List<T> items, long createdAt) {
+            this.items = items;
+            this.createdAt = createdAt;
+        }
+    }
+}
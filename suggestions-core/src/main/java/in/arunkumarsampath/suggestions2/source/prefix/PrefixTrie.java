@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.source.prefix;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Character trie mapping query keys to values, optimized for finding the value stored against the
+ * longest key that is a prefix of a given query.
+ * <p>
+ * Not thread safe.
+ */
+final class PrefixTrie<V> {
+
+    private final Node<V> root = new Node<>(null);
+    private int size;
+
+    /**
+     * Value stored against the longest key that is a prefix of (or equal to) {@code query}.
+     *
+     * @param query Query to look up.
+     * @return Matching prefix and its value, or {@code null} if no stored key is a prefix of {@code query}.
+     */
+    @Nullable
+    Match<V> longestPrefixOf(@NonNull String query) {
+        Node<V> node = root;
+        Match<V> match = root.value != null ? new Match<>(0, root.value) : null;
+        for (int i = 0; i < query.length(); i++) {
+            node = node.children == null ? null : node.children.get(query.charAt(i));
+            if (node == null) {
+                break;
+            }
+            if (node.value != null) {
+                match = new Match<>(i + 1, node.value);
+            }
+        }
+        return match;
+    }
+
+    @Nullable
+    V get(@NonNull String key) {
+        final Node<V> node = find(key);
+        return node == null ? null : node.value;
+    }
+
+    void put(@NonNull String key, @NonNull V value) {
+        Node<V> node = root;
+        for (int i = 0; i < key.length(); i++) {
+            final char c = key.charAt(i);
+            if (node.children == null) {
+                node.children = new HashMap<>(4);
+            }
+            Node<V> child = node.children.get(c);
+            if (child == null) {
+                child = new Node<>(node);
+                node.children.put(c, child);
+            }
+            node = child;
+        }
+        if (node.value == null) {
+            size++;
+        }
+        node.value = value;
+    }
+
+    void remove(@NonNull String key) {
+        Node<V> node = find(key);
+        if (node == null || node.value == null) {
+            return;
+        }
+        node.value = null;
+        size--;
+        // Prune the branch that no longer leads to any value.
+        for (int i = key.length() - 1; i >= 0 && node.parent != null; i--) {
+            if (node.value != null || (node.children != null && !node.children.isEmpty())) {
+                break;
+            }
+            node.parent.children.remove(key.charAt(i));
+            node = node.parent;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        root.children = null;
+        root.value = null;
+        size = 0;
+    }
+
+    @Nullable
+    private Node<V> find(@NonNull String key) {
+        Node<V> node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.children == null ? null : node.children.get(key.charAt(i));
+        }
+        return node;
+    }
+
+    static final class Match<V> {
+        /**
+         * Length of the stored key that matched.
+         */
+        final int length;
+        final V value;
+
+        Match(int length, V value) {
+            this.length = length;
+            this.value = value;
+        }
+    }
+
+    private static final class Node<V> {
+        @Nullable
+        final Node<V> parent;
+        @Nullable
+        Map<Character, Node<V>> children;
+        @Nullable
+        V value;
+
+        Node(@Nullable Node<V> parent) {
+            this.parent = parent;
+        }
+    }
+}
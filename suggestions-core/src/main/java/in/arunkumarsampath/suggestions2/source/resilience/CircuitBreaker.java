@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package in.arunkumarsampath.suggestions2.source.resilience;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+
+/**
+ * Thread safe circuit breaker counting consecutive failures of calls to a remote service.
+ * <p>
+ * While {@link State#CLOSED} every call is allowed. After {@code failureThreshold} consecutive
+ * failures the breaker {@link State#OPEN opens} and rejects calls for {@code openDuration}, after
+ * which it is {@link State#HALF_OPEN half open} and lets a single trial call through. The trial
+ * closes the breaker when it succeeds and opens it again when it fails.
+ * <p>
+ * Every call allowed by {@link #tryAcquire()} must be finished with exactly one of
+ * {@link #onSuccess(long)}, {@link #onFailure(long)} or {@link #onCancel(long)}, passing the permit
+ * it was given. Permits belong to the state the breaker was in when they were given, and outcomes
+ * reported after the state changed are ignored, so that a slow call allowed while closed cannot
+ * close the breaker or free the trial slot while half open.
+ */
+public final class CircuitBreaker {
+
+    /**
+     * Returned by {@link #tryAcquire()} when the call is rejected.
+     */
+    public static final long REJECTED = -1;
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    @NonNull
+    private final Scheduler clock;
+
+    @NonNull
+    private State state = State.CLOSED;
+    /**
+     * Incremented on every change of {@link #state}, and handed out as permits.
+     */
+    private long generation;
+    private int failures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    /**
+     * @param failureThreshold Number of consecutive failures that open the breaker.
+     * @param openDuration     Time for which calls are rejected once open.
+     * @param unit             Unit of {@code openDuration}.
+     * @param clock            Scheduler used as the time source.
+     */
+    public CircuitBreaker(int failureThreshold, long openDuration, @NonNull TimeUnit unit, @NonNull Scheduler clock) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("failureThreshold <= 0: " + failureThreshold);
+        }
+        if (openDuration <= 0) {
+            throw new IllegalArgumentException("openDuration <= 0: " + openDuration);
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = unit.toNanos(openDuration);
+        this.clock = clock;
+    }
+
+    /**
+     * @return Permit of a call that may be made now, whose outcome must be reported with it, or
+     * {@link #REJECTED}.
+     */
+    public synchronized long tryAcquire() {
+        switch (state()) {
+            case CLOSED:
+                return generation;
+            case HALF_OPEN:
+                if (trialInFlight) {
+                    return REJECTED;
+                }
+                trialInFlight = true;
+                return generation;
+            default:
+                return REJECTED;
+        }
+    }
+
+    public synchronized void onSuccess(long permit) {
+        if (permit != generation) {
+            return;
+        }
+        failures = 0;
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+            moveTo(State.CLOSED);
+        }
+    }
+
+    public synchronized void onFailure(long permit) {
+        if (permit != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN || ++failures >= failureThreshold) {
+            trialInFlight = false;
+            failures = 0;
+            openedAt = clock.now(TimeUnit.NANOSECONDS);
+            moveTo(State.OPEN);
+        }
+    }
+
+    /**
+     * Reports an allowed call that was abandoned without an outcome, freeing the trial slot when
+     * half open.
+     */
+    public synchronized void onCancel(long permit) {
+        if (permit == generation && state == State.HALF_OPEN) {
+            trialInFlight = false;
+        }
+    }
+
+    @NonNull
+    public synchronized State state() {
+        if (state == State.OPEN && clock.now(TimeUnit.NANOSECONDS) - openedAt >= openNanos) {
+            moveTo(State.HALF_OPEN);
+        }
+        return state;
+    }
+
+    private void moveTo(@NonNull State state) {
+        this.state = state;
+        generation++;
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package in.arunkumarsampath.suggestions2.source.resilience;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import in.arunkumarsampath.suggestions2.executor.SuggestionDroppedException;
+import in.arunkumarsampath.suggestions2.executor.SuggestionExecutor;
+import in.arunkumarsampath.suggestions2.item.SuggestionItem;
+import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * A {@link SuggestionSource} decorator that protects a remote source, and the user waiting on it,
+ * from throttling and outages.
+ * <p>
+ * Each call
+ * <ul>
+ * <li>is rejected while the {@link CircuitBreaker} is open,</li>
+ * <li>is rejected when the {@link TokenBucket} has no token left,</li>
+ * <li>fails when the source goes longer than {@code timeout} without emitting or completing.</li>
+ * </ul>
+ * Rejected and failed calls are answered by the {@code fallback} source instead, for example
+ * {@link in.arunkumarsampath.suggestions2.source.cache.CachingSuggestionSource#cachedOnly()} or a
+ * {@link in.arunkumarsampath.suggestions2.source.local.LocalCorpusSuggestionSource}. A call that
+ * fails after emitting items just completes, so the fallback never duplicates items.
+ * <p>
+ * Failures and timeouts count towards opening the breaker, rate limited calls and calls dropped by
+ * a saturated {@link SuggestionExecutor} do not, since neither says anything about the source. A
+ * call cancelled after it emitted items, for example by {@code take()}, counts as a success.
+ * <p>
+ * Use {@link Builder} to create an instance.
+ */
+public final class ResilientSuggestionSource<T extends SuggestionItem> implements SuggestionSource<T> {
+
+    public static final int DEFAULT_BURST = 5;
+    public static final long DEFAULT_REFILL_MILLIS = 200;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 3000;
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final long DEFAULT_OPEN_MILLIS = 30_000;
+
+    @NonNull
+    private final SuggestionSource<T> source;
+    @NonNull
+    private final SuggestionSource<T> fallback;
+    @NonNull
+    private final TokenBucket tokenBucket;
+    @NonNull
+    private final CircuitBreaker circuitBreaker;
+    private final long timeoutMillis;
+    @NonNull
+    private final Scheduler scheduler;
+
+    private final AtomicLong throttledCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private ResilientSuggestionSource(@NonNull Builder<T> builder) {
+        this.source = builder.source;
+        this.fallback = builder.fallback;
+        this.scheduler = builder.scheduler;
+        this.timeoutMillis = builder.timeoutMillis;
+        this.tokenBucket = builder.tokenBucket != null
+                ? builder.tokenBucket
+                : new TokenBucket(builder.burst, builder.refillNanos, TimeUnit.NANOSECONDS, scheduler);
+        this.circuitBreaker = builder.circuitBreaker != null
+                ? builder.circuitBreaker
+                : new CircuitBreaker(builder.failureThreshold, builder.openNanos, TimeUnit.NANOSECONDS, scheduler);
+    }
+
+    @NonNull
+    @Override
+    public Flowable<T> getSuggestions(@NonNull String value) {
+        return Flowable.defer(() -> {
+            final long permit = circuitBreaker.tryAcquire();
+            if (permit == CircuitBreaker.REJECTED) {
+                rejectedCount.incrementAndGet();
+                return fallback.getSuggestions(value);
+            }
+            if (!tokenBucket.tryAcquire()) {
+                circuitBreaker.onCancel(permit);
+                throttledCount.incrementAndGet();
+                return fallback.getSuggestions(value);
+            }
+            final AtomicBoolean emitted = new AtomicBoolean();
+            return source.getSuggestions(value)
+                    .timeout(timeoutMillis, TimeUnit.MILLISECONDS, scheduler)
+                    .doOnNext(item -> emitted.set(true))
+                    .doOnComplete(() -> circuitBreaker.onSuccess(permit))
+                    .doOnCancel(() -> {
+                        // Calls cut short by take() once enough items arrived succeeded.
+                        if (emitted.get()) {
+                            circuitBreaker.onSuccess(permit);
+                        } else {
+                            circuitBreaker.onCancel(permit);
+                        }
+                    })
+                    .onErrorResumeNext(error -> {
+                        if (error instanceof SuggestionDroppedException) {
+                            circuitBreaker.onCancel(permit);
+                            return fallback.getSuggestions(value);
+                        }
+                        failedCount.incrementAndGet();
+                        circuitBreaker.onFailure(permit);
+                        return emitted.get() ? Flowable.empty() : fallback.getSuggestions(value);
+                    });
+        });
+    }
+
+    @NonNull
+    public CircuitBreaker.State circuitState() {
+        return circuitBreaker.state();
+    }
+
+    /**
+     * @return Number of calls answered by the fallback because no token was available.
+     */
+    public long throttledCount() {
+        return throttledCount.get();
+    }
+
+    /**
+     * @return Number of calls answered by the fallback because the circuit breaker was open.
+     */
+    public long rejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * @return Number of calls to the source that failed or timed out.
+     */
+    public long failedCount() {
+        return failedCount.get();
+    }
+
+    public static final class Builder<T extends SuggestionItem> {
+        @NonNull
+        private final SuggestionSource<T> source;
+        @NonNull
+        private SuggestionSource<T> fallback = value -> Flowable.empty();
+        private TokenBucket tokenBucket;
+        private int burst = DEFAULT_BURST;
+        private long refillNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_REFILL_MILLIS);
+        private CircuitBreaker circuitBreaker;
+        private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+        private long openNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_OPEN_MILLIS);
+        private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+        @NonNull
+        private Scheduler scheduler = Schedulers.computation();
+
+        public Builder(@NonNull SuggestionSource<T> source) {
+            this.source = source;
+        }
+
+        /**
+         * Source answering calls that are rejected or fail. Defaults to no suggestions.
+         */
+        @NonNull
+        public Builder<T> fallback(@NonNull SuggestionSource<T> fallback) {
+            this.fallback = fallback;
+            return this;
+        }
+
+        /**
+         * Allows bursts of {@code burst} calls and one further call every {@code refillPeriod}.
+         * Defaults to {@link #DEFAULT_BURST} calls and one per {@link #DEFAULT_REFILL_MILLIS}.
+         */
+        @NonNull
+        public Builder<T> rateLimit(int burst, long refillPeriod, @NonNull TimeUnit unit) {
+            if (burst <= 0) {
+                throw new IllegalArgumentException("burst <= 0: " + burst);
+            }
+            if (refillPeriod <= 0) {
+                throw new IllegalArgumentException("refillPeriod <= 0: " + refillPeriod);
+            }
+            this.tokenBucket = null;
+            this.burst = burst;
+            this.refillNanos = unit.toNanos(refillPeriod);
+            return this;
+        }
+
+        /**
+         * Uses {@code tokenBucket}, which may be shared with other sources drawing on the same quota.
+         */
+        @NonNull
+        public Builder<T> rateLimit(@NonNull TokenBucket tokenBucket) {
+            this.tokenBucket = tokenBucket;
+            return this;
+        }
+
+        /**
+         * Opens the breaker after {@code failureThreshold} consecutive failures for
+         * {@code openDuration}. Defaults to {@link #DEFAULT_FAILURE_THRESHOLD} failures and
+         * {@link #DEFAULT_OPEN_MILLIS}.
+         */
+        @NonNull
+        public Builder<T> circuitBreaker(int failureThreshold, long openDuration, @NonNull TimeUnit unit) {
+            if (failureThreshold <= 0) {
+                throw new IllegalArgumentException("failureThreshold <= 0: " + failureThreshold);
+            }
+            if (openDuration <= 0) {
+                throw new IllegalArgumentException("openDuration <= 0: " + openDuration);
+            }
+            this.circuitBreaker = null;
+            this.failureThreshold = failureThreshold;
+            this.openNanos = unit.toNanos(openDuration);
+            return this;
+        }
+
+        /**
+         * Uses {@code circuitBreaker}, which may be shared with other sources calling the same service.
+         */
+        @NonNull
+        public Builder<T> circuitBreaker(@NonNull CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+            return this;
+        }
+
+        /**
+         * Maximum time the source may take to emit its first item, any further item or to complete.
+         */
+        @NonNull
+        public Builder<T> timeout(long timeout, @NonNull TimeUnit unit) {
+            if (timeout <= 0) {
+                throw new IllegalArgumentException("timeout <= 0: " + timeout);
+            }
+            this.timeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Scheduler used to time timeouts and as the clock of the rate limiter and circuit breaker
+         * unless those are supplied. Defaults to {@link Schedulers#computation()}.
+         */
+        @NonNull
+        public Builder<T> scheduler(@NonNull Scheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        @NonNull
+        public ResilientSuggestionSource<T> build() {
+            return new ResilientSuggestionSource<>(this);
+        }
+    }
+}
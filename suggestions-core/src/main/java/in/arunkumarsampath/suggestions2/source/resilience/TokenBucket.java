@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package in.arunkumarsampath.suggestions2.source.resilience;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+
+/**
+ * Thread safe token bucket rate limiter.
+ * <p>
+ * Holds up to {@code capacity} tokens and regains one every {@code refillPeriod}, so that bursts
+ * of up to {@code capacity} calls are allowed while the sustained rate stays at one call per
+ * period. A full bucket does not accumulate further tokens.
+ */
+public final class TokenBucket {
+
+    private final int capacity;
+    private final long refillNanos;
+    @NonNull
+    private final Scheduler clock;
+
+    private int tokens;
+    private long lastRefill;
+
+    /**
+     * @param capacity     Maximum number of tokens, which is also the initial number.
+     * @param refillPeriod Time it takes to regain a single token.
+     * @param unit         Unit of {@code refillPeriod}.
+     * @param clock        Scheduler used as the time source.
+     */
+    public TokenBucket(int capacity, long refillPeriod, @NonNull TimeUnit unit, @NonNull Scheduler clock) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity <= 0: " + capacity);
+        }
+        if (refillPeriod <= 0) {
+            throw new IllegalArgumentException("refillPeriod <= 0: " + refillPeriod);
+        }
+        this.capacity = capacity;
+        this.refillNanos = unit.toNanos(refillPeriod);
+        this.clock = clock;
+        this.tokens = capacity;
+        this.lastRefill = clock.now(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @return {@code true} if the caller may proceed.
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens == 0) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    /**
+     * @return Number of tokens currently available.
+     */
+    public synchronized int available() {
+        refill();
+        return tokens;
+    }
+
+    private void refill() {
+        final long now = clock.now(TimeUnit.NANOSECONDS);
+        final long gained = (now - lastRefill) / refillNanos;
+        if (gained <= 0) {
+            return;
+        }
+        if (tokens + gained >= capacity) {
+            tokens = capacity;
+            lastRefill = now;
+        } else {
+            tokens += gained;
+            lastRefill += gained * refillNanos;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package in.arunkumarsampath.suggestions2.transformer;
+
+import java.util.Arrays;
+
+/**
+ * Debounce interval that follows the latency of the suggestion source.
+ * <p>
+ * Keeps the latencies of the last {@code window} fetches and debounces for their 95th percentile,
+ * clamped to {@code [minMillis, maxMillis]}. While the source answers quickly terms are fetched
+ * after the minimum pause, and when it slows down fetches are spaced out accordingly instead of
+ * piling up requests that would be cancelled before they complete.
+ * <p>
+ * Thread safe, and may be shared by transformers using the same source.
+ *
+ * @see SuggestionsTransformer.Builder#adaptiveDebounce(AdaptiveDebounce)
+ */
+public final class AdaptiveDebounce {
+
+    public static final int DEFAULT_WINDOW = 32;
+
+    private final long minMillis;
+    private final long maxMillis;
+
+    private final long[] samples;
+    private final long[] sorted;
+    private int count;
+    private int next;
+
+    private volatile long p95Millis = -1;
+
+    public AdaptiveDebounce(long minMillis, long maxMillis) {
+        this(minMillis, maxMillis, DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param minMillis Debounce interval while the source is fast.
+     * @param maxMillis Upper bound of the debounce interval.
+     * @param window    Number of recent fetches the percentile is computed over.
+     */
+    public AdaptiveDebounce(long minMillis, long maxMillis, int window) {
+        if (minMillis < 0) {
+            throw new IllegalArgumentException("minMillis < 0: " + minMillis);
+        }
+        if (maxMillis < minMillis) {
+            throw new IllegalArgumentException("maxMillis < minMillis: " + maxMillis);
+        }
+        if (window <= 0) {
+            throw new IllegalArgumentException("window <= 0: " + window);
+        }
+        this.minMillis = minMillis;
+        this.maxMillis = maxMillis;
+        this.samples = new long[window];
+        this.sorted = new long[window];
+    }
+
+    /**
+     * Records the time a fetch took from subscription to termination or cancellation. For a
+     * cancelled fetch this is a lower bound of its latency.
+     */
+    public synchronized void record(long latencyMillis) {
+        samples[next] = latencyMillis;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+        System.arraycopy(samples, 0, sorted, 0, count);
+        Arrays.sort(sorted, 0, count);
+        p95Millis = sorted[(int) Math.ceil(count * 0.95) - 1];
+    }
+
+    /**
+     * @return 95th percentile of the recorded latencies, or {@code -1} if none were recorded.
+     */
+    public long p95Millis() {
+        return p95Millis;
+    }
+
+    /**
+     * @return Debounce interval to apply to the next term.
+     */
+    public long currentMillis() {
+        return Math.max(minMillis, Math.min(maxMillis, p95Millis));
+    }
+}
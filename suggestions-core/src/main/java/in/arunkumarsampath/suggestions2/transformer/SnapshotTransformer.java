@@ -0,0 +1,147 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package in.arunkumarsampath.suggestions2.transformer;
+
+import android.support.annotation.NonNull;
+
+import org.reactivestreams.Publisher;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Flowable;
+import io.reactivex.FlowableTransformer;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * A {@link FlowableTransformer} that turns a stream of suggestions into a stream of growing,
+ * immutable snapshots of everything received so far, so that the first suggestion can be shown
+ * while the rest of the response is still being read.
+ * <p>
+ * A snapshot is emitted as soon as the first item arrives, then whenever {@code batchSize} more
+ * items arrived or {@code window} elapsed with new items, whichever comes first, and finally on
+ * completion if items arrived since the last snapshot. An upstream without items produces a single
+ * empty list, like {@link Flowable#toList()}.
+ * <p>
+ * Every snapshot extends the previous one, so a slow consumer only ever needs the latest; snapshots
+ * that are not requested in time are dropped in favour of newer ones. Snapshots share their
+ * backing array, taking one does not copy the items.
+ */
+public final class SnapshotTransformer<T> implements FlowableTransformer<T, List<T>> {
+
+    private final int batchSize;
+    private final long windowMillis;
+    @NonNull
+    private final Scheduler scheduler;
+
+    public SnapshotTransformer(int batchSize, long window, @NonNull TimeUnit unit) {
+        this(batchSize, window, unit, Schedulers.computation());
+    }
+
+    /**
+     * @param batchSize Number of new items after which a snapshot is emitted.
+     * @param window    Time after which new items are emitted even if the batch is not full, or
+     *                  {@code 0} to emit on batch size only.
+     * @param unit      Unit of {@code window}.
+     * @param scheduler Scheduler used to time the window.
+     */
+    public SnapshotTransformer(int batchSize, long window, @NonNull TimeUnit unit, @NonNull Scheduler scheduler) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize <= 0: " + batchSize);
+        }
+        if (window < 0) {
+            throw new IllegalArgumentException("window < 0: " + window);
+        }
+        this.batchSize = batchSize;
+        this.windowMillis = unit.toMillis(window);
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Publisher<List<T>> apply(Flowable<T> upstream) {
+        return upstream
+                .publish(items -> Flowable.merge(
+                        items.take(1).map(Collections::singletonList),
+                        batches(items.skip(1))))
+                .filter(batch -> !batch.isEmpty())
+                .scanWith(Snapshots<T>::new, Snapshots::add)
+                .skip(1)
+                .map(Snapshots::snapshot)
+                .defaultIfEmpty(Collections.emptyList())
+                .onBackpressureLatest();
+    }
+
+    @NonNull
+    private Flowable<List<T>> batches(@NonNull Flowable<T> items) {
+        return windowMillis > 0
+                ? items.buffer(windowMillis, TimeUnit.MILLISECONDS, scheduler, batchSize)
+                : items.buffer(batchSize);
+    }
+
+    /**
+     * Append only item array that hands out fixed size views of itself. Elements are never
+     * overwritten, so a view stays valid after the array is grown and replaced.
+     */
+    private static final class Snapshots<T> {
+        private Object[] items = new Object[8];
+        private int size;
+
+        @NonNull
+        Snapshots<T> add(@NonNull List<T> batch) {
+            if (size + batch.size() > items.length) {
+                items = Arrays.copyOf(items, Math.max(items.length * 2, size + batch.size()));
+            }
+            for (T item : batch) {
+                items[size++] = item;
+            }
+            return this;
+        }
+
+        @NonNull
+        List<T> snapshot() {
+            return new Snapshot<>(items, size);
+        }
+    }
+
+    private static final class Snapshot<T> extends AbstractList<T> implements RandomAccess {
+        private final Object[] items;
+        private final int size;
+
+        Snapshot(@NonNull Object[] items, int size) {
+            this.items = items;
+            this.size = size;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+            }
+            return (T) items[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
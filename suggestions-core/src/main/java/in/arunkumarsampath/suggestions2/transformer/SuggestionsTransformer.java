@@ -0,0 +1,282 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.transformer;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.reactivestreams.Publisher;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import in.arunkumarsampath.suggestions2.executor.SuggestionExecutor;
+import in.arunkumarsampath.suggestions2.item.SuggestionItem;
+import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableTransformer;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * A {@link FlowableTransformer} that converts a stream of search terms, for example text changes
+ * of an input field, into a stream of suggestion lists fetched from a {@link SuggestionSource}.
+ * <p>
+ * The pipeline
+ * <ul>
+ * <li>debounces terms so that only pauses in typing trigger a fetch, optionally for an interval
+ * that adapts to the latency of the source,</li>
+ * <li>optionally drops terms that are equal to the previous one after trimming,</li>
+ * <li>emits an empty list for terms shorter than the minimum length,</li>
+ * <li>cancels the fetch for a stale term as soon as a newer term arrives.</li>
+ * </ul>
+ * By default one list is emitted per term once the source completes. With
+ * {@link Builder#snapshots(int, long, TimeUnit)} growing lists are emitted while the source is
+ * still producing, see {@link SnapshotTransformer}.
+ * <p>
+ * The source is called on {@link SuggestionExecutor#shared()} unless another executor or a
+ * scheduler is configured, so blocking sources never need more than its bounded pool of threads.
+ * <p>
+ * Failure to fetch suggestions for a single term results in an empty list instead of terminating
+ * the stream, so that the next keystroke can still be served. In snapshot mode the last snapshot
+ * is kept instead if one was emitted.
+ * <p>
+ * Use {@link Builder} to create an instance.
+ */
+public final class SuggestionsTransformer<T extends SuggestionItem> implements FlowableTransformer<String, List<T>> {
+
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 200;
+    public static final int DEFAULT_MIN_LENGTH = 1;
+    public static final int DEFAULT_MAX_SUGGESTIONS = 10;
+
+    @NonNull
+    private final SuggestionSource<T> source;
+    private final long debounceMillis;
+    private final int minLength;
+    private final int maxSuggestions;
+    private final boolean distinct;
+    @Nullable
+    private final AdaptiveDebounce adaptiveDebounce;
+    @Nullable
+    private final SnapshotTransformer<T> snapshotTransformer;
+    @NonNull
+    private final Scheduler debounceScheduler;
+    @Nullable
+    private final Scheduler sourceScheduler;
+    @Nullable
+    private final SuggestionExecutor executor;
+
+    private SuggestionsTransformer(@NonNull Builder<T> builder) {
+        this.source = builder.source;
+        this.debounceMillis = builder.debounceMillis;
+        this.minLength = builder.minLength;
+        this.maxSuggestions = builder.maxSuggestions;
+        this.distinct = builder.distinct;
+        this.adaptiveDebounce = builder.adaptiveDebounce;
+        this.debounceScheduler = builder.debounceScheduler;
+        this.sourceScheduler = builder.sourceScheduler;
+        this.executor = builder.sourceScheduler == null && builder.executor == null
+                ? SuggestionExecutor.shared()
+                : builder.executor;
+        this.snapshotTransformer = builder.snapshotBatchSize > 0
+                ? new SnapshotTransformer<>(builder.snapshotBatchSize, builder.snapshotWindowMillis, TimeUnit.MILLISECONDS, debounceScheduler)
+                : null;
+    }
+
+    @Override
+    public Publisher<List<T>> apply(Flowable<String> upstream) {
+        Flowable<String> terms = upstream;
+        if (adaptiveDebounce != null) {
+            terms = terms.debounce(term -> Flowable.timer(adaptiveDebounce.currentMillis(), TimeUnit.MILLISECONDS, debounceScheduler));
+        } else if (debounceMillis > 0) {
+            terms = terms.debounce(debounceMillis, TimeUnit.MILLISECONDS, debounceScheduler);
+        }
+        terms = terms.map(String::trim);
+        if (distinct) {
+            terms = terms.distinctUntilChanged();
+        }
+        return terms.switchMap(this::fetch);
+    }
+
+    @NonNull
+    private Flowable<List<T>> fetch(@NonNull String term) {
+        if (term.length() < minLength) {
+            return Flowable.just(Collections.emptyList());
+        }
+        final Flowable<T> items = source.getSuggestions(term).take(maxSuggestions);
+        Flowable<List<T>> suggestions = snapshotTransformer != null ? items.compose(snapshotTransformer) : items.toList().toFlowable();
+        suggestions = executor != null ? executor.submit(suggestions) : suggestions.subscribeOn(sourceScheduler);
+        if (adaptiveDebounce != null) {
+            final Flowable<List<T>> timed = suggestions;
+            suggestions = Flowable.defer(() -> {
+                final long start = debounceScheduler.now(TimeUnit.MILLISECONDS);
+                // Fetches cancelled by a newer term count with the time they ran, so that a slow
+                // source widens the debounce even when hardly any fetch completes.
+                return timed.doFinally(() -> adaptiveDebounce.record(debounceScheduler.now(TimeUnit.MILLISECONDS) - start));
+            });
+        }
+        if (snapshotTransformer != null) {
+            final Flowable<List<T>> snapshots = suggestions;
+            return Flowable.defer(() -> {
+                final AtomicBoolean emitted = new AtomicBoolean();
+                return snapshots
+                        .doOnNext(snapshot -> emitted.set(true))
+                        .onErrorResumeNext(error -> emitted.get()
+                                ? Flowable.<List<T>>empty()
+                                : Flowable.just(Collections.<T>emptyList()));
+            });
+        }
+        return suggestions.onErrorReturnItem(Collections.emptyList());
+    }
+
+    public static final class Builder<T extends SuggestionItem> {
+        @NonNull
+        private final SuggestionSource<T> source;
+        private long debounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+        private int minLength = DEFAULT_MIN_LENGTH;
+        private int maxSuggestions = DEFAULT_MAX_SUGGESTIONS;
+        private boolean distinct = true;
+        @Nullable
+        private AdaptiveDebounce adaptiveDebounce;
+        private int snapshotBatchSize;
+        private long snapshotWindowMillis;
+        @NonNull
+        private Scheduler debounceScheduler = Schedulers.computation();
+        @Nullable
+        private Scheduler sourceScheduler;
+        @Nullable
+        private SuggestionExecutor executor;
+
+        public Builder(@NonNull SuggestionSource<T> source) {
+            this.source = source;
+        }
+
+        /**
+         * Minimum pause in the term stream before a fetch is started. Use {@code 0} to disable
+         * debouncing.
+         */
+        @NonNull
+        public Builder<T> debounce(long debounce, @NonNull TimeUnit unit) {
+            if (debounce < 0) {
+                throw new IllegalArgumentException("debounce < 0: " + debounce);
+            }
+            this.debounceMillis = unit.toMillis(debounce);
+            return this;
+        }
+
+        /**
+         * Debounces for an interval derived from the latency of recent fetches instead of the fixed
+         * {@link #debounce(long, TimeUnit)}. Fetch latencies are recorded into
+         * {@code adaptiveDebounce} using the debounce scheduler as the clock.
+         */
+        @NonNull
+        public Builder<T> adaptiveDebounce(@Nullable AdaptiveDebounce adaptiveDebounce) {
+            this.adaptiveDebounce = adaptiveDebounce;
+            return this;
+        }
+
+        /**
+         * Terms shorter than {@code minLength} after trimming are not fetched and produce an empty list.
+         */
+        @NonNull
+        public Builder<T> minLength(int minLength) {
+            if (minLength < 0) {
+                throw new IllegalArgumentException("minLength < 0: " + minLength);
+            }
+            this.minLength = minLength;
+            return this;
+        }
+
+        /**
+         * Maximum number of suggestions requested from the source per term.
+         */
+        @NonNull
+        public Builder<T> maxSuggestions(int maxSuggestions) {
+            if (maxSuggestions <= 0) {
+                throw new IllegalArgumentException("maxSuggestions <= 0: " + maxSuggestions);
+            }
+            this.maxSuggestions = maxSuggestions;
+            return this;
+        }
+
+        /**
+         * Whether a term equal to the previous one after trimming should be ignored. Enabled by default.
+         */
+        @NonNull
+        public Builder<T> distinct(boolean distinct) {
+            this.distinct = distinct;
+            return this;
+        }
+
+        /**
+         * Emits growing snapshots of the suggestions of a term while they are fetched: after the
+         * first suggestion, then every {@code batchSize} suggestions or {@code window}, whichever
+         * comes first. The window is timed on the debounce scheduler.
+         *
+         * @see SnapshotTransformer
+         */
+        @NonNull
+        public Builder<T> snapshots(int batchSize, long window, @NonNull TimeUnit unit) {
+            if (batchSize <= 0) {
+                throw new IllegalArgumentException("batchSize <= 0: " + batchSize);
+            }
+            if (window < 0) {
+                throw new IllegalArgumentException("window < 0: " + window);
+            }
+            this.snapshotBatchSize = batchSize;
+            this.snapshotWindowMillis = unit.toMillis(window);
+            return this;
+        }
+
+        /**
+         * Scheduler used for timing the debounce. Defaults to {@link Schedulers#computation()}.
+         */
+        @NonNull
+        public Builder<T> debounceScheduler(@NonNull Scheduler debounceScheduler) {
+            this.debounceScheduler = debounceScheduler;
+            return this;
+        }
+
+        /**
+         * Scheduler on which the source is subscribed to, instead of an executor.
+         */
+        @NonNull
+        public Builder<T> sourceScheduler(@NonNull Scheduler sourceScheduler) {
+            this.sourceScheduler = sourceScheduler;
+            this.executor = null;
+            return this;
+        }
+
+        /**
+         * Executor on which the source is subscribed to, instead of a scheduler. Defaults to
+         * {@link SuggestionExecutor#shared()}.
+         */
+        @NonNull
+        public Builder<T> executor(@NonNull SuggestionExecutor executor) {
+            this.executor = executor;
+            this.sourceScheduler = null;
+            return this;
+        }
+
+        @NonNull
+        public SuggestionsTransformer<T> build() {
+            return new SuggestionsTransformer<>(this);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.transport;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Default {@link SuggestionTransport} built on {@link HttpURLConnection}.
+ * <p>
+ * Unlike opening and disconnecting a connection per request, responses are released by fully
+ * reading and closing their body, which lets the platform keep-alive pool hand the same socket to
+ * the next request for the same host. Bodies that still have more than {@code maxDrainBytes} left
+ * when closed are discarded along with their connection instead.
+ * <p>
+ * Responses are requested gzip encoded and decoded transparently. At most
+ * {@code maxConnectionsPerHost} requests run concurrently per host; further requests block until
+ * a running one is released.
+ * <p>
+ * Connecting and every read of the body time out after {@code connectTimeoutMillis} and
+ * {@code readTimeoutMillis} respectively, instead of the platform defaults which may wait
+ * indefinitely.
+ */
+public final class HttpUrlConnectionTransport implements SuggestionTransport {
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
+    public static final int DEFAULT_MAX_DRAIN_BYTES = 16 * 1024;
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 5000;
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 5000;
+
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String GZIP = "gzip";
+
+    private final int maxConnectionsPerHost;
+    private final int maxDrainBytes;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    private final Map<String, Semaphore> hostPermits = new HashMap<>();
+
+    public HttpUrlConnectionTransport() {
+        this(DEFAULT_MAX_CONNECTIONS_PER_HOST);
+    }
+
+    public HttpUrlConnectionTransport(int maxConnectionsPerHost) {
+        this(maxConnectionsPerHost, DEFAULT_MAX_DRAIN_BYTES);
+    }
+
+    public HttpUrlConnectionTransport(int maxConnectionsPerHost, int maxDrainBytes) {
+        this(maxConnectionsPerHost, maxDrainBytes, DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param maxConnectionsPerHost Maximum number of concurrent requests per host.
+     * @param maxDrainBytes         Maximum number of unread bytes that are drained on close in order
+     *                              to reuse the connection.
+     * @param connectTimeoutMillis  Time allowed for establishing a connection, {@code 0} for none.
+     * @param readTimeoutMillis     Time allowed for each read of the response, {@code 0} for none.
+     */
+    public HttpUrlConnectionTransport(int maxConnectionsPerHost,
+                                      int maxDrainBytes,
+                                      int connectTimeoutMillis,
+                                      int readTimeoutMillis) {
+        if (maxConnectionsPerHost <= 0) {
+            throw new IllegalArgumentException("maxConnectionsPerHost <= 0: " + maxConnectionsPerHost);
+        }
+        if (maxDrainBytes < 0) {
+            throw new IllegalArgumentException("maxDrainBytes < 0: " + maxDrainBytes);
+        }
+        if (connectTimeoutMillis < 0) {
+            throw new IllegalArgumentException("connectTimeoutMillis < 0: " + connectTimeoutMillis);
+        }
+        if (readTimeoutMillis < 0) {
+            throw new IllegalArgumentException("readTimeoutMillis < 0: " + readTimeoutMillis);
+        }
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.maxDrainBytes = maxDrainBytes;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    @NonNull
+    @Override
+    public SuggestionResponse execute(@NonNull String url) throws IOException {
+        final URL requestUrl = new URL(url);
+        final Semaphore permits = permitsFor(requestUrl.getHost());
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a connection to " + requestUrl.getHost());
+        }
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) requestUrl.openConnection();
+            connection.setConnectTimeout(connectTimeoutMillis);
+            connection.setReadTimeout(readTimeoutMillis);
+            connection.setRequestProperty(ACCEPT_ENCODING, GZIP);
+            final long start = System.nanoTime();
+            connection.connect();
+            final long connected = System.nanoTime();
+            final InputStream raw = connection.getInputStream();
+            final long firstByte = System.nanoTime();
+            final InputStream body = GZIP.equalsIgnoreCase(connection.getContentEncoding())
+                    ? new GZIPInputStream(raw)
+                    : raw;
+            return new Response(connection, raw, body, permits, connected - start, firstByte - connected);
+        } catch (IOException | RuntimeException e) {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            permits.release();
+            throw e;
+        }
+    }
+
+    @NonNull
+    private Semaphore permitsFor(@NonNull String host) {
+        synchronized (hostPermits) {
+            Semaphore permits = hostPermits.get(host);
+            if (permits == null) {
+                permits = new Semaphore(maxConnectionsPerHost, true);
+                hostPermits.put(host, permits);
+            }
+            return permits;
+        }
+    }
+
+    private final class Response implements SuggestionResponse {
+        @NonNull
+        private final HttpURLConnection connection;
+        @NonNull
+        private final InputStream raw;
+        @NonNull
+        private final InputStream body;
+        @NonNull
+        private final Semaphore permits;
+        private final long connectNanos;
+        private final long firstByteNanos;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Response(@NonNull HttpURLConnection connection,
+                 @NonNull InputStream raw,
+                 @NonNull InputStream body,
+                 @NonNull Semaphore permits,
+                 long connectNanos,
+                 long firstByteNanos) {
+            this.connection = connection;
+            this.raw = raw;
+            this.body = body;
+            this.permits = permits;
+            this.connectNanos = connectNanos;
+            this.firstByteNanos = firstByteNanos;
+        }
+
+        @NonNull
+        @Override
+        public InputStream body() {
+            return body;
+        }
+
+        @Nullable
+        @Override
+        public String contentType() {
+            return connection.getContentType();
+        }
+
+        @Override
+        public long connectNanos() {
+            return connectNanos;
+        }
+
+        @Override
+        public long firstByteNanos() {
+            return firstByteNanos;
+        }
+
+        @Override
+        public void close() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                if (drain()) {
+                    raw.close();
+                } else {
+                    connection.disconnect();
+                }
+            } catch (IOException e) {
+                connection.disconnect();
+            } finally {
+                permits.release();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (released.compareAndSet(false, true)) {
+                connection.disconnect();
+                permits.release();
+            }
+        }
+
+        /**
+         * Reads the remainder of the raw body so the connection can go back to the keep-alive pool.
+         *
+         * @return {@code true} if the end of the body was reached within {@code maxDrainBytes}.
+         */
+        private boolean drain() throws IOException {
+            final byte[] buffer = new byte[1024];
+            int remaining = maxDrainBytes;
+            while (remaining >= 0) {
+                final int read = raw.read(buffer, 0, Math.min(buffer.length, remaining + 1));
+                if (read == -1) {
+                    return true;
+                }
+                remaining -= read;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.transport;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.InputStream;
+
+/**
+ * A response returned by a {@link SuggestionTransport}.
+ */
+public interface SuggestionResponse extends Closeable {
+
+    /**
+     * @return Decoded response body.
+     */
+    @NonNull
+    InputStream body();
+
+    /**
+     * @return Value of the {@code Content-Type} header, if any.
+     */
+    @Nullable
+    String contentType();
+
+    /**
+     * @return Time spent establishing the connection in nanoseconds, close to zero if a pooled
+     * connection was reused, or {@code -1} if unknown.
+     */
+    long connectNanos();
+
+    /**
+     * @return Time from the connection being established until the response headers were
+     * received in nanoseconds, or {@code -1} if unknown.
+     */
+    long firstByteNanos();
+
+    /**
+     * Releases the response after use, allowing the underlying connection to be reused.
+     * Calling this more than once or after {@link #cancel()} has no effect.
+     */
+    @Override
+    void close();
+
+    /**
+     * Aborts the response, possibly from another thread, without attempting to reuse the
+     * underlying connection. Calling this more than once or after {@link #close()} has no effect.
+     */
+    void cancel();
+}
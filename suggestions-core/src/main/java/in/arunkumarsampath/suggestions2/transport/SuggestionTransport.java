@@ -0,0 +1,43 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.transport;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+
+/**
+ * Transport used by remote suggestion sources to fetch a response body for a URL.
+ * <p>
+ * Implementations are free to pool connections and limit concurrency, and must be safe for use
+ * from multiple threads.
+ */
+public interface SuggestionTransport {
+
+    /**
+     * Performs a blocking GET request for {@code url}.
+     * <p>
+     * The returned response must be {@link SuggestionResponse#close() closed} or
+     * {@link SuggestionResponse#cancel() cancelled} by the caller.
+     *
+     * @param url URL to fetch.
+     * @return The response, with its body ready to be read.
+     * @throws IOException If the request failed or the server responded with an error.
+     */
+    @NonNull
+    SuggestionResponse execute(@NonNull String url) throws IOException;
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package in.arunkumarsampath.suggestions2.util;
+
+import android.support.annotation.NonNull;
+
+/**
+ * A URL containing a single {@code %s} placeholder for a search term, split once into the parts
+ * around the placeholder so that expanding it is plain string concatenation instead of
+ * {@link String#format(String, Object...)}.
+ */
+public final class UrlTemplate {
+
+    private static final String PLACEHOLDER = "%s";
+
+    @NonNull
+    private final String prefix;
+    @NonNull
+    private final String suffix;
+
+    /**
+     * @param format URL containing {@code %s} exactly once.
+     */
+    public UrlTemplate(@NonNull String format) {
+        final int placeholder = format.indexOf(PLACEHOLDER);
+        if (placeholder == -1 || format.indexOf(PLACEHOLDER, placeholder + PLACEHOLDER.length()) != -1) {
+            throw new IllegalArgumentException("format must contain %s exactly once: " + format);
+        }
+        this.prefix = format.substring(0, placeholder);
+        this.suffix = format.substring(placeholder + PLACEHOLDER.length());
+    }
+
+    /**
+     * @return The URL for {@code searchTerm}, normalized and encoded with
+     * {@link Util#appendSearchTerm(CharSequence, StringBuilder)}.
+     */
+    @NonNull
+    public String expand(@NonNull CharSequence searchTerm) {
+        final StringBuilder url = new StringBuilder(prefix.length() + suffix.length() + searchTerm.length() * 3);
+        url.append(prefix);
+        Util.appendSearchTerm(searchTerm, url);
+        return url.append(suffix).toString();
+    }
+}
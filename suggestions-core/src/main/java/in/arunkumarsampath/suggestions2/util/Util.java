@@ -19,44 +19,201 @@ package in.arunkumarsampath.suggestions2.util;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import java.util.Locale;
+
 public class Util {
 
     private Util() {
     }
 
-    private final static String UTF8 = "UTF-8";
     private final static String ISO = "ISO-8859-1";
+    private final static String CHARSET = "charset=";
+    private final static char[] HEX = "0123456789ABCDEF".toCharArray();
+    private final static int MAX_RETAINED_CAPACITY = 1024;
+
+    private final static ThreadLocal<StringBuilder> BUILDER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(64);
+        }
+    };
+
+    /**
+     * Last content type passed to {@link #extractEncoding(String)} and its encoding. Responses of
+     * one endpoint practically always carry the same header.
+     */
+    @Nullable
+    private static volatile String[] lastEncoding;
 
+    /**
+     * Normalizes and form encodes a search term for use as a query parameter and as a cache key.
+     *
+     * @see #appendSearchTerm(CharSequence, StringBuilder)
+     */
     @NonNull
     public static String prepareSearchTerm(@NonNull String searchTerm) {
-        return searchTerm.trim().replace(" ", "+");
+        if (isPrepared(searchTerm)) {
+            return searchTerm;
+        }
+        final StringBuilder builder = BUILDER.get();
+        builder.setLength(0);
+        final String prepared = appendSearchTerm(searchTerm, builder).toString();
+        if (builder.capacity() > MAX_RETAINED_CAPACITY) {
+            BUILDER.remove();
+        }
+        return prepared;
+    }
+
+    /**
+     * @return {@code true} if {@link #appendSearchTerm(CharSequence, StringBuilder)} would append
+     * {@code searchTerm} unchanged, which is the common case of a single plain word.
+     */
+    private static boolean isPrepared(@NonNull String searchTerm) {
+        for (int i = 0; i < searchTerm.length(); i++) {
+            if (!isUnreserved(searchTerm.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '.' || c == '-' || c == '*' || c == '_';
+    }
+
+    /**
+     * Appends {@code searchTerm} to {@code out} with surrounding whitespace removed, inner runs of
+     * whitespace collapsed to a single {@code +} and everything else encoded like
+     * {@link java.net.URLEncoder} does for UTF-8: letters, digits and {@code .-*_} are kept and all
+     * other characters are percent encoded as UTF-8. Unpaired surrogates are encoded as U+FFFD.
+     * <p>
+     * Works in a single pass without intermediate strings.
+     *
+     * @return {@code out}
+     */
+    @NonNull
+    public static StringBuilder appendSearchTerm(@NonNull CharSequence searchTerm, @NonNull StringBuilder out) {
+        final int start = out.length();
+        boolean pendingSpace = false;
+        final int length = searchTerm.length();
+        for (int i = 0; i < length; i++) {
+            final char c = searchTerm.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = out.length() > start;
+                continue;
+            }
+            if (pendingSpace) {
+                out.append('+');
+                pendingSpace = false;
+            }
+            if (isUnreserved(c)) {
+                out.append(c);
+            } else if (c < 0x80) {
+                appendEscaped(out, c);
+            } else if (c < 0x800) {
+                appendEscaped(out, 0xC0 | (c >> 6));
+                appendEscaped(out, 0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(searchTerm.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, searchTerm.charAt(++i));
+                appendEscaped(out, 0xF0 | (codePoint >> 18));
+                appendEscaped(out, 0x80 | ((codePoint >> 12) & 0x3F));
+                appendEscaped(out, 0x80 | ((codePoint >> 6) & 0x3F));
+                appendEscaped(out, 0x80 | (codePoint & 0x3F));
+            } else {
+                final char encoded = c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE ? '\uFFFD' : c;
+                appendEscaped(out, 0xE0 | (encoded >> 12));
+                appendEscaped(out, 0x80 | ((encoded >> 6) & 0x3F));
+                appendEscaped(out, 0x80 | (encoded & 0x3F));
+            }
+        }
+        return out;
     }
 
+    /**
+     * Appends {@code phrase} to {@code out} lower cased, trimmed and with runs of whitespace
+     * collapsed to a single space, the form in which local sources store and look up phrases.
+     *
+     * @return {@code out}
+     */
+    @NonNull
+    public static StringBuilder appendNormalizedPhrase(@NonNull CharSequence phrase, @NonNull StringBuilder out) {
+        final int start = out.length();
+        boolean pendingSpace = false;
+        for (int i = 0; i < phrase.length(); i++) {
+            final char c = phrase.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = out.length() > start;
+                continue;
+            }
+            if (pendingSpace) {
+                out.append(' ');
+                pendingSpace = false;
+            }
+            out.append(Character.toLowerCase(c));
+        }
+        return out;
+    }
 
     /**
      * Tries to extract type of encoding for the given content type.
+     * <p>
+     * The result for the last content type is remembered, so repeated calls with the same header
+     * do not parse it again.
      *
      * @param contentType Content type gotten from {@link java.net.HttpURLConnection#getContentType()}
-     * @return Extracted encoding.
+     * @return Extracted encoding in lower case, or {@code "ISO-8859-1"} when the content type is
+     * {@code null} or has no charset.
      */
     @NonNull
     public static String extractEncoding(@Nullable String contentType) {
-        final String[] values;
-        if (contentType != null) {
-            values = contentType.split(";");
-        } else {
-            values = new String[0];
+        if (contentType == null) {
+            // http1.1 says ISO-8859-1 is the default charset
+            return ISO;
         }
-        String charset = "";
+        final String[] last = lastEncoding;
+        if (last != null && last[0].equals(contentType)) {
+            return last[1];
+        }
+        final String encoding = parseEncoding(contentType);
+        lastEncoding = new String[]{contentType, encoding};
+        return encoding;
+    }
 
-        for (String value : values) {
-            value = value.trim().toLowerCase();
-            if (value.startsWith("charset="))
-                charset = value.substring("charset=".length());
+    @NonNull
+    private static String parseEncoding(@NonNull String contentType) {
+        String charset = "";
+        int parameter = 0;
+        while (parameter < contentType.length()) {
+            int end = contentType.indexOf(';', parameter);
+            if (end == -1) {
+                end = contentType.length();
+            }
+            int from = parameter;
+            while (from < end && Character.isWhitespace(contentType.charAt(from))) {
+                from++;
+            }
+            if (contentType.regionMatches(true, from, CHARSET, 0, CHARSET.length())) {
+                int valueFrom = from + CHARSET.length();
+                int valueTo = end;
+                while (valueTo > valueFrom && Character.isWhitespace(contentType.charAt(valueTo - 1))) {
+                    valueTo--;
+                }
+                if (valueTo - valueFrom >= 2 && contentType.charAt(valueFrom) == '"' && contentType.charAt(valueTo - 1) == '"') {
+                    valueFrom++;
+                    valueTo--;
+                }
+                charset = contentType.substring(valueFrom, valueTo).toLowerCase(Locale.ROOT);
+            }
+            parameter = end + 1;
         }
         // http1.1 says ISO-8859-1 is the default charset
         if (charset.length() == 0)
             charset = ISO;
         return charset;
     }
+
+    private static void appendEscaped(@NonNull StringBuilder out, int b) {
+        out.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+    }
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.diff;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import in.arunkumarsampath.suggestions2.item.ScoredSuggestionItem;
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import in.arunkumarsampath.suggestions2.item.SuggestionItem;
+
+public class SuggestionDifferTest {
+
+    private static List<SimpleSuggestionItem> items(String... values) {
+        final List<SimpleSuggestionItem> items = new ArrayList<>();
+        for (String value : values) {
+            items.add(new SimpleSuggestionItem(value));
+        }
+        return items;
+    }
+
+    /**
+     * Applies {@code delta} to {@code values} the way a list adapter would. Inserted items are only
+     * known by their final position, so they are filled in once all operations are applied.
+     */
+    private static List<String> apply(List<String> values, SuggestionDelta<SimpleSuggestionItem> delta) {
+        final List<String> list = new ArrayList<>(values);
+        delta.dispatchTo(new SuggestionDelta.Callback() {
+            @Override
+            public void onInserted(int position, int count) {
+                for (int i = 0; i < count; i++) {
+                    list.add(position, null);
+                }
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                list.subList(position, position + count).clear();
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                list.add(toPosition, list.remove(fromPosition));
+            }
+
+            @Override
+            public void onChanged(int position, int count) {
+                for (int i = position; i < position + count; i++) {
+                    list.set(i, delta.items().get(i).value());
+                }
+            }
+        });
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == null) {
+                list.set(i, delta.items().get(i).value());
+            }
+        }
+        return list;
+    }
+
+    @Test
+    public void firstListIsInserted() {
+        final SuggestionDelta<SimpleSuggestionItem> delta = new SuggestionDiffer<SimpleSuggestionItem>()
+                .diff(items("batman", "batmobile"));
+        Assert.assertEquals("SuggestionDelta[insert(0,2)]", delta.toString());
+    }
+
+    @Test
+    public void rotationIsSingleMove() {
+        final SuggestionDiffer<SimpleSuggestionItem> differ = new SuggestionDiffer<>();
+        differ.diff(items("a", "b", "c", "d"));
+        Assert.assertEquals("SuggestionDelta[move(0,3)]", differ.diff(items("b", "c", "d", "a")).toString());
+    }
+
+    @Test
+    public void caseChangeIsChangeWithSameId() {
+        final SuggestionDiffer<SimpleSuggestionItem> differ = new SuggestionDiffer<>();
+        final SuggestionDelta<SimpleSuggestionItem> first = differ.diff(items("batman", "joker"));
+        final SuggestionDelta<SimpleSuggestionItem> second = differ.diff(items("Batman", "joker"));
+        Assert.assertEquals("SuggestionDelta[change(0,1)]", second.toString());
+        Assert.assertEquals(first.stableId(0), second.stableId(0));
+        Assert.assertTrue(differ.diff(items("Batman", "joker")).isEmpty());
+    }
+
+    @Test
+    public void scoredItemsMatchPlainItems() {
+        final SuggestionDiffer<SuggestionItem> differ = new SuggestionDiffer<>();
+        final SuggestionDelta<SuggestionItem> first = differ.diff(Arrays.<SuggestionItem>asList(
+                new SimpleSuggestionItem("batman"), new SimpleSuggestionItem("joker")));
+        final SuggestionDelta<SuggestionItem> second = differ.diff(Arrays.<SuggestionItem>asList(
+                new ScoredSuggestionItem("joker", 2, 1), new ScoredSuggestionItem("batman", 1, 1)));
+        Assert.assertEquals("SuggestionDelta[move(1,0)]", second.toString());
+        Assert.assertEquals(first.stableId(0), second.stableId(1));
+    }
+
+    @Test
+    public void removalsInsertionsAndMoves() {
+        final SuggestionDiffer<SimpleSuggestionItem> differ = new SuggestionDiffer<>();
+        differ.diff(items("a", "b", "c", "d", "e"));
+        final SuggestionDelta<SimpleSuggestionItem> delta = differ.diff(items("e", "x", "y", "a", "c"));
+        Assert.assertEquals(Arrays.asList("e", "x", "y", "a", "c"), apply(Arrays.asList("a", "b", "c", "d", "e"), delta));
+        Assert.assertEquals("SuggestionDelta[remove(3,1), remove(1,1), insert(0,2), move(4,0)]", delta.toString());
+    }
+
+    @Test
+    public void randomListsApplyCleanly() {
+        final Random random = new Random(3);
+        final String[] pool = {"a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k", "l"};
+        final SuggestionDiffer<SimpleSuggestionItem> differ = new SuggestionDiffer<>();
+        List<String> current = Collections.emptyList();
+        for (int round = 0; round < 500; round++) {
+            final List<String> next = new ArrayList<>(Arrays.asList(pool));
+            Collections.shuffle(next, random);
+            final List<String> values = new ArrayList<>(next.subList(0, random.nextInt(pool.length + 1)));
+            final SuggestionDelta<SimpleSuggestionItem> delta = differ.diff(items(values.toArray(new String[0])));
+            Assert.assertEquals(values, apply(current, delta));
+            current = values;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.executor;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+import in.arunkumarsampath.suggestions2.source.cache.CachingSuggestionSource;
+import io.reactivex.Flowable;
+import io.reactivex.subscribers.TestSubscriber;
+
+public class SuggestionExecutorTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private final SuggestionExecutor executor = new SuggestionExecutor(1, 2);
+
+    private final SuggestionSource<SimpleSuggestionItem> blocking = value -> Flowable.fromCallable(() -> {
+        started.countDown();
+        release.await();
+        return new SimpleSuggestionItem(value + " " + Thread.currentThread().getName());
+    });
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void runsOnPoolThread() {
+        release.countDown();
+        executor.wrap(blocking).getSuggestions("a")
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertValue(item -> item.value().startsWith("a suggestions-"))
+                .assertComplete();
+    }
+
+    @Test
+    public void dropsOldestQueuedCall() throws InterruptedException {
+        final SuggestionSource<SimpleSuggestionItem> source = executor.wrap(blocking);
+        final TestSubscriber<SimpleSuggestionItem> running = source.getSuggestions("a").test();
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        final TestSubscriber<SimpleSuggestionItem> oldest = source.getSuggestions("b").test();
+        final TestSubscriber<SimpleSuggestionItem> queued = source.getSuggestions("c").test();
+        final TestSubscriber<SimpleSuggestionItem> newest = source.getSuggestions("d").test();
+        oldest.assertNoValues().assertError(SuggestionDroppedException.class);
+        queued.assertNotComplete();
+        Assert.assertEquals(1, executor.droppedCount());
+        Assert.assertEquals(2, executor.queuedCount());
+
+        release.countDown();
+        running.awaitDone(5, TimeUnit.SECONDS).assertValueCount(1);
+        queued.awaitDone(5, TimeUnit.SECONDS).assertValueCount(1);
+        newest.awaitDone(5, TimeUnit.SECONDS).assertValueCount(1);
+        Assert.assertEquals(1, executor.poolSize());
+        Assert.assertEquals(4, executor.submittedCount());
+    }
+
+    @Test
+    public void cancelledCallLeavesQueue() throws InterruptedException {
+        final SuggestionSource<SimpleSuggestionItem> source = executor.wrap(blocking);
+        source.getSuggestions("a").test();
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        source.getSuggestions("b").test().cancel();
+        Assert.assertEquals(0, executor.queuedCount());
+        Assert.assertEquals(0, executor.droppedCount());
+    }
+
+    @Test
+    public void dropsCallsAfterShutdown() {
+        executor.shutdown();
+        executor.wrap(blocking).getSuggestions("a").test().assertNoValues().assertError(SuggestionDroppedException.class);
+        Assert.assertEquals(1, executor.droppedCount());
+    }
+
+    @Test
+    public void droppedCallIsNotCached() {
+        executor.shutdown();
+        final CachingSuggestionSource<SimpleSuggestionItem> cache = new CachingSuggestionSource<>(executor.wrap(blocking));
+        cache.getSuggestions("a").test().assertError(SuggestionDroppedException.class);
+        Assert.assertEquals(0, cache.size());
+    }
+}
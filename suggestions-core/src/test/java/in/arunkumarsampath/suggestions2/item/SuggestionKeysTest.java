@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package in.arunkumarsampath.suggestions2.item;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+public class SuggestionKeysTest {
+
+    @Test
+    public void scoredItemsCarryKeysOfPlainItems() {
+        final SimpleSuggestionItem plain = new SimpleSuggestionItem("Batman Begins");
+        final ScoredSuggestionItem scored = new ScoredSuggestionItem("Batman Begins", 2.5, 3);
+
+        Assert.assertEquals("batman begins", SuggestionKeys.keyOf(plain));
+        Assert.assertEquals(SuggestionKeys.keyOf(plain), SuggestionKeys.keyOf(scored));
+        Assert.assertEquals(SuggestionKeys.idOf(plain), SuggestionKeys.idOf(scored));
+        Assert.assertEquals(SuggestionKeys.hash("batman begins"), scored.id());
+        Assert.assertEquals(0xcbf29ce484222325L, SuggestionKeys.hash(""));
+    }
+
+    @Test
+    public void keysDoNotDependOnDefaultLocale() {
+        final Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            Assert.assertEquals("title", SuggestionKeys.normalize("TITLE"));
+            Assert.assertEquals(SuggestionKeys.hash("title"), new ScoredSuggestionItem("TITLE").id());
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    public void normalizedValueIsItsOwnKey() {
+        final ScoredSuggestionItem item = new ScoredSuggestionItem("batman");
+        Assert.assertSame(item.value(), item.key());
+        Assert.assertEquals(ScoredSuggestionItem.NO_SOURCE, item.sourceId());
+    }
+
+    @Test
+    public void copiesKeepKeysAndIds() {
+        final ScoredSuggestionItem item = new ScoredSuggestionItem("Batman", 1, 0);
+        final ScoredSuggestionItem rescored = item.withScore(4).withSourceId(2);
+        Assert.assertSame(item.key(), rescored.key());
+        Assert.assertEquals(item.id(), rescored.id());
+        Assert.assertEquals(4, rescored.score(), 0);
+        Assert.assertEquals(2, rescored.sourceId());
+        Assert.assertNotEquals(item, rescored);
+        Assert.assertEquals(item, new ScoredSuggestionItem("Batman", 1, 0));
+        Assert.assertEquals(item.hashCode(), rescored.hashCode());
+    }
+
+    @Test
+    public void packedListRoundTrips() {
+        final List<SuggestionItem> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            items.add(i % 3 == 0
+                    ? new SimpleSuggestionItem("Caf\u00e9 " + i)
+                    : new ScoredSuggestionItem("batman " + i, i / 2.0, i % 4));
+        }
+        final PackedSuggestionList packed = PackedSuggestionList.pack(items);
+
+        Assert.assertEquals(items.size(), packed.size());
+        for (int i = 0; i < items.size(); i++) {
+            final ScoredSuggestionItem item = packed.get(i);
+            Assert.assertEquals(ScoredSuggestionItem.of(items.get(i)), item);
+            Assert.assertEquals(SuggestionKeys.keyOf(items.get(i)), item.key());
+            Assert.assertEquals(SuggestionKeys.idOf(items.get(i)), packed.id(i));
+        }
+        Assert.assertEquals("caf\u00e9 99", packed.get(99).key());
+        final ScoredSuggestionItem normalized = packed.get(98);
+        Assert.assertSame(normalized.value(), normalized.key());
+        Assert.assertSame(packed, PackedSuggestionList.pack(packed));
+        Assert.assertEquals(Arrays.asList(packed.get(0), packed.get(1)), packed.subList(0, 2));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void packedListChecksIndex() {
+        PackedSuggestionList.pack(Arrays.asList(new SimpleSuggestionItem("batman"))).score(1);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.metrics;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import io.reactivex.Flowable;
+import io.reactivex.processors.PublishProcessor;
+
+public class InstrumentedSuggestionSourceTest {
+
+    private final List<SuggestionCallMetrics> reported = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        reported.clear();
+    }
+
+    @Test
+    public void completedCallIsReported() {
+        instrument(Flowable.just(new SimpleSuggestionItem("batman"), new SimpleSuggestionItem("bathroom")))
+                .getSuggestions("bat")
+                .test()
+                .assertComplete();
+
+        Assert.assertEquals(1, reported.size());
+        final SuggestionCallMetrics metrics = reported.get(0);
+        Assert.assertEquals("test", metrics.source());
+        Assert.assertEquals("bat", metrics.query());
+        Assert.assertEquals(SuggestionCallMetrics.Outcome.COMPLETED, metrics.outcome());
+        Assert.assertEquals(2, metrics.itemCount());
+        Assert.assertTrue(metrics.firstItemNanos() >= 0);
+        Assert.assertTrue(metrics.totalNanos() >= metrics.firstItemNanos());
+        Assert.assertEquals(-1, metrics.connectNanos());
+        Assert.assertEquals(-1, metrics.bytesRead());
+    }
+
+    @Test
+    public void cancelledCallIsReportedOnce() {
+        final PublishProcessor<SimpleSuggestionItem> upstream = PublishProcessor.create();
+        instrument(upstream).getSuggestions("bat").test().cancel();
+
+        Assert.assertEquals(1, reported.size());
+        Assert.assertEquals(SuggestionCallMetrics.Outcome.CANCELLED, reported.get(0).outcome());
+        Assert.assertEquals(-1, reported.get(0).firstItemNanos());
+    }
+
+    @Test
+    public void failedCallIsReported() {
+        final IllegalStateException error = new IllegalStateException();
+        instrument(Flowable.<SimpleSuggestionItem>error(error)).getSuggestions("bat").test();
+
+        Assert.assertEquals(1, reported.size());
+        Assert.assertEquals(SuggestionCallMetrics.Outcome.FAILED, reported.get(0).outcome());
+        Assert.assertSame(error, reported.get(0).error());
+    }
+
+    @Test
+    public void disabledListenerReturnsSourceUnchanged() {
+        final Flowable<SimpleSuggestionItem> suggestions = Flowable.empty();
+        Assert.assertSame(suggestions, new InstrumentedSuggestionSource<>("test", value -> suggestions, SuggestionMetricsListener.NONE)
+                .getSuggestions("bat"));
+    }
+
+    private InstrumentedSuggestionSource<SimpleSuggestionItem> instrument(Flowable<SimpleSuggestionItem> suggestions) {
+        return new InstrumentedSuggestionSource<>("test", value -> suggestions, reported::add);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.parser;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
+
+public class JsonSuggestionResponseParserTest {
+
+    private final JsonSuggestionResponseParser parser = new JsonSuggestionResponseParser();
+
+    @Test
+    public void suggestionsAreEmitted() {
+        final List<SimpleSuggestionItem> items = parse("[\"bat\", [\"batman\" , \"bath & \\\"body\\\" works\",\"caf\\u00e9\"],[],{}]")
+                .test()
+                .assertComplete()
+                .values();
+        Assert.assertEquals(3, items.size());
+        Assert.assertEquals("batman", items.get(0).value());
+        Assert.assertEquals("bath & \"body\" works", items.get(1).value());
+        Assert.assertEquals("caf\u00e9", items.get(2).value());
+    }
+
+    @Test
+    public void emptySuggestionsComplete() {
+        parse("[\"zzqx\",[]]").test()
+                .assertNoValues()
+                .assertComplete();
+    }
+
+    @Test
+    public void parsingStopsWhenNothingIsRequested() {
+        parse("[\"bat\",[\"batman\",\"bathroom\"]]").test(1)
+                .assertValueCount(1)
+                .assertComplete();
+    }
+
+    @Test
+    public void malformedResponseFails() {
+        parse("<html>").test()
+                .assertError(IOException.class);
+    }
+
+    private Flowable<SimpleSuggestionItem> parse(String response) {
+        return Flowable.create(emitter -> {
+            parser.parse(new ByteArrayInputStream(response.getBytes(Charset.forName("UTF-8"))), "UTF-8", emitter);
+            emitter.onComplete();
+        }, BackpressureStrategy.LATEST);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.parser;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
+
+public class XmlSuggestionResponseParserTest {
+
+    private static final String RESPONSE = "<?xml version=\"1.0\"?><toplevel>"
+            + "<CompleteSuggestion><suggestion data=\"batman\"/></CompleteSuggestion>"
+            + "<CompleteSuggestion><SUGGESTION data=\"bathroom\"/></CompleteSuggestion>"
+            + "<CompleteSuggestion><suggestions data=\"ignored\"/></CompleteSuggestion>"
+            + "</toplevel>";
+
+    private final XmlSuggestionResponseParser parser = new XmlSuggestionResponseParser();
+
+    @Test
+    public void suggestionElementsAreEmitted() {
+        parse(RESPONSE).test()
+                .assertValueCount(2)
+                .assertComplete();
+    }
+
+    @Test
+    public void parserIsReusedAcrossResponses() {
+        for (int i = 0; i < 3; i++) {
+            final SimpleSuggestionItem first = parse(RESPONSE).test().values().get(0);
+            Assert.assertEquals("batman", first.value());
+        }
+    }
+
+    @Test
+    public void parsingStopsWhenNothingIsRequested() {
+        parse(RESPONSE).test(1)
+                .assertValueCount(1)
+                .assertComplete();
+    }
+
+    private Flowable<SimpleSuggestionItem> parse(String response) {
+        return Flowable.create(emitter -> {
+            parser.parse(new ByteArrayInputStream(response.getBytes(Charset.forName("UTF-8"))), "UTF-8", emitter);
+            emitter.onComplete();
+        }, BackpressureStrategy.LATEST);
+    }
+}
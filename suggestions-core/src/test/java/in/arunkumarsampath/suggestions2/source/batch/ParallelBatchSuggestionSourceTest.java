@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package in.arunkumarsampath.suggestions2.source.batch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+
+public class ParallelBatchSuggestionSourceTest {
+
+    private static final List<String> QUERIES = Arrays.asList("a", "bb", "ccc", "dddd", "eeeee", "ffffff");
+
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    /**
+     * Answers shorter queries more slowly, so that completion order is the reverse of query order,
+     * and fails for {@code "ccc"}.
+     */
+    private final SuggestionSource<SimpleSuggestionItem> slow = value -> Flowable.fromCallable(() -> {
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(10L * (8 - value.length()));
+        } finally {
+            running.decrementAndGet();
+        }
+        if (value.equals("ccc")) {
+            throw new IOException("503");
+        }
+        return new SimpleSuggestionItem(value + " 1");
+    });
+
+    @Test
+    public void orderedBatchKeepsQueryOrder() {
+        final List<BatchResult<SimpleSuggestionItem>> results = new ParallelBatchSuggestionSource<>(slow, 3, true, Schedulers.io())
+                .getSuggestionsBatch(QUERIES)
+                .toList()
+                .blockingGet();
+
+        Assert.assertEquals(QUERIES, queries(results));
+        Assert.assertEquals(3, maxRunning.get());
+        Assert.assertEquals("a 1", results.get(0).items().get(0).value());
+    }
+
+    @Test
+    public void unorderedBatchEmitsAsCompleted() {
+        final List<BatchResult<SimpleSuggestionItem>> results = new ParallelBatchSuggestionSource<>(slow, QUERIES.size(), false, Schedulers.io())
+                .getSuggestionsBatch(QUERIES)
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertValueCount(QUERIES.size())
+                .values();
+
+        Assert.assertEquals("ffffff", results.get(0).query());
+        Assert.assertEquals("a", results.get(QUERIES.size() - 1).query());
+    }
+
+    @Test
+    public void failedQueryIsIsolated() {
+        final List<BatchResult<SimpleSuggestionItem>> results = new ParallelBatchSuggestionSource<>(slow, 2, true, Schedulers.io())
+                .getSuggestionsBatch(QUERIES)
+                .toList()
+                .blockingGet();
+
+        Assert.assertEquals(QUERIES.size(), results.size());
+        final BatchResult<SimpleSuggestionItem> failed = results.get(2);
+        Assert.assertFalse(failed.isSuccess());
+        Assert.assertTrue(failed.error() instanceof IOException);
+        Assert.assertTrue(failed.items().isEmpty());
+        Assert.assertTrue(results.get(3).isSuccess());
+    }
+
+    @Test
+    public void plainSourceIsBatchedSequentially() {
+        final List<BatchResult<SimpleSuggestionItem>> results = Batches.getSuggestionsBatch(slow, QUERIES)
+                .toList()
+                .blockingGet();
+
+        Assert.assertEquals(QUERIES, queries(results));
+        Assert.assertEquals(1, maxRunning.get());
+    }
+
+    private static List<String> queries(List<BatchResult<SimpleSuggestionItem>> results) {
+        final List<String> queries = new ArrayList<>();
+        for (BatchResult<SimpleSuggestionItem> result : results) {
+            queries.add(result.query());
+        }
+        return queries;
+    }
+}
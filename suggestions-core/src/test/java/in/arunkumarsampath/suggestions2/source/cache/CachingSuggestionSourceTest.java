@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.source.cache;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import in.arunkumarsampath.suggestions2.item.PackedSuggestionList;
+import in.arunkumarsampath.suggestions2.item.ScoredSuggestionItem;
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import in.arunkumarsampath.suggestions2.source.batch.BatchResult;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.TestScheduler;
+
+public class CachingSuggestionSourceTest {
+
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+    private TestScheduler clock;
+    private CachingSuggestionSource<SimpleSuggestionItem> cachingSource;
+
+    @Before
+    public void setUp() {
+        upstreamCalls.set(0);
+        clock = new TestScheduler();
+        cachingSource = new CachingSuggestionSource<>(value -> Flowable.defer(() -> {
+            upstreamCalls.incrementAndGet();
+            return Flowable.just(new SimpleSuggestionItem(value + " 1"), new SimpleSuggestionItem(value + " 2"));
+        }), 2, 1, TimeUnit.MINUTES, clock);
+    }
+
+    @Test
+    public void repeatedTermIsServedFromCache() {
+        cachingSource.getSuggestions("bat").test().assertValueCount(2).assertComplete();
+        cachingSource.getSuggestions(" bat ").test().assertValueCount(2).assertComplete();
+
+        Assert.assertEquals(1, upstreamCalls.get());
+        Assert.assertEquals(1, cachingSource.hitCount());
+        Assert.assertEquals(1, cachingSource.missCount());
+    }
+
+    @Test
+    public void expiredEntryIsFetchedAgain() {
+        cachingSource.getSuggestions("bat").test().assertComplete();
+        clock.advanceTimeBy(1, TimeUnit.MINUTES);
+        cachingSource.getSuggestions("bat").test().assertComplete();
+
+        Assert.assertEquals(2, upstreamCalls.get());
+        Assert.assertEquals(1, cachingSource.evictionCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted() {
+        cachingSource.getSuggestions("a").test().assertComplete();
+        cachingSource.getSuggestions("b").test().assertComplete();
+        cachingSource.getSuggestions("a").test().assertComplete();
+        cachingSource.getSuggestions("c").test().assertComplete();
+
+        Assert.assertEquals(2, cachingSource.size());
+        Assert.assertEquals(1, cachingSource.evictionCount());
+        Assert.assertNull(cachingSource.get("b"));
+        Assert.assertNotNull(cachingSource.get("a"));
+    }
+
+    @Test
+    public void failedFetchIsNotCached() {
+        final CachingSuggestionSource<SimpleSuggestionItem> failing = new CachingSuggestionSource<>(
+                value -> Flowable.error(new IllegalStateException()));
+        failing.getSuggestions("bat").test().assertError(IllegalStateException.class);
+        Assert.assertEquals(0, failing.size());
+    }
+
+    @Test
+    public void scoredResultsAreStoredPacked() {
+        final CachingSuggestionSource<ScoredSuggestionItem> scored = new CachingSuggestionSource<>(
+                value -> Flowable.just(new ScoredSuggestionItem("Batman", 2, 0), new ScoredSuggestionItem("bathroom", 1, 0)));
+        scored.getSuggestions("bat").test().assertComplete();
+
+        Assert.assertTrue(scored.get("bat") instanceof PackedSuggestionList);
+        scored.getSuggestions("bat").test()
+                .assertValues(new ScoredSuggestionItem("Batman", 2, 0), new ScoredSuggestionItem("bathroom", 1, 0));
+        Assert.assertEquals(1, scored.hitCount());
+    }
+
+    @Test
+    public void batchServesHitsAndWarmsMisses() {
+        cachingSource.getSuggestions("a").test().assertComplete();
+
+        final List<BatchResult<SimpleSuggestionItem>> results = cachingSource.getSuggestionsBatch(Arrays.asList("b", "a ", "c"))
+                .test()
+                .assertValueCount(3)
+                .values();
+        Assert.assertEquals("a ", results.get(0).query());
+        Assert.assertEquals("a 1", results.get(0).items().get(0).value());
+        Assert.assertEquals("b", results.get(1).query());
+        Assert.assertEquals(3, upstreamCalls.get());
+        Assert.assertEquals(1, cachingSource.hitCount());
+        Assert.assertEquals(3, cachingSource.missCount());
+        Assert.assertNotNull(cachingSource.get("c"));
+    }
+
+    @Test
+    public void batchFetchesRepeatedMissOnce() {
+        final List<BatchResult<SimpleSuggestionItem>> results = cachingSource.getSuggestionsBatch(Arrays.asList("b", "c", "b "))
+                .test()
+                .assertValueCount(3)
+                .values();
+        Assert.assertEquals("b", results.get(0).query());
+        Assert.assertEquals("b ", results.get(1).query());
+        Assert.assertEquals("b 1", results.get(1).items().get(0).value());
+        Assert.assertEquals("c", results.get(2).query());
+        Assert.assertEquals(2, upstreamCalls.get());
+        Assert.assertEquals(1, cachingSource.hitCount());
+        Assert.assertEquals(2, cachingSource.missCount());
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.source.cache;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.TestScheduler;
+
+public class DiskCachingSuggestionSourceTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+    private TestScheduler scheduler;
+    private DiskSuggestionCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        upstreamCalls.set(0);
+        scheduler = new TestScheduler();
+        cache = new DiskSuggestionCache(temporaryFolder.newFolder(), DiskSuggestionCache.DEFAULT_MAX_BYTES);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        cache.close();
+    }
+
+    @Test
+    public void storedResultIsServedAndRevalidated() {
+        final DiskCachingSuggestionSource<SimpleSuggestionItem> first = newSource();
+        first.getSuggestions("bat").test().assertValueCount(1);
+        Assert.assertEquals(1, upstreamCalls.get());
+
+        // A new instance over the same cache, as after a restart.
+        final DiskCachingSuggestionSource<SimpleSuggestionItem> second = newSource();
+        second.getSuggestions("bat").test().assertValueCount(1).assertComplete();
+        Assert.assertEquals(1, second.hitCount());
+        Assert.assertEquals(1, upstreamCalls.get());
+
+        scheduler.advanceTimeBy(2, TimeUnit.MINUTES);
+        second.getSuggestions("bat").test().assertValueCount(1);
+        Assert.assertEquals(1, upstreamCalls.get());
+        Assert.assertEquals(1, second.pendingRevalidationCount());
+        scheduler.triggerActions();
+        Assert.assertEquals(2, upstreamCalls.get());
+        Assert.assertEquals(0, second.pendingRevalidationCount());
+    }
+
+    @Test
+    public void expiredResultIsFetched() {
+        final DiskCachingSuggestionSource<SimpleSuggestionItem> source = newSource();
+        source.getSuggestions("bat").test();
+        scheduler.advanceTimeBy(10, TimeUnit.MINUTES);
+        source.getSuggestions("bat").test().assertValueCount(1);
+
+        Assert.assertEquals(2, upstreamCalls.get());
+        Assert.assertEquals(2, source.missCount());
+    }
+
+    private DiskCachingSuggestionSource<SimpleSuggestionItem> newSource() {
+        return new DiskCachingSuggestionSource<>(value -> Flowable.defer(() -> {
+            upstreamCalls.incrementAndGet();
+            return Flowable.just(new SimpleSuggestionItem(value + "man"));
+        }), cache, SimpleSuggestionItem::new, 1, 10, TimeUnit.MINUTES, scheduler);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.source.cache;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class DiskSuggestionCacheTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File directory;
+    private DiskSuggestionCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = temporaryFolder.newFolder();
+        cache = new DiskSuggestionCache(directory, DiskSuggestionCache.DEFAULT_MAX_BYTES);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        cache.close();
+    }
+
+    @Test
+    public void entriesSurviveReopening() throws IOException {
+        cache.put("bat", Arrays.asList("batman", "bathroom"), 42);
+        cache.put("cat", Collections.singletonList("caf\u00e9"), 43);
+        cache.put("bat", Collections.singletonList("batmobile"), 44);
+        reopen(DiskSuggestionCache.DEFAULT_MAX_BYTES);
+
+        Assert.assertEquals(2, cache.size());
+        final DiskSuggestionCache.Entry bat = cache.get("bat");
+        Assert.assertNotNull(bat);
+        Assert.assertEquals(Collections.singletonList("batmobile"), bat.values());
+        Assert.assertEquals(44, bat.timestamp());
+        Assert.assertEquals(Collections.singletonList("caf\u00e9"), cache.get("cat").values());
+        Assert.assertNull(cache.get("dog"));
+    }
+
+    @Test
+    public void indexGrowsBeyondInitialCapacity() throws IOException {
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key" + i, Collections.singletonList("value" + i), i);
+        }
+        reopen(DiskSuggestionCache.DEFAULT_MAX_BYTES);
+
+        Assert.assertEquals(1000, cache.size());
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals("value" + i, cache.get("key" + i).values().get(0));
+        }
+    }
+
+    @Test
+    public void compactionKeepsNewestEntriesWithinBudget() throws IOException {
+        reopen(4096);
+        for (int i = 0; i < 500; i++) {
+            cache.put("key" + (i % 100), Collections.singletonList("value" + i), i);
+        }
+
+        Assert.assertTrue(cache.dataBytes() <= 4096);
+        Assert.assertEquals("value499", cache.get("key99").values().get(0));
+        Assert.assertNull(cache.get("key0"));
+    }
+
+    @Test
+    public void corruptIndexIsRebuiltFromLog() throws IOException {
+        cache.put("bat", Collections.singletonList("batman"), 1);
+        cache.close();
+        try (RandomAccessFile index = new RandomAccessFile(new File(directory, "suggestions.idx"), "rw")) {
+            index.writeInt(0);
+        }
+        cache = new DiskSuggestionCache(directory, DiskSuggestionCache.DEFAULT_MAX_BYTES);
+
+        Assert.assertEquals("batman", cache.get("bat").values().get(0));
+    }
+
+    @Test
+    public void tornRecordIsDiscarded() throws IOException {
+        cache.put("bat", Collections.singletonList("batman"), 1);
+        cache.put("cat", Collections.singletonList("catwoman"), 2);
+        final long length = cache.dataBytes();
+        cache.close();
+        try (RandomAccessFile log = new RandomAccessFile(new File(directory, "suggestions.log"), "rw")) {
+            log.setLength(length - 3);
+        }
+        new File(directory, "suggestions.idx").delete();
+        cache = new DiskSuggestionCache(directory, DiskSuggestionCache.DEFAULT_MAX_BYTES);
+
+        Assert.assertEquals(1, cache.size());
+        Assert.assertNotNull(cache.get("bat"));
+        Assert.assertNull(cache.get("cat"));
+
+        cache.put("cat", Collections.singletonList("catwoman"), 3);
+        Assert.assertEquals("catwoman", cache.get("cat").values().get(0));
+    }
+
+    private void reopen(long maxBytes) throws IOException {
+        cache.close();
+        cache = new DiskSuggestionCache(directory, maxBytes);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.source.coalesce;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.subscribers.TestSubscriber;
+
+public class CoalescingSuggestionSourceTest {
+
+    private PublishProcessor<SimpleSuggestionItem> upstream;
+    private CoalescingSuggestionSource<SimpleSuggestionItem> coalescingSource;
+
+    @Before
+    public void setUp() {
+        upstream = PublishProcessor.create();
+        coalescingSource = new CoalescingSuggestionSource<>(value -> upstream);
+    }
+
+    @Test
+    public void concurrentSubscribersShareOneRequest() {
+        final TestSubscriber<SimpleSuggestionItem> first = coalescingSource.getSuggestions("bat").test();
+        upstream.onNext(new SimpleSuggestionItem("batman"));
+        final TestSubscriber<SimpleSuggestionItem> second = coalescingSource.getSuggestions("bat ").test();
+        upstream.onNext(new SimpleSuggestionItem("bathroom"));
+        upstream.onComplete();
+
+        first.assertValueCount(2).assertComplete();
+        second.assertValueCount(2).assertComplete();
+        Assert.assertEquals(1, coalescingSource.upstreamCount());
+        Assert.assertEquals(1, coalescingSource.coalescedCount());
+        Assert.assertEquals(0, coalescingSource.inFlightCount());
+    }
+
+    @Test
+    public void requestIsCancelledWithLastSubscriber() {
+        final TestSubscriber<SimpleSuggestionItem> first = coalescingSource.getSuggestions("bat").test();
+        final TestSubscriber<SimpleSuggestionItem> second = coalescingSource.getSuggestions("bat").test();
+
+        first.cancel();
+        Assert.assertTrue(upstream.hasSubscribers());
+        second.cancel();
+        Assert.assertFalse(upstream.hasSubscribers());
+        Assert.assertEquals(0, coalescingSource.inFlightCount());
+    }
+
+    @Test
+    public void differentTermsAreNotShared() {
+        coalescingSource.getSuggestions("bat").test();
+        coalescingSource.getSuggestions("cat").test();
+        Assert.assertEquals(2, coalescingSource.upstreamCount());
+        Assert.assertEquals(2, coalescingSource.inFlightCount());
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.source.composite;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import in.arunkumarsampath.suggestions2.item.ScoredSuggestionItem;
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subscribers.TestSubscriber;
+
+public class CompositeSuggestionSourceTest {
+
+    private TestScheduler timeScheduler;
+
+    @Before
+    public void setUp() {
+        timeScheduler = new TestScheduler();
+    }
+
+    @Test
+    public void resultsAreDeduplicatedAndRanked() {
+        final CompositeSuggestionSource<SimpleSuggestionItem> composite = builder()
+                .add(source(0, "bat", "batman", "bathroom"))
+                .add(source(0, "Batman", "batmobile"), 2)
+                .build();
+
+        final List<SimpleSuggestionItem> items = composite.getSuggestions("bat").test().assertComplete().values();
+        Assert.assertEquals(4, items.size());
+        Assert.assertEquals("batman", items.get(0).value());
+        Assert.assertEquals("bat", items.get(1).value());
+        Assert.assertEquals("batmobile", items.get(2).value());
+        Assert.assertEquals("bathroom", items.get(3).value());
+    }
+
+    @Test
+    public void scoredItemsRankByTheirScore() {
+        final CompositeSuggestionSource<ScoredSuggestionItem> composite = new CompositeSuggestionSource.Builder<ScoredSuggestionItem>()
+                .scheduler(Schedulers.trampoline())
+                .timeScheduler(timeScheduler)
+                .add(value -> Flowable.just(new ScoredSuggestionItem("bat", 0.1, 0), new ScoredSuggestionItem("Batman", 0.5, 0)))
+                .add(value -> Flowable.just(new ScoredSuggestionItem("batman", 0.25, 1), new ScoredSuggestionItem("batmobile", 0.7, 1)), 2)
+                .build();
+
+        final List<ScoredSuggestionItem> items = composite.getSuggestions("bat").test().assertComplete().values();
+        Assert.assertEquals(3, items.size());
+        Assert.assertEquals("batmobile", items.get(0).value());
+        Assert.assertEquals("Batman", items.get(1).value());
+        Assert.assertEquals("bat", items.get(2).value());
+    }
+
+    @Test
+    public void slowSourceIsDroppedAfterDeadline() {
+        final CompositeSuggestionSource<SimpleSuggestionItem> composite = builder()
+                .add(source(0, "batman"))
+                .add(source(5000, "bathroom"))
+                .deadline(1, TimeUnit.SECONDS)
+                .build();
+
+        final TestSubscriber<List<SimpleSuggestionItem>> snapshots = composite.getRankedSnapshots("bat").test();
+        snapshots.assertValueCount(1).assertNotComplete();
+
+        timeScheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        snapshots.assertValueCount(2).assertComplete();
+        Assert.assertEquals(1, snapshots.values().get(1).size());
+        Assert.assertEquals("batman", snapshots.values().get(1).get(0).value());
+    }
+
+    @Test
+    public void failingSourceIsIgnored() {
+        final CompositeSuggestionSource<SimpleSuggestionItem> composite = builder()
+                .add(value -> Flowable.error(new IllegalStateException()))
+                .add(source(0, "batman"))
+                .build();
+
+        composite.getSuggestions("bat").test()
+                .assertValueCount(1)
+                .assertComplete();
+    }
+
+    @Test
+    public void resultsAreLimited() {
+        builder().add(source(0, "a", "b", "c")).maxResults(2).build()
+                .getSuggestions("bat").test()
+                .assertValueCount(2);
+    }
+
+    private CompositeSuggestionSource.Builder<SimpleSuggestionItem> builder() {
+        return new CompositeSuggestionSource.Builder<SimpleSuggestionItem>()
+                .scheduler(Schedulers.trampoline())
+                .timeScheduler(timeScheduler);
+    }
+
+    private SuggestionSource<SimpleSuggestionItem> source(long delayMillis, String... values) {
+        return value -> {
+            Flowable<SimpleSuggestionItem> items = Flowable.fromArray(values).map(SimpleSuggestionItem::new);
+            if (delayMillis > 0) {
+                items = items.delaySubscription(delayMillis, TimeUnit.MILLISECONDS, timeScheduler);
+            }
+            return items;
+        };
+    }
+}
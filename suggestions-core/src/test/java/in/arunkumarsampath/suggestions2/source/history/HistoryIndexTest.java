@@ -0,0 +1,127 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package in.arunkumarsampath.suggestions2.source.history;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class HistoryIndexTest {
+
+    @Test
+    public void ranksByDecayedScore() {
+        final HistoryIndex index = new HistoryIndex(10);
+        index.add("batman", 0);
+        index.add("batman", 0);
+        index.add("batman", 0);
+        index.add("bathroom", 1);
+        Assert.assertEquals(Arrays.asList("batman", "bathroom"), top(index, "bat"));
+
+        index.add("battlefield", 2);
+        Assert.assertEquals(Arrays.asList("battlefield", "batman", "bathroom"), top(index, "bat"));
+        Assert.assertEquals(Collections.singletonList("bathroom"), top(index, "bath"));
+        Assert.assertEquals(Collections.emptyList(), top(index, "cat"));
+        Assert.assertEquals(3, index.size());
+        Assert.assertEquals("bathroom", index.lowest());
+    }
+
+    @Test
+    public void combineAddsScores() {
+        Assert.assertEquals(1, HistoryIndex.combine(0, 0), 1e-9);
+        Assert.assertEquals(3, HistoryIndex.combine(2, 2), 1e-9);
+        Assert.assertEquals(Math.log(5) / Math.log(2), HistoryIndex.combine(2, 0), 1e-9);
+    }
+
+    @Test
+    public void removeRefillsListsFromBelow() {
+        final HistoryIndex index = new HistoryIndex(2);
+        index.add("ab", 4);
+        index.add("abc", 3);
+        index.add("abd", 2);
+        index.add("ae", 1);
+        Assert.assertEquals(Arrays.asList("ab", "abc"), top(index, "a"));
+
+        Assert.assertTrue(index.remove("ab"));
+        Assert.assertFalse(index.remove("ab"));
+        Assert.assertEquals(Arrays.asList("abc", "abd"), top(index, "a"));
+        Assert.assertTrue(index.remove("abc"));
+        Assert.assertEquals(Arrays.asList("abd", "ae"), top(index, "a"));
+        Assert.assertEquals(Collections.singletonList("abd"), top(index, "ab"));
+
+        index.add("ab", 0);
+        Assert.assertEquals(Arrays.asList("abd", "ae"), top(index, "a"));
+        Assert.assertEquals(Arrays.asList("abd", "ab"), top(index, "ab"));
+    }
+
+    @Test
+    public void matchesBruteForce() {
+        final Random random = new Random(42);
+        final HistoryIndex index = new HistoryIndex(3);
+        final Map<String, Double> expected = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            final String phrase = randomPhrase(random);
+            if (random.nextInt(4) == 0) {
+                Assert.assertEquals(expected.remove(phrase) != null, index.remove(phrase));
+            } else {
+                final double rank = random.nextDouble() * 100;
+                index.add(phrase, rank);
+                final Double previous = expected.get(phrase);
+                expected.put(phrase, previous == null ? rank : HistoryIndex.combine(previous, rank));
+            }
+            final String prefix = randomPhrase(random).substring(0, random.nextInt(3));
+            Assert.assertEquals(bruteForce(expected, prefix, 3), top(index, prefix));
+        }
+        Assert.assertEquals(expected.size(), index.size());
+    }
+
+    private static String randomPhrase(Random random) {
+        final char[] phrase = new char[2 + random.nextInt(3)];
+        for (int i = 0; i < phrase.length; i++) {
+            phrase[i] = (char) ('a' + random.nextInt(3));
+        }
+        return new String(phrase);
+    }
+
+    private static List<String> bruteForce(Map<String, Double> ranks, String prefix, int limit) {
+        final List<String> matches = new ArrayList<>();
+        for (String phrase : ranks.keySet()) {
+            if (phrase.startsWith(prefix)) {
+                matches.add(phrase);
+            }
+        }
+        // Distinct random ranks make ties vanishingly rare; break them by phrase to stay deterministic.
+        Collections.sort(matches, (a, b) -> {
+            final int byRank = Double.compare(ranks.get(b), ranks.get(a));
+            return byRank != 0 ? byRank : a.compareTo(b);
+        });
+        return matches.subList(0, Math.min(limit, matches.size()));
+    }
+
+    private static List<String> top(HistoryIndex index, String prefix) {
+        final List<String> top = new ArrayList<>();
+        index.top(prefix, top);
+        return top;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package in.arunkumarsampath.suggestions2.source.history;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+
+public class HistorySuggestionSourceTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private TestScheduler scheduler;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        scheduler = new TestScheduler();
+        file = new File(temporaryFolder.newFolder(), "history");
+    }
+
+    @Test
+    public void recentSelectionsOutrankOlderFrequentOnes() {
+        final HistorySuggestionSource source = open();
+        source.record("Batman");
+        source.record("batman ");
+        source.record("  batman");
+        Assert.assertEquals(Collections.emptyList(), suggestions(source, "bat"));
+        scheduler.triggerActions();
+        Assert.assertEquals(Collections.singletonList("batman"), suggestions(source, "BAT"));
+
+        scheduler.advanceTimeBy(7, TimeUnit.DAYS);
+        source.record("bathroom");
+        scheduler.triggerActions();
+        Assert.assertEquals(Arrays.asList("batman", "bathroom"), suggestions(source, "bat"));
+
+        scheduler.advanceTimeBy(7, TimeUnit.DAYS);
+        source.record("bathroom");
+        scheduler.triggerActions();
+        Assert.assertEquals(Arrays.asList("bathroom", "batman"), suggestions(source, "bat"));
+        Assert.assertEquals(Arrays.asList("bathroom", "batman"), suggestions(source, ""));
+        Assert.assertEquals(Collections.singletonList("batman"), suggestions(source, "batm"));
+    }
+
+    @Test
+    public void historySurvivesReopening() {
+        HistorySuggestionSource source = open();
+        source.record("batman");
+        source.record("batman");
+        source.record("bathroom");
+        source.record("cat");
+        source.remove("cat");
+        source.close();
+        scheduler.triggerActions();
+
+        source = open();
+        scheduler.triggerActions();
+        Assert.assertEquals(Arrays.asList("batman", "bathroom"), suggestions(source, ""));
+        Assert.assertEquals(0, source.writeErrorCount());
+    }
+
+    @Test
+    public void flushCompletesAfterClose() {
+        HistorySuggestionSource source = open();
+        source.record("batman");
+        final TestObserver<Void> beforeClose = source.flush().test();
+        source.close();
+        final TestObserver<Void> whileClosing = source.flush().test();
+        whileClosing.assertNotComplete();
+        scheduler.triggerActions();
+        beforeClose.assertComplete();
+        whileClosing.assertComplete();
+
+        source.flush().test().assertComplete();
+        source.record("bathroom");
+        scheduler.triggerActions();
+
+        source = open();
+        scheduler.triggerActions();
+        Assert.assertEquals(Collections.singletonList("batman"), suggestions(source, "bat"));
+    }
+
+    @Test
+    public void tornRecordIsDropped() throws IOException {
+        HistorySuggestionSource source = open();
+        source.record("batman");
+        source.close();
+        scheduler.triggerActions();
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[]{0x53, 0x47, 0x48, 0x53, 0, 0, 0, 40, 1, 0});
+        }
+        final long tornLength = file.length();
+
+        source = open();
+        scheduler.advanceTimeBy(1, TimeUnit.HOURS);
+        source.record("bathroom");
+        scheduler.triggerActions();
+        Assert.assertTrue(file.length() < tornLength + 30);
+        source.close();
+        scheduler.triggerActions();
+
+        source = open();
+        scheduler.triggerActions();
+        Assert.assertEquals(Arrays.asList("bathroom", "batman"), suggestions(source, "bat"));
+    }
+
+    @Test
+    public void evictsLowestRankedPhrases() {
+        final HistorySuggestionSource source = HistorySuggestionSource.builder()
+                .maxEntries(2)
+                .scheduler(scheduler)
+                .build();
+        source.record("batman");
+        source.record("batman");
+        source.record("bathroom");
+        scheduler.advanceTimeBy(1, TimeUnit.HOURS);
+        source.record("battlefield");
+        scheduler.triggerActions();
+        Assert.assertEquals(2, source.size());
+        Assert.assertEquals(Arrays.asList("batman", "battlefield"), suggestions(source, "bat"));
+    }
+
+    @Test
+    public void compactsRepeatedSelections() {
+        HistorySuggestionSource source = open();
+        source.record("bathroom");
+        for (int i = 0; i < 1000; i++) {
+            source.record("batman");
+            scheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+        }
+        Assert.assertTrue(file.length() < 100 * 32);
+        Assert.assertEquals(Arrays.asList("batman", "bathroom"), suggestions(source, "bat"));
+        source.close();
+        scheduler.triggerActions();
+
+        source = open();
+        scheduler.triggerActions();
+        Assert.assertEquals(Arrays.asList("batman", "bathroom"), suggestions(source, "bat"));
+    }
+
+    private HistorySuggestionSource open() {
+        return HistorySuggestionSource.builder()
+                .file(file)
+                .scheduler(scheduler)
+                .build();
+    }
+
+    private static List<String> suggestions(HistorySuggestionSource source, String value) {
+        final List<String> values = new ArrayList<>();
+        for (SimpleSuggestionItem item : source.getSuggestions(value).blockingIterable()) {
+            values.add(item.value());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.source.local;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+
+public class FuzzySuggestionSourceTest {
+
+    private static List<String> values(List<SimpleSuggestionItem> items) {
+        final List<String> values = new ArrayList<>();
+        for (SimpleSuggestionItem item : items) {
+            values.add(item.value());
+        }
+        return values;
+    }
+
+    /**
+     * Optimal string alignment distance between {@code query} and the closest prefix of {@code phrase}.
+     */
+    private static int prefixDistance(String query, String phrase) {
+        final int[][] d = new int[phrase.length() + 1][query.length() + 1];
+        int best = Integer.MAX_VALUE;
+        for (int i = 0; i <= phrase.length(); i++) {
+            for (int j = 0; j <= query.length(); j++) {
+                if (i == 0 || j == 0) {
+                    d[i][j] = i + j;
+                    continue;
+                }
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1),
+                        d[i - 1][j - 1] + (phrase.charAt(i - 1) == query.charAt(j - 1) ? 0 : 1));
+                if (i > 1 && j > 1 && phrase.charAt(i - 1) == query.charAt(j - 2) && phrase.charAt(i - 2) == query.charAt(j - 1)) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+            }
+            best = Math.min(best, d[i][query.length()]);
+        }
+        return best;
+    }
+
+    @Test
+    public void typosStillComplete() {
+        final FuzzySuggestionSource source = new FuzzySuggestionSource(LocalCorpusSuggestionSource.builder()
+                .add("batman", 50)
+                .add("batman begins", 80)
+                .add("batmobile", 30)
+                .add("bathroom", 10)
+                .add("superman", 90)
+                .build());
+
+        Assert.assertEquals(Arrays.asList("batman begins", "batman", "batmobile"),
+                values(source.getSuggestions("batmna").test().values()));
+        Assert.assertEquals(Arrays.asList("batman begins", "batman"),
+                values(source.getSuggestions("btaman").test().values()));
+        Assert.assertEquals(Arrays.asList("superman"),
+                values(source.getSuggestions("supr").test().values()));
+        source.getSuggestions("xyz").test().assertNoValues().assertComplete();
+    }
+
+    @Test
+    public void exactCompletionsComeFirst() {
+        final FuzzySuggestionSource source = new FuzzySuggestionSource(LocalCorpusSuggestionSource.builder()
+                .add("batman", 1)
+                .add("batmen", 100)
+                .build(), 2, 10);
+
+        Assert.assertEquals(Arrays.asList("batman", "batmen"),
+                values(source.getSuggestions("batman").test().values()));
+    }
+
+    @Test
+    public void prefixBudgetSearchesFirstCharacterFirst() {
+        final LocalCorpusSuggestionSource.Builder builder = LocalCorpusSuggestionSource.builder()
+                .add("batman", 10)
+                .add("cbatman", 100);
+        for (char c = 'a'; c <= 'z'; c++) {
+            builder.add("a" + c + "q", 1);
+        }
+        final LocalCorpusSuggestionSource corpus = builder.build();
+
+        Assert.assertEquals(Arrays.asList("batman", "cbatman"),
+                values(new FuzzySuggestionSource(corpus).getSuggestions("batmna").test().values()));
+        Assert.assertEquals(Arrays.asList("batman"),
+                values(new FuzzySuggestionSource(corpus, 2, 10, 20).getSuggestions("batmna").test().values()));
+    }
+
+    @Test
+    public void matchesBruteForce() {
+        final Random random = new Random(11);
+        final LocalCorpusSuggestionSource.Builder builder = LocalCorpusSuggestionSource.builder();
+        final List<String> phrases = new ArrayList<>();
+        final List<Integer> weights = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            final StringBuilder phrase = new StringBuilder();
+            for (int j = 1 + random.nextInt(8); j > 0; j--) {
+                phrase.append((char) ('a' + random.nextInt(5)));
+            }
+            if (phrases.contains(phrase.toString())) {
+                continue;
+            }
+            final int weight = random.nextInt(1000);
+            phrases.add(phrase.toString());
+            weights.add(weight);
+            builder.add(phrase, weight);
+        }
+        final FuzzySuggestionSource source = new FuzzySuggestionSource(builder.build(), 2, 8);
+
+        for (String query : new String[]{"ab", "bad", "eeca", "abcdea", "ddcbaae"}) {
+            final int edits = Math.min(2, query.length() / 3);
+            final List<Integer> matches = new ArrayList<>();
+            final int[] distances = new int[phrases.size()];
+            for (int i = 0; i < phrases.size(); i++) {
+                distances[i] = prefixDistance(query, phrases.get(i));
+                if (distances[i] <= edits) {
+                    matches.add(i);
+                }
+            }
+            matches.sort((a, b) -> {
+                if (distances[a] != distances[b]) {
+                    return distances[a] - distances[b];
+                }
+                if (!weights.get(a).equals(weights.get(b))) {
+                    return weights.get(b) - weights.get(a);
+                }
+                return phrases.get(a).compareTo(phrases.get(b));
+            });
+            final List<String> expected = new ArrayList<>();
+            for (int i = 0; i < Math.min(8, matches.size()); i++) {
+                expected.add(phrases.get(matches.get(i)));
+            }
+            Assert.assertEquals(query, expected, values(source.getSuggestions(query).test().values()));
+        }
+    }
+}
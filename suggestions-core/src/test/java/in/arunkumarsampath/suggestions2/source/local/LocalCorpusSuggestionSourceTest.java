@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.source.local;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import in.arunkumarsampath.suggestions2.source.batch.BatchResult;
+import io.reactivex.subscribers.TestSubscriber;
+
+public class LocalCorpusSuggestionSourceTest {
+
+    private static List<String> values(List<SimpleSuggestionItem> items) {
+        final List<String> values = new ArrayList<>();
+        for (SimpleSuggestionItem item : items) {
+            values.add(item.value());
+        }
+        return values;
+    }
+
+    @Test
+    public void completionsAreOrderedByWeight() throws IOException {
+        final LocalCorpusSuggestionSource source = LocalCorpusSuggestionSource.builder()
+                .load(new StringReader("batman\t50\nBatman  Begins\t80\nbathroom\t10\nbatmobile\t30\nsuperman\t90\n\nbatman\t5\n"))
+                .maxResults(3)
+                .build();
+
+        Assert.assertEquals(5, source.size());
+        Assert.assertEquals(
+                Arrays.asList("batman begins", "batman", "batmobile"),
+                values(source.getSuggestions(" Bat ").test().values()));
+        Assert.assertEquals(
+                Arrays.asList("batman begins", "batman"),
+                values(source.getSuggestions("batman").test().values()));
+        source.getSuggestions("batz").test().assertNoValues().assertComplete();
+        source.getSuggestions("  ").test().assertNoValues().assertComplete();
+    }
+
+    @Test
+    public void completionsAreProducedOnRequest() {
+        final LocalCorpusSuggestionSource source = LocalCorpusSuggestionSource.builder()
+                .add("a", 1)
+                .add("ab", 2)
+                .add("abc", 3)
+                .build();
+
+        final TestSubscriber<SimpleSuggestionItem> subscriber = source.getSuggestions("a").test(1);
+        subscriber.assertValueCount(1).assertNotComplete();
+        Assert.assertEquals("abc", subscriber.values().get(0).value());
+        subscriber.requestMore(5);
+        subscriber.assertValueCount(3).assertComplete();
+    }
+
+    @Test
+    public void topKMatchesBruteForce() {
+        final Random random = new Random(7);
+        final LocalCorpusSuggestionSource.Builder builder = LocalCorpusSuggestionSource.builder().maxResults(5);
+        final List<String> phrases = new ArrayList<>();
+        final List<Integer> weights = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            final StringBuilder phrase = new StringBuilder();
+            for (int j = 1 + random.nextInt(6); j > 0; j--) {
+                phrase.append((char) ('a' + random.nextInt(4)));
+            }
+            if (phrases.contains(phrase.toString())) {
+                continue;
+            }
+            final int weight = random.nextInt(1000);
+            phrases.add(phrase.toString());
+            weights.add(weight);
+            builder.add(phrase, weight);
+        }
+        final LocalCorpusSuggestionSource source = builder.build();
+
+        for (String prefix : new String[]{"a", "bc", "dda", "abcd"}) {
+            final List<String> expected = new ArrayList<>();
+            final List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < phrases.size(); i++) {
+                if (phrases.get(i).startsWith(prefix)) {
+                    order.add(i);
+                }
+            }
+            order.sort((a, b) -> weights.get(a).equals(weights.get(b))
+                    ? phrases.get(a).compareTo(phrases.get(b))
+                    : weights.get(b) - weights.get(a));
+            for (int i = 0; i < Math.min(5, order.size()); i++) {
+                expected.add(phrases.get(order.get(i)));
+            }
+            Assert.assertEquals(prefix, expected, values(source.getSuggestions(prefix).test().values()));
+        }
+    }
+
+    @Test
+    public void batchMatchesSingleQueries() {
+        final LocalCorpusSuggestionSource source = LocalCorpusSuggestionSource.builder()
+                .add("batman", 50)
+                .add("batman begins", 80)
+                .add("bathroom", 10)
+                .add("superman", 90)
+                .build();
+        final List<String> queries = Arrays.asList("bat", "  ", "SUPER", "batman ", "x");
+
+        final List<BatchResult<SimpleSuggestionItem>> results = source.getSuggestionsBatch(queries).test().values();
+        Assert.assertEquals(queries.size(), results.size());
+        for (int i = 0; i < queries.size(); i++) {
+            Assert.assertEquals(queries.get(i), results.get(i).query());
+            Assert.assertEquals(values(source.getSuggestions(queries.get(i)).test().values()), values(results.get(i).items()));
+        }
+        Assert.assertEquals(Arrays.asList("batman begins", "batman", "bathroom"), values(results.get(0).items()));
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.source.prefetch;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import in.arunkumarsampath.suggestions2.source.cache.CachingSuggestionSource;
+import in.arunkumarsampath.suggestions2.transformer.SuggestionsTransformer;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+
+public class PrefetchingSuggestionSourceTest {
+
+    private static final List<String> PHRASES = Arrays.asList(
+            "batman", "bathroom", "batman begins", "battlefield", "bat mitzvah", "batman arkham knight");
+
+    private final List<String> upstreamCalls = new ArrayList<>();
+
+    private TestScheduler scheduler;
+    private CachingSuggestionSource<SimpleSuggestionItem> cache;
+
+    @Before
+    public void setUp() {
+        upstreamCalls.clear();
+        scheduler = new TestScheduler();
+        cache = new CachingSuggestionSource<>(value -> Flowable.defer(() -> {
+            upstreamCalls.add(value);
+            return Flowable.fromIterable(PHRASES)
+                    .filter(phrase -> phrase.startsWith(value))
+                    .map(SimpleSuggestionItem::new);
+        }), 64, 5, TimeUnit.MINUTES, scheduler);
+    }
+
+    @Test
+    public void prefetchesNextKeystrokeOfTopSuggestions() {
+        final PrefetchingSuggestionSource<SimpleSuggestionItem> source = new PrefetchingSuggestionSource.Builder<>(cache)
+                .maxConcurrent(4)
+                .scheduler(scheduler)
+                .build();
+
+        source.getSuggestions("bat").test().assertValueCount(6);
+        Assert.assertEquals(Arrays.asList("bat"), upstreamCalls);
+
+        scheduler.triggerActions();
+        Assert.assertEquals(Arrays.asList("bat", "batm", "bath", "batt"), upstreamCalls);
+        Assert.assertEquals(3, source.prefetchCount());
+
+        source.getSuggestions("batm").test().assertValueCount(3);
+        source.getSuggestions("batt").test().assertValue(item -> item.value().equals("battlefield"));
+        Assert.assertEquals(2, cache.hitCount());
+    }
+
+    @Test
+    public void prefetchesWhenTransformerTakesFirstItems() {
+        final PrefetchingSuggestionSource<SimpleSuggestionItem> source = new PrefetchingSuggestionSource.Builder<>(cache)
+                .maxConcurrent(4)
+                .scheduler(scheduler)
+                .build();
+        final SuggestionsTransformer<SimpleSuggestionItem> transformer = new SuggestionsTransformer.Builder<>(source)
+                .debounce(0, TimeUnit.MILLISECONDS)
+                .maxSuggestions(3)
+                .sourceScheduler(Schedulers.trampoline())
+                .build();
+
+        Flowable.just("bat").compose(transformer).test().assertValue(items -> items.size() == 3);
+        scheduler.triggerActions();
+        Assert.assertEquals(Arrays.asList("bat", "batm", "bath"), upstreamCalls);
+        Assert.assertEquals(2, source.prefetchCount());
+    }
+
+    @Test
+    public void skipsPredictionsOverBudget() {
+        final PrefetchingSuggestionSource<SimpleSuggestionItem> source = new PrefetchingSuggestionSource.Builder<>(cache)
+                .maxConcurrent(1)
+                .rateLimit(2, 1, TimeUnit.MINUTES)
+                .scheduler(scheduler)
+                .build();
+
+        source.getSuggestions("bat").test();
+        Assert.assertEquals(1, source.prefetchCount());
+        Assert.assertEquals(2, source.skippedCount());
+
+        scheduler.triggerActions();
+        source.getSuggestions("batma").test();
+        scheduler.triggerActions();
+        source.getSuggestions("batman").test();
+        scheduler.triggerActions();
+        Assert.assertEquals(2, source.prefetchCount());
+        Assert.assertEquals(4, source.skippedCount());
+        Assert.assertEquals(Arrays.asList("bat", "batm", "batma", "batman"), upstreamCalls);
+    }
+
+    @Test
+    public void predictsPastSpaces() {
+        final PrefetchingSuggestionSource<SimpleSuggestionItem> source = new PrefetchingSuggestionSource.Builder<>(cache)
+                .scheduler(scheduler)
+                .build();
+
+        source.getSuggestions("bat ").test();
+        scheduler.triggerActions();
+        Assert.assertEquals(Arrays.asList("bat ", "bat m"), upstreamCalls);
+    }
+
+    @Test
+    public void predictionsDoNotDependOnDefaultLocale() {
+        final CachingSuggestionSource<SimpleSuggestionItem> upperCaseCache = new CachingSuggestionSource<>(value -> Flowable.defer(() -> {
+            upstreamCalls.add(value);
+            return Flowable.just(new SimpleSuggestionItem("BATIK"));
+        }), 64, 5, TimeUnit.MINUTES, scheduler);
+        final PrefetchingSuggestionSource<SimpleSuggestionItem> source = new PrefetchingSuggestionSource.Builder<>(upperCaseCache)
+                .scheduler(scheduler)
+                .build();
+        final Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            source.getSuggestions("bat").test();
+            scheduler.triggerActions();
+            Assert.assertEquals(Arrays.asList("bat", "bati"), upstreamCalls);
+
+            source.getSuggestions("bati").test().assertValueCount(1);
+            Assert.assertEquals(1, upperCaseCache.hitCount());
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    public void typingTraceMostlyHitsCache() {
+        final PrefetchingSuggestionSource<SimpleSuggestionItem> source = new PrefetchingSuggestionSource.Builder<>(cache)
+                .scheduler(scheduler)
+                .build();
+
+        final String typed = "batman arkham knight";
+        for (int i = 1; i <= typed.length(); i++) {
+            source.getSuggestions(typed.substring(0, i)).test().assertComplete();
+            scheduler.advanceTimeBy(300, TimeUnit.MILLISECONDS);
+        }
+        Assert.assertTrue("hits " + cache.hitCount() + " misses " + cache.missCount(),
+                cache.hitCount() > 3 * cache.missCount());
+    }
+}
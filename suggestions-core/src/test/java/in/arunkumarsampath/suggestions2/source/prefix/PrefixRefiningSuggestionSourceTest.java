@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.source.prefix;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.TestScheduler;
+
+public class PrefixRefiningSuggestionSourceTest {
+
+    private final List<String> upstreamQueries = new ArrayList<>();
+
+    private TestScheduler refreshScheduler;
+    private PrefixRefiningSuggestionSource<SimpleSuggestionItem> refiningSource;
+
+    @Before
+    public void setUp() {
+        upstreamQueries.clear();
+        refreshScheduler = new TestScheduler();
+        refiningSource = new PrefixRefiningSuggestionSource<>(value -> Flowable.defer(() -> {
+            upstreamQueries.add(value);
+            return Flowable.just(
+                    new SimpleSuggestionItem("batman"),
+                    new SimpleSuggestionItem("Batman Begins"),
+                    new SimpleSuggestionItem("bathroom"));
+        }), 2, refreshScheduler);
+    }
+
+    @Test
+    public void longerQueryIsRefinedLocally() {
+        refiningSource.getSuggestions("bat").test().assertValueCount(3);
+
+        final List<SimpleSuggestionItem> refined = refiningSource.getSuggestions("batma").test().values();
+        Assert.assertEquals(2, refined.size());
+        Assert.assertEquals("batman", refined.get(0).value());
+        Assert.assertEquals("Batman Begins", refined.get(1).value());
+        Assert.assertEquals(1, upstreamQueries.size());
+
+        refreshScheduler.triggerActions();
+        Assert.assertEquals(2, upstreamQueries.size());
+        Assert.assertEquals("batma", upstreamQueries.get(1));
+        Assert.assertEquals(2, refiningSource.size());
+    }
+
+    @Test
+    public void keysDoNotDependOnDefaultLocale() {
+        final Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            refiningSource.getSuggestions("BATMAN BEGI").test().assertValueCount(3);
+            refiningSource.getSuggestions("batman begin").test()
+                    .assertValue(item -> item.value().equals("Batman Begins"));
+            Assert.assertEquals(1, upstreamQueries.size());
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    public void emptyRefinementGoesToSource() {
+        refiningSource.getSuggestions("bat").test().assertValueCount(3);
+        refiningSource.getSuggestions("batz").test().assertValueCount(3);
+        Assert.assertEquals(2, upstreamQueries.size());
+    }
+
+    @Test
+    public void oldestQueryIsDroppedWhenFull() {
+        refiningSource.getSuggestions("a").test();
+        refiningSource.getSuggestions("b").test();
+        refiningSource.getSuggestions("c").test();
+        Assert.assertEquals(2, refiningSource.size());
+
+        refiningSource.getSuggestions("a").test();
+        Assert.assertEquals(4, upstreamQueries.size());
+    }
+
+    @Test
+    public void finishedRefreshesAreNotRetained() {
+        refiningSource.getSuggestions("bat").test();
+        refiningSource.getSuggestions("batma").test();
+        Assert.assertEquals(1, refiningSource.pendingRefreshCount());
+
+        refreshScheduler.triggerActions();
+        Assert.assertEquals(0, refiningSource.pendingRefreshCount());
+    }
+
+    @Test
+    public void indexedResultsExpire() {
+        refiningSource.getSuggestions("bat").test();
+        refreshScheduler.advanceTimeBy(PrefixRefiningSuggestionSource.DEFAULT_TTL_MINUTES, TimeUnit.MINUTES);
+
+        refiningSource.getSuggestions("bat").test().assertValueCount(3);
+        refiningSource.getSuggestions("batma").test().assertValueCount(2);
+        Assert.assertEquals(Arrays.asList("bat", "bat"), upstreamQueries);
+        Assert.assertEquals(1, refiningSource.size());
+    }
+}
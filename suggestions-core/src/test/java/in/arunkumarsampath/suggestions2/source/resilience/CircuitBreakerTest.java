@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package in.arunkumarsampath.suggestions2.source.resilience;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.schedulers.TestScheduler;
+
+public class CircuitBreakerTest {
+
+    private TestScheduler clock;
+    private CircuitBreaker breaker;
+
+    @Before
+    public void setUp() {
+        clock = new TestScheduler();
+        breaker = new CircuitBreaker(2, 1, TimeUnit.SECONDS, clock);
+    }
+
+    @Test
+    public void opensAfterConsecutiveFailuresAndClosesAfterTrial() {
+        breaker.onFailure(breaker.tryAcquire());
+        breaker.onSuccess(breaker.tryAcquire());
+        breaker.onFailure(breaker.tryAcquire());
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+        breaker.onFailure(breaker.tryAcquire());
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        Assert.assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+
+        clock.advanceTimeBy(1, TimeUnit.SECONDS);
+        final long trial = breaker.tryAcquire();
+        Assert.assertNotEquals(CircuitBreaker.REJECTED, trial);
+        Assert.assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+        breaker.onSuccess(trial);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    public void callsAllowedBeforeOpeningDoNotDecideTrial() {
+        final long slow = breaker.tryAcquire();
+        breaker.onFailure(breaker.tryAcquire());
+        breaker.onFailure(breaker.tryAcquire());
+        clock.advanceTimeBy(1, TimeUnit.SECONDS);
+        final long trial = breaker.tryAcquire();
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+
+        breaker.onSuccess(slow);
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        breaker.onCancel(slow);
+        Assert.assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+
+        breaker.onFailure(trial);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.source.resilience;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subscribers.TestSubscriber;
+
+public class ResilientSuggestionSourceTest {
+
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+    private TestScheduler scheduler;
+    private volatile boolean failing;
+
+    @Before
+    public void setUp() {
+        upstreamCalls.set(0);
+        scheduler = new TestScheduler();
+        failing = false;
+    }
+
+    private ResilientSuggestionSource.Builder<SimpleSuggestionItem> builder() {
+        return new ResilientSuggestionSource.Builder<SimpleSuggestionItem>(value -> Flowable.defer(() -> {
+            upstreamCalls.incrementAndGet();
+            return failing
+                    ? Flowable.<SimpleSuggestionItem>error(new IOException("503"))
+                    : Flowable.just(new SimpleSuggestionItem(value));
+        }))
+                .fallback(value -> Flowable.just(new SimpleSuggestionItem("offline " + value)))
+                .scheduler(scheduler);
+    }
+
+    @Test
+    public void rateLimitedCallsUseFallback() {
+        final ResilientSuggestionSource<SimpleSuggestionItem> source = builder()
+                .rateLimit(2, 100, TimeUnit.MILLISECONDS)
+                .build();
+
+        source.getSuggestions("a").test().assertValue(item -> item.value().equals("a"));
+        source.getSuggestions("b").test().assertValue(item -> item.value().equals("b"));
+        source.getSuggestions("c").test().assertValue(item -> item.value().equals("offline c"));
+        Assert.assertEquals(1, source.throttledCount());
+
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        source.getSuggestions("d").test().assertValue(item -> item.value().equals("d"));
+        Assert.assertEquals(3, upstreamCalls.get());
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, source.circuitState());
+    }
+
+    @Test
+    public void breakerOpensAndRecovers() {
+        final ResilientSuggestionSource<SimpleSuggestionItem> source = builder()
+                .circuitBreaker(2, 1, TimeUnit.SECONDS)
+                .rateLimit(100, 1, TimeUnit.MILLISECONDS)
+                .build();
+        failing = true;
+
+        source.getSuggestions("a").test().assertValue(item -> item.value().equals("offline a"));
+        source.getSuggestions("b").test().assertValue(item -> item.value().equals("offline b"));
+        Assert.assertEquals(CircuitBreaker.State.OPEN, source.circuitState());
+
+        source.getSuggestions("c").test().assertValue(item -> item.value().equals("offline c"));
+        Assert.assertEquals(2, upstreamCalls.get());
+        Assert.assertEquals(1, source.rejectedCount());
+
+        failing = false;
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, source.circuitState());
+        source.getSuggestions("d").test().assertValue(item -> item.value().equals("d"));
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, source.circuitState());
+    }
+
+    @Test
+    public void callsCutShortByTakeCountAsSuccesses() {
+        final ResilientSuggestionSource<SimpleSuggestionItem> source = builder()
+                .circuitBreaker(2, 1, TimeUnit.SECONDS)
+                .rateLimit(100, 1, TimeUnit.MILLISECONDS)
+                .build();
+
+        for (int i = 0; i < 5; i++) {
+            failing = true;
+            source.getSuggestions("a").take(1).test().assertValue(item -> item.value().equals("offline a"));
+            failing = false;
+            source.getSuggestions("b").take(1).test().assertValue(item -> item.value().equals("b"));
+        }
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, source.circuitState());
+        Assert.assertEquals(5, source.failedCount());
+        Assert.assertEquals(0, source.rejectedCount());
+
+        failing = true;
+        source.getSuggestions("c").take(1).test();
+        source.getSuggestions("d").take(1).test();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, source.circuitState());
+
+        failing = false;
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        source.getSuggestions("e").take(1).test().assertValue(item -> item.value().equals("e"));
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, source.circuitState());
+    }
+
+    @Test
+    public void slowSourceTimesOut() {
+        final ResilientSuggestionSource<SimpleSuggestionItem> source = new ResilientSuggestionSource.Builder<SimpleSuggestionItem>(
+                value -> Flowable.<SimpleSuggestionItem>never())
+                .fallback(value -> Flowable.just(new SimpleSuggestionItem("offline " + value)))
+                .timeout(500, TimeUnit.MILLISECONDS)
+                .scheduler(scheduler)
+                .build();
+
+        final TestSubscriber<SimpleSuggestionItem> subscriber = source.getSuggestions("a").test();
+        subscriber.assertNoValues();
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+        subscriber.assertValue(item -> item.value().equals("offline a")).assertComplete();
+        Assert.assertEquals(1, source.failedCount());
+    }
+}
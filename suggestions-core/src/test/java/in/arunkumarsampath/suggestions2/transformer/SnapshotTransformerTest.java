@@ -0,0 +1,86 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.transformer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Flowable;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subscribers.TestSubscriber;
+
+public class SnapshotTransformerTest {
+
+    @Test
+    public void snapshotsGrowByFirstItemBatchAndWindow() {
+        final TestScheduler scheduler = new TestScheduler();
+        final PublishProcessor<String> items = PublishProcessor.create();
+        final TestSubscriber<List<String>> subscriber = items
+                .compose(new SnapshotTransformer<String>(2, 100, TimeUnit.MILLISECONDS, scheduler))
+                .test();
+
+        items.onNext("a");
+        subscriber.assertValueCount(1);
+        items.onNext("b");
+        subscriber.assertValueCount(1);
+        items.onNext("c");
+        subscriber.assertValueCount(2);
+        items.onNext("d");
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        subscriber.assertValueCount(3);
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        items.onComplete();
+
+        subscriber.assertValues(
+                Collections.singletonList("a"),
+                Arrays.asList("a", "b", "c"),
+                Arrays.asList("a", "b", "c", "d"))
+                .assertComplete();
+    }
+
+    @Test
+    public void emptyUpstreamEmitsEmptyList() {
+        Flowable.<String>empty()
+                .compose(new SnapshotTransformer<String>(2, 0, TimeUnit.MILLISECONDS))
+                .test()
+                .assertValue(Collections.emptyList())
+                .assertComplete();
+    }
+
+    @Test
+    public void earlierSnapshotsAreUnaffected() {
+        final TestSubscriber<List<Integer>> subscriber = Flowable.range(0, 50)
+                .compose(new SnapshotTransformer<Integer>(3, 0, TimeUnit.MILLISECONDS))
+                .test();
+
+        final List<List<Integer>> snapshots = subscriber.values();
+        Assert.assertEquals(18, snapshots.size());
+        for (int i = 0; i < snapshots.size(); i++) {
+            final List<Integer> snapshot = snapshots.get(i);
+            Assert.assertEquals(i == 0 ? 1 : Math.min(50, 1 + 3 * i), snapshot.size());
+            for (int j = 0; j < snapshot.size(); j++) {
+                Assert.assertEquals(j, (int) snapshot.get(j));
+            }
+        }
+    }
+}
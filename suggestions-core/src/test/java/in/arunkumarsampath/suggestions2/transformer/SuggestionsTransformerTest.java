@@ -0,0 +1,153 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.transformer;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import io.reactivex.Flowable;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subscribers.TestSubscriber;
+
+public class SuggestionsTransformerTest {
+
+    private final List<String> fetched = new ArrayList<>();
+    private final List<String> cancelled = new ArrayList<>();
+
+    private TestScheduler scheduler;
+    private PublishProcessor<String> terms;
+    private TestSubscriber<List<SimpleSuggestionItem>> subscriber;
+
+    @Before
+    public void setUp() {
+        fetched.clear();
+        cancelled.clear();
+        scheduler = new TestScheduler();
+        terms = PublishProcessor.create();
+        final SuggestionsTransformer<SimpleSuggestionItem> transformer = new SuggestionsTransformer.Builder<SimpleSuggestionItem>(
+                value -> Flowable.just(new SimpleSuggestionItem(value))
+                        .delay(500, TimeUnit.MILLISECONDS, scheduler)
+                        .doOnSubscribe(subscription -> fetched.add(value))
+                        .doOnCancel(() -> cancelled.add(value)))
+                .debounce(200, TimeUnit.MILLISECONDS)
+                .minLength(2)
+                .debounceScheduler(scheduler)
+                .sourceScheduler(Schedulers.trampoline())
+                .build();
+        subscriber = terms.compose(transformer).test();
+    }
+
+    @Test
+    public void onlyPausesInTypingAreFetched() {
+        terms.onNext("ba");
+        scheduler.advanceTimeBy(50, TimeUnit.MILLISECONDS);
+        terms.onNext("bat");
+        scheduler.advanceTimeBy(700, TimeUnit.MILLISECONDS);
+
+        subscriber.assertValueCount(1);
+        Assert.assertEquals("bat", subscriber.values().get(0).get(0).value());
+        Assert.assertEquals(1, fetched.size());
+    }
+
+    @Test
+    public void staleFetchIsCancelled() {
+        terms.onNext("bat");
+        scheduler.advanceTimeBy(250, TimeUnit.MILLISECONDS);
+        terms.onNext("batman");
+        scheduler.advanceTimeBy(700, TimeUnit.MILLISECONDS);
+
+        Assert.assertEquals(1, cancelled.size());
+        Assert.assertEquals("bat", cancelled.get(0));
+        subscriber.assertValueCount(1);
+        Assert.assertEquals("batman", subscriber.values().get(0).get(0).value());
+    }
+
+    @Test
+    public void shortAndRepeatedTermsAreNotFetched() {
+        terms.onNext("b");
+        scheduler.advanceTimeBy(700, TimeUnit.MILLISECONDS);
+        terms.onNext("bat");
+        scheduler.advanceTimeBy(700, TimeUnit.MILLISECONDS);
+        terms.onNext("bat ");
+        scheduler.advanceTimeBy(700, TimeUnit.MILLISECONDS);
+
+        subscriber.assertValueCount(2);
+        Assert.assertTrue(subscriber.values().get(0).isEmpty());
+        Assert.assertEquals(1, fetched.size());
+    }
+
+    @Test
+    public void adaptiveDebounceWidensWithLatency() {
+        final AdaptiveDebounce adaptiveDebounce = new AdaptiveDebounce(200, 1000);
+        final PublishProcessor<String> adaptiveTerms = PublishProcessor.create();
+        final TestSubscriber<List<SimpleSuggestionItem>> adaptiveSubscriber = adaptiveTerms
+                .compose(new SuggestionsTransformer.Builder<SimpleSuggestionItem>(
+                        value -> Flowable.just(new SimpleSuggestionItem(value)).delay(500, TimeUnit.MILLISECONDS, scheduler))
+                        .adaptiveDebounce(adaptiveDebounce)
+                        .debounceScheduler(scheduler)
+                        .sourceScheduler(Schedulers.trampoline())
+                        .build())
+                .test();
+        Assert.assertEquals(200, adaptiveDebounce.currentMillis());
+
+        adaptiveTerms.onNext("bat");
+        scheduler.advanceTimeBy(700, TimeUnit.MILLISECONDS);
+        adaptiveSubscriber.assertValueCount(1);
+        Assert.assertEquals(500, adaptiveDebounce.p95Millis());
+        Assert.assertEquals(500, adaptiveDebounce.currentMillis());
+
+        adaptiveTerms.onNext("batman");
+        scheduler.advanceTimeBy(400, TimeUnit.MILLISECONDS);
+        adaptiveTerms.onNext("batman begins");
+        scheduler.advanceTimeBy(400, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(1, adaptiveSubscriber.values().size());
+        scheduler.advanceTimeBy(600, TimeUnit.MILLISECONDS);
+        adaptiveSubscriber.assertValueCount(2);
+        Assert.assertEquals("batman begins", adaptiveSubscriber.values().get(1).get(0).value());
+    }
+
+    @Test
+    public void adaptiveDebounceWidensWhenSlowFetchesAreCancelled() {
+        final AdaptiveDebounce adaptiveDebounce = new AdaptiveDebounce(200, 2000);
+        final PublishProcessor<String> adaptiveTerms = PublishProcessor.create();
+        final TestSubscriber<List<SimpleSuggestionItem>> adaptiveSubscriber = adaptiveTerms
+                .compose(new SuggestionsTransformer.Builder<SimpleSuggestionItem>(
+                        value -> Flowable.just(new SimpleSuggestionItem(value)).delay(1000, TimeUnit.MILLISECONDS, scheduler))
+                        .adaptiveDebounce(adaptiveDebounce)
+                        .debounceScheduler(scheduler)
+                        .sourceScheduler(Schedulers.trampoline())
+                        .build())
+                .test();
+
+        adaptiveTerms.onNext("bat");
+        scheduler.advanceTimeBy(400, TimeUnit.MILLISECONDS);
+        adaptiveTerms.onNext("batm");
+        scheduler.advanceTimeBy(400, TimeUnit.MILLISECONDS);
+
+        adaptiveSubscriber.assertNoValues();
+        Assert.assertEquals(400, adaptiveDebounce.p95Millis());
+        Assert.assertEquals(400, adaptiveDebounce.currentMillis());
+    }
+}
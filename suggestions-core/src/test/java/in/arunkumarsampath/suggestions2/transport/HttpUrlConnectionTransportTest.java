@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.transport;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+public class HttpUrlConnectionTransportTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String BODY = "<toplevel><CompleteSuggestion><suggestion data=\"batman\"/></CompleteSuggestion></toplevel>";
+
+    private final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<>());
+
+    private HttpServer server;
+    private String baseUrl;
+    private HttpUrlConnectionTransport transport;
+
+    @Before
+    public void setUp() throws IOException {
+        clientPorts.clear();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/plain", exchange -> respond(exchange, false));
+        server.createContext("/gzip", exchange -> respond(exchange, true));
+        server.createContext("/missing", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        transport = new HttpUrlConnectionTransport();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void closedResponsesReuseConnection() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            try (SuggestionResponse response = transport.execute(baseUrl + "/plain")) {
+                Assert.assertEquals(BODY, read(response.body()));
+            }
+        }
+        Assert.assertEquals(1, clientPorts.size());
+    }
+
+    @Test
+    public void gzipResponseIsDecoded() throws IOException {
+        try (SuggestionResponse response = transport.execute(baseUrl + "/gzip")) {
+            Assert.assertEquals(BODY, read(response.body()));
+            Assert.assertEquals("text/xml; charset=UTF-8", response.contentType());
+        }
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void errorStatusThrows() throws IOException {
+        transport.execute(baseUrl + "/missing");
+    }
+
+    private void respond(HttpExchange exchange, boolean gzip) throws IOException {
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        byte[] body = BODY.getBytes(UTF_8);
+        if (gzip) {
+            Assert.assertEquals("gzip", exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzipStream = new GZIPOutputStream(compressed)) {
+                gzipStream.write(body);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    private static String read(InputStream inputStream) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[256];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        return new String(outputStream.toByteArray(), UTF_8);
+    }
+}
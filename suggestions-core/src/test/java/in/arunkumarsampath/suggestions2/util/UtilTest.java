@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package in.arunkumarsampath.suggestions2.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.URLEncoder;
+import java.util.Random;
+
+public class UtilTest {
+
+    @Test
+    public void whitespaceIsTrimmedAndCollapsed() {
+        Assert.assertEquals("batman", Util.prepareSearchTerm("  batman "));
+        Assert.assertEquals("batman+arkham+knight", Util.prepareSearchTerm("batman \t arkham\nknight"));
+        Assert.assertEquals("", Util.prepareSearchTerm("   "));
+    }
+
+    @Test
+    public void reservedCharactersAreEncoded() {
+        Assert.assertEquals("a%26b%3Dc%23d%25e%2Bf%3Fg%2Fh", Util.prepareSearchTerm("a&b=c#d%e+f?g/h"));
+        Assert.assertEquals("a.b-c*d_e", Util.prepareSearchTerm("a.b-c*d_e"));
+    }
+
+    @Test
+    public void unicodeIsEncodedAsUtf8() {
+        Assert.assertEquals("caf%C3%A9", Util.prepareSearchTerm("caf\u00e9"));
+        Assert.assertEquals("%E0%A4%AD%E0%A4%BE%E0%A4%B0%E0%A4%A4", Util.prepareSearchTerm("\u092d\u093e\u0930\u0924"));
+        Assert.assertEquals("%F0%9F%A6%87", Util.prepareSearchTerm("\ud83e\udd87"));
+        Assert.assertEquals("a%EF%BF%BDb", Util.prepareSearchTerm("a\ud83eb"));
+    }
+
+    @Test
+    public void matchesUrlEncoder() throws Exception {
+        final Random random = new Random(5);
+        final char[] alphabet = "ab Z9.-*_~!&=#%+/?:@\u00e9\u00df\u4e2d\ud83d\ude00\t".toCharArray();
+        for (int round = 0; round < 2000; round++) {
+            final StringBuilder term = new StringBuilder();
+            for (int i = random.nextInt(12); i > 0; i--) {
+                final char c = alphabet[random.nextInt(alphabet.length)];
+                term.append(c);
+                if (Character.isHighSurrogate(c)) {
+                    term.append('\ude00');
+                } else if (Character.isLowSurrogate(c)) {
+                    term.insert(term.length() - 1, '\ud83d');
+                }
+            }
+            final String normalized = term.toString().trim().replaceAll("\\s+", " ");
+            Assert.assertEquals(term.toString(), URLEncoder.encode(normalized, "UTF-8"), Util.prepareSearchTerm(term.toString()));
+        }
+    }
+
+    @Test
+    public void urlTemplateExpandsEncodedTerm() {
+        final UrlTemplate template = new UrlTemplate("http://host/search?q=%s&client=toolbar");
+        Assert.assertEquals("http://host/search?q=tom+%26+jerry&client=toolbar", template.expand(" tom & jerry"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void urlTemplateRequiresPlaceholder() {
+        new UrlTemplate("http://host/search?q=");
+    }
+
+    @Test
+    public void encodingIsExtractedFromContentType() {
+        Assert.assertEquals("utf-8", Util.extractEncoding("text/xml; charset=UTF-8"));
+        Assert.assertEquals("utf-8", Util.extractEncoding("text/xml; charset=UTF-8"));
+        Assert.assertEquals("iso-8859-2", Util.extractEncoding("text/xml;Charset=\"ISO-8859-2\" ; q=1"));
+        Assert.assertEquals("ISO-8859-1", Util.extractEncoding("text/xml"));
+        Assert.assertEquals("ISO-8859-1", Util.extractEncoding(null));
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package in.arunkumarsampath.suggestions2.gateway;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+
+import in.arunkumarsampath.suggestions2.parser.JsonSuggestionResponseParser;
+import in.arunkumarsampath.suggestions2.source.google.GoogleSuggestionSource;
+import in.arunkumarsampath.suggestions2.transport.HttpUrlConnectionTransport;
+
+/**
+ * Runs a {@link SuggestionGateway} in front of the Google suggest endpoint, or of the endpoint
+ * given as a URL format answering in the same JSON format.
+ * <p>
+ * Usage: {@code GatewayMain [port] [urlFormat]}
+ */
+public final class GatewayMain {
+
+    private GatewayMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int port = args.length > 0 ? Integer.parseInt(args[0]) : SuggestionGateway.DEFAULT_PORT;
+        final String urlFormat = args.length > 1 ? args[1] : GoogleSuggestionSource.FIREFOX_URL_FORMAT;
+        final GoogleSuggestionSource upstream = new GoogleSuggestionSource.Builder()
+                .transport(new HttpUrlConnectionTransport(SuggestionGateway.DEFAULT_UPSTREAM_THREADS))
+                .parser(new JsonSuggestionResponseParser(), urlFormat)
+                .build();
+
+        final SuggestionGateway gateway = new SuggestionGateway.Builder(upstream)
+                .address(new InetSocketAddress(port))
+                .start();
+        final CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            gateway.close();
+            stopped.countDown();
+        }));
+        System.out.println("Serving http://localhost:" + gateway.port() + SuggestionGateway.PATH + "?q=<query>");
+        stopped.await();
+    }
+}
@@ -0,0 +1,435 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package in.arunkumarsampath.suggestions2.gateway;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+import in.arunkumarsampath.suggestions2.item.SuggestionItem;
+import io.reactivex.FlowableSubscriber;
+
+/**
+ * One client connection of a {@link SuggestionGateway}, serving its requests one after the other.
+ * <p>
+ * Everything but the subscriber callbacks runs on the {@link EventLoop} of the connection, and the
+ * callbacks only hand their signals over to it. Suggestions are requested in batches of
+ * {@link #REQUEST_BATCH} and the next batch only once the previous one has been written to the
+ * socket, so a slow client holds back its own suggestions instead of filling memory. Reading stops
+ * while a response is being written, which in turn holds back pipelined requests.
+ * <p>
+ * Responses are sent as they are produced, chunked unless the client speaks HTTP/1.0. A failure
+ * before the first suggestion is answered with {@code 502}, a later one closes the connection
+ * before the end of the body.
+ */
+final class HttpConnection implements EventLoop.Handler {
+
+    private static final int MAX_HEAD_BYTES = 8 * 1024;
+    private static final int REQUEST_BATCH = 16;
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    @NonNull
+    private final SuggestionGateway gateway;
+    @NonNull
+    private final EventLoop loop;
+    @NonNull
+    private final SocketChannel channel;
+    private SelectionKey key;
+
+    private final ByteBuffer in = ByteBuffer.allocate(MAX_HEAD_BYTES);
+    private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+    /**
+     * Body produced since the last flush, written as a single chunk.
+     */
+    private final StringBuilder body = new StringBuilder(256);
+    private boolean flushPending;
+
+    /**
+     * Response being streamed, {@code null} while reading a request or writing a fixed response.
+     */
+    @Nullable
+    private Response response;
+    private boolean lastWritten;
+    private boolean chunked;
+    private boolean closeAfterResponse;
+    private boolean closed;
+
+    HttpConnection(@NonNull SuggestionGateway gateway, @NonNull EventLoop loop, @NonNull SocketChannel channel) {
+        this.gateway = gateway;
+        this.loop = loop;
+        this.channel = channel;
+    }
+
+    /**
+     * Registers the channel with the loop, must be called on the loop thread.
+     */
+    void register() {
+        try {
+            key = channel.register(loop.selector(), SelectionKey.OP_READ, this);
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    @Override
+    public void ready(@NonNull SelectionKey key) throws IOException {
+        if (key.isReadable()) {
+            if (channel.read(in) < 0) {
+                close();
+                return;
+            }
+            parse();
+        }
+        if (key.isValid() && key.isWritable()) {
+            flush();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (response != null) {
+            response.cancel();
+            response = null;
+        }
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Nothing left to release.
+        }
+        gateway.onConnectionClosed();
+    }
+
+    /**
+     * Handles the next request if its head has been read completely.
+     */
+    private void parse() {
+        final int end = headEnd();
+        if (end < 0) {
+            if (!in.hasRemaining()) {
+                key.interestOps(0);
+                chunked = false;
+                closeAfterResponse = true;
+                writeStatus("431 Request Header Fields Too Large");
+            }
+            return;
+        }
+        final String head = new String(in.array(), 0, end, ASCII);
+        // Keep whatever follows the head, the start of a pipelined request.
+        in.flip();
+        in.position(end + 4);
+        in.compact();
+
+        lastWritten = false;
+        key.interestOps(0);
+        handle(head);
+    }
+
+    /**
+     * @return Length of the request head in the input, or -1 if it has not been read completely.
+     */
+    private int headEnd() {
+        final byte[] bytes = in.array();
+        for (int i = 0; i + 3 < in.position(); i++) {
+            if (bytes[i] == '\r' && bytes[i + 1] == '\n' && bytes[i + 2] == '\r' && bytes[i + 3] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void handle(@NonNull String head) {
+        final String[] lines = head.split("\r\n");
+        final String[] requestLine = lines[0].split(" ");
+        if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.")) {
+            chunked = false;
+            closeAfterResponse = true;
+            writeStatus("400 Bad Request");
+            return;
+        }
+        chunked = !requestLine[2].equals("HTTP/1.0");
+        closeAfterResponse = !chunked;
+        for (int i = 1; i < lines.length; i++) {
+            final int colon = lines[i].indexOf(':');
+            if (colon > 0
+                    && lines[i].substring(0, colon).trim().equalsIgnoreCase("Connection")
+                    && lines[i].substring(colon + 1).toLowerCase(Locale.US).contains("close")) {
+                closeAfterResponse = true;
+            }
+        }
+        if (!requestLine[0].equals("GET")) {
+            writeStatus("405 Method Not Allowed");
+            return;
+        }
+        final String target = requestLine[1];
+        final int queryStart = target.indexOf('?');
+        final String path = queryStart < 0 ? target : target.substring(0, queryStart);
+        if (!path.equals(SuggestionGateway.PATH)) {
+            writeStatus("404 Not Found");
+            return;
+        }
+        final String query = queryStart < 0 ? null : parameter(target.substring(queryStart + 1), "q");
+        if (query == null) {
+            writeStatus("400 Bad Request");
+            return;
+        }
+        final Response response = new Response(query);
+        this.response = response;
+        gateway.suggestions(query).subscribe(response);
+    }
+
+    /**
+     * @return Decoded value of the parameter {@code name} in {@code query}, or {@code null} if it
+     * is missing or malformed.
+     */
+    @Nullable
+    private static String parameter(@NonNull String query, @NonNull String name) {
+        for (String pair : query.split("&")) {
+            if (pair.length() > name.length() && pair.startsWith(name) && pair.charAt(name.length()) == '=') {
+                try {
+                    return URLDecoder.decode(pair.substring(name.length() + 1), "UTF-8");
+                } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void onItem(@NonNull Response response, @NonNull SuggestionItem item) {
+        if (this.response != response) {
+            return;
+        }
+        response.outstanding--;
+        if (!response.headWritten) {
+            writeHead(response);
+        } else {
+            body.append(',');
+        }
+        appendJsonString(String.valueOf(item.value()), body);
+        scheduleFlush();
+    }
+
+    private void onComplete(@NonNull Response response) {
+        if (this.response != response) {
+            return;
+        }
+        if (!response.headWritten) {
+            writeHead(response);
+        }
+        body.append("]]");
+        queueBody();
+        if (chunked) {
+            queue("0\r\n\r\n".getBytes(ASCII));
+        }
+        this.response = null;
+        lastWritten = true;
+        scheduleFlush();
+    }
+
+    private void onError(@NonNull Response response) {
+        if (this.response != response) {
+            return;
+        }
+        this.response = null;
+        body.setLength(0);
+        if (response.headWritten) {
+            // The status is already sent, only an incomplete body can tell the client.
+            close();
+        } else {
+            writeStatus("502 Bad Gateway");
+        }
+    }
+
+    /**
+     * Queues the status line and headers, and starts the body.
+     */
+    private void writeHead(@NonNull Response response) {
+        response.headWritten = true;
+        final StringBuilder head = new StringBuilder(128)
+                .append("HTTP/1.1 200 OK\r\nContent-Type: application/json; charset=UTF-8\r\n");
+        if (chunked) {
+            head.append("Transfer-Encoding: chunked\r\n");
+        }
+        if (closeAfterResponse) {
+            head.append("Connection: close\r\n");
+        }
+        queue(head.append("\r\n").toString().getBytes(ASCII));
+        body.append('[');
+        appendJsonString(response.query, body);
+        body.append(",[");
+    }
+
+    /**
+     * Queues the pending {@link #body} as one chunk.
+     */
+    private void queueBody() {
+        if (body.length() == 0) {
+            return;
+        }
+        final byte[] bytes = body.toString().getBytes(UTF_8);
+        body.setLength(0);
+        if (chunked) {
+            queue((Integer.toHexString(bytes.length) + "\r\n").getBytes(ASCII));
+            queue(bytes);
+            queue(CRLF);
+        } else {
+            queue(bytes);
+        }
+    }
+
+    private void writeStatus(@NonNull String status) {
+        queue(("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\n"
+                + (closeAfterResponse ? "Connection: close\r\n" : "")
+                + "\r\n").getBytes(ASCII));
+        lastWritten = true;
+        scheduleFlush();
+    }
+
+    private void queue(@NonNull byte[] bytes) {
+        out.add(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Flushes after the signals already handed to the loop, so that they are written together.
+     */
+    private void scheduleFlush() {
+        if (!flushPending) {
+            flushPending = true;
+            loop.execute(() -> {
+                flushPending = false;
+                try {
+                    flush();
+                } catch (IOException e) {
+                    close();
+                }
+            });
+        }
+    }
+
+    private void flush() throws IOException {
+        if (closed) {
+            return;
+        }
+        queueBody();
+        while (!out.isEmpty()) {
+            channel.write(out.toArray(new ByteBuffer[out.size()]));
+            while (!out.isEmpty() && !out.peek().hasRemaining()) {
+                out.poll();
+            }
+            if (!out.isEmpty()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+        }
+        key.interestOps(0);
+        if (lastWritten) {
+            if (closeAfterResponse) {
+                close();
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+                parse();
+            }
+        } else if (response != null && response.outstanding == 0 && response.subscription != null) {
+            response.outstanding = REQUEST_BATCH;
+            response.subscription.request(REQUEST_BATCH);
+        }
+    }
+
+    private static void appendJsonString(@NonNull String value, @NonNull StringBuilder out) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format(Locale.US, "\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    private final class Response implements FlowableSubscriber<SuggestionItem> {
+        @NonNull
+        final String query;
+        volatile Subscription subscription;
+        // Only used on the loop.
+        int outstanding;
+        boolean headWritten;
+
+        Response(@NonNull String query) {
+            this.query = query;
+        }
+
+        @Override
+        public void onSubscribe(@NonNull Subscription subscription) {
+            this.subscription = subscription;
+            loop.execute(() -> {
+                if (response != this) {
+                    subscription.cancel();
+                    return;
+                }
+                outstanding = REQUEST_BATCH;
+                subscription.request(REQUEST_BATCH);
+            });
+        }
+
+        @Override
+        public void onNext(SuggestionItem item) {
+            loop.execute(() -> onItem(this, item));
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            loop.execute(() -> HttpConnection.this.onError(this));
+        }
+
+        @Override
+        public void onComplete() {
+            loop.execute(() -> HttpConnection.this.onComplete(this));
+        }
+
+        void cancel() {
+            final Subscription subscription = this.subscription;
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package in.arunkumarsampath.suggestions2.gateway;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import in.arunkumarsampath.suggestions2.executor.SuggestionDroppedException;
+import in.arunkumarsampath.suggestions2.executor.SuggestionExecutor;
+import in.arunkumarsampath.suggestions2.item.SuggestionItem;
+import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+import in.arunkumarsampath.suggestions2.source.cache.CachingSuggestionSource;
+import in.arunkumarsampath.suggestions2.source.coalesce.CoalescingSuggestionSource;
+import in.arunkumarsampath.suggestions2.util.Util;
+import io.reactivex.Flowable;
+
+/**
+ * HTTP server answering suggestion requests from a {@link SuggestionSource}, for web clients that
+ * cannot call the upstream source themselves.
+ * <p>
+ * Requests take the form of the Google suggest endpoint, {@code GET /complete/search?q=bat}, and
+ * are answered in its JSON format, {@code ["bat",["batman","bathroom"]]}, so that a
+ * {@link in.arunkumarsampath.suggestions2.source.google.GoogleSuggestionSource} with a
+ * {@link in.arunkumarsampath.suggestions2.parser.JsonSuggestionResponseParser} can use the gateway
+ * as its upstream.
+ * <p>
+ * Connections are served with non-blocking I/O by a few {@link EventLoop} threads, so thousands of
+ * idle or keep-alive clients cost no threads. Results are shared by every client: they are kept in
+ * a {@link CachingSuggestionSource}, and concurrent requests for the same term share one upstream
+ * call through a {@link CoalescingSuggestionSource}. Cache hits are answered on the event loop.
+ * Misses call the upstream source on a {@link SuggestionExecutor}, since sources may block, and
+ * the oldest misses waiting for it are answered with an empty result once it is saturated.
+ * <p>
+ * Suggestions are requested from the source only as fast as the client reads them, see
+ * {@link HttpConnection}.
+ * <p>
+ * Use {@link Builder} to start a gateway and {@link #close()} it to stop.
+ */
+public final class SuggestionGateway implements Closeable {
+
+    public static final String PATH = "/complete/search";
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_EVENT_LOOPS = 2;
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+    public static final long DEFAULT_CACHE_TTL_MINUTES = 5;
+    public static final int DEFAULT_UPSTREAM_THREADS = 16;
+    public static final int DEFAULT_UPSTREAM_QUEUE_CAPACITY = 256;
+
+    private static final int ACCEPT_BACKLOG = 1024;
+
+    @NonNull
+    private final CachingSuggestionSource<SuggestionItem> cache;
+    @NonNull
+    private final CoalescingSuggestionSource<SuggestionItem> coalescing;
+    @NonNull
+    private final SuggestionExecutor executor;
+    private final boolean ownsExecutor;
+    @NonNull
+    private final ServerSocketChannel serverChannel;
+    @NonNull
+    private final EventLoop[] loops;
+    private int nextLoop;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong cacheHitCount = new AtomicLong();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    @SuppressWarnings("unchecked")
+    private SuggestionGateway(@NonNull Builder builder) throws IOException {
+        final SuggestionSource<SuggestionItem> upstream = (SuggestionSource<SuggestionItem>) builder.source;
+        this.coalescing = new CoalescingSuggestionSource<>(upstream);
+        this.cache = new CachingSuggestionSource<>(coalescing, builder.cacheSize, builder.cacheTtlMillis, TimeUnit.MILLISECONDS);
+        this.ownsExecutor = builder.executor == null;
+        this.executor = builder.executor != null
+                ? builder.executor
+                : new SuggestionExecutor(DEFAULT_UPSTREAM_THREADS, DEFAULT_UPSTREAM_QUEUE_CAPACITY);
+
+        serverChannel = ServerSocketChannel.open();
+        loops = new EventLoop[builder.eventLoops];
+        try {
+            serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            serverChannel.bind(builder.address, ACCEPT_BACKLOG);
+            serverChannel.configureBlocking(false);
+            for (int i = 0; i < loops.length; i++) {
+                loops[i] = new EventLoop("suggestions-gateway-" + (i + 1));
+            }
+            // Registering before the loop runs does not need to go through it.
+            serverChannel.register(loops[0].selector(), SelectionKey.OP_ACCEPT, new Acceptor());
+        } catch (IOException e) {
+            serverChannel.close();
+            for (EventLoop loop : loops) {
+                if (loop != null) {
+                    loop.selector().close();
+                }
+            }
+            throw e;
+        }
+        for (EventLoop loop : loops) {
+            loop.start();
+        }
+    }
+
+    /**
+     * @return Port the gateway listens on.
+     */
+    public int port() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * @return Number of suggestion requests received.
+     */
+    public long requestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return Number of suggestion requests answered from the cache on the event loop.
+     */
+    public long cacheHitCount() {
+        return cacheHitCount.get();
+    }
+
+    /**
+     * @return Number of calls made to the upstream source.
+     */
+    public long upstreamCount() {
+        return coalescing.upstreamCount();
+    }
+
+    /**
+     * @return Number of requests that joined an upstream call already in flight.
+     */
+    public long coalescedCount() {
+        return coalescing.coalescedCount();
+    }
+
+    /**
+     * @return Number of requests answered empty because the upstream executor was saturated.
+     */
+    public long droppedCount() {
+        return executor.droppedCount();
+    }
+
+    /**
+     * @return Number of open client connections.
+     */
+    public int connectionCount() {
+        return connectionCount.get();
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones. Upstream calls already running are
+     * left to finish.
+     */
+    @Override
+    public void close() {
+        for (EventLoop loop : loops) {
+            loop.shutdown();
+        }
+        for (EventLoop loop : loops) {
+            try {
+                loop.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @return Suggestions for {@code query}, which never block the subscribing event loop.
+     */
+    @NonNull
+    Flowable<SuggestionItem> suggestions(@NonNull String query) {
+        requestCount.incrementAndGet();
+        final List<SuggestionItem> cached = cache.get(Util.prepareSearchTerm(query));
+        if (cached != null) {
+            cacheHitCount.incrementAndGet();
+            return Flowable.fromIterable(cached);
+        }
+        return executor.submit(cache.getSuggestions(query))
+                .onErrorResumeNext(error -> error instanceof SuggestionDroppedException
+                        ? Flowable.<SuggestionItem>empty()
+                        : Flowable.<SuggestionItem>error(error));
+    }
+
+    void onConnectionClosed() {
+        connectionCount.decrementAndGet();
+    }
+
+    private final class Acceptor implements EventLoop.Handler {
+        @Override
+        public void ready(@NonNull SelectionKey key) {
+            SocketChannel channel;
+            try {
+                while ((channel = serverChannel.accept()) != null) {
+                    channel.configureBlocking(false);
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    final EventLoop loop = loops[nextLoop];
+                    nextLoop = (nextLoop + 1) % loops.length;
+                    final HttpConnection connection = new HttpConnection(SuggestionGateway.this, loop, channel);
+                    connectionCount.incrementAndGet();
+                    loop.execute(connection::register);
+                }
+            } catch (IOException ignored) {
+                // Typically out of file descriptors, pending connections are accepted on a later
+                // select once some are closed.
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                serverChannel.close();
+            } catch (IOException ignored) {
+                // Nothing left to release.
+            }
+        }
+    }
+
+    public static final class Builder {
+        @NonNull
+        private final SuggestionSource<? extends SuggestionItem> source;
+        @NonNull
+        private InetSocketAddress address = new InetSocketAddress(DEFAULT_PORT);
+        private int eventLoops = DEFAULT_EVENT_LOOPS;
+        private int cacheSize = DEFAULT_CACHE_SIZE;
+        private long cacheTtlMillis = TimeUnit.MINUTES.toMillis(DEFAULT_CACHE_TTL_MINUTES);
+        @Nullable
+        private SuggestionExecutor executor;
+
+        /**
+         * @param source Upstream source of suggestions, which may block.
+         */
+        public Builder(@NonNull SuggestionSource<? extends SuggestionItem> source) {
+            this.source = source;
+        }
+
+        /**
+         * Address to listen on. Defaults to {@link #DEFAULT_PORT} on every interface.
+         */
+        @NonNull
+        public Builder address(@NonNull InetSocketAddress address) {
+            this.address = address;
+            return this;
+        }
+
+        /**
+         * Number of threads serving connections. Defaults to {@link #DEFAULT_EVENT_LOOPS}.
+         */
+        @NonNull
+        public Builder eventLoops(int eventLoops) {
+            if (eventLoops <= 0) {
+                throw new IllegalArgumentException("eventLoops <= 0: " + eventLoops);
+            }
+            this.eventLoops = eventLoops;
+            return this;
+        }
+
+        /**
+         * Bounds of the shared result cache. Defaults to {@link #DEFAULT_CACHE_SIZE} terms for
+         * {@link #DEFAULT_CACHE_TTL_MINUTES} minutes.
+         */
+        @NonNull
+        public Builder cache(int maxSize, long ttl, @NonNull TimeUnit unit) {
+            if (maxSize <= 0) {
+                throw new IllegalArgumentException("maxSize <= 0: " + maxSize);
+            }
+            if (ttl <= 0) {
+                throw new IllegalArgumentException("ttl <= 0: " + ttl);
+            }
+            this.cacheSize = maxSize;
+            this.cacheTtlMillis = unit.toMillis(ttl);
+            return this;
+        }
+
+        /**
+         * Executor calling the upstream source, left running on {@link #close()}. Defaults to
+         * one of {@link #DEFAULT_UPSTREAM_THREADS} threads with room for
+         * {@link #DEFAULT_UPSTREAM_QUEUE_CAPACITY} waiting calls, owned by the gateway.
+         */
+        @NonNull
+        public Builder executor(@NonNull SuggestionExecutor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * @return A gateway accepting connections.
+         * @throws IOException If the address could not be bound.
+         */
+        @NonNull
+        public SuggestionGateway start() throws IOException {
+            return new SuggestionGateway(this);
+        }
+    }
+}
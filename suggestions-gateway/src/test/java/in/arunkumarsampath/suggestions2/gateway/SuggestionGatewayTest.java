@@ -0,0 +1,244 @@
+/*
+ * Copyright 2018 Arunkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package in.arunkumarsampath.suggestions2.gateway;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import in.arunkumarsampath.suggestions2.item.SimpleSuggestionItem;
+import in.arunkumarsampath.suggestions2.parser.JsonSuggestionResponseParser;
+import in.arunkumarsampath.suggestions2.source.SuggestionSource;
+import in.arunkumarsampath.suggestions2.source.google.GoogleSuggestionSource;
+import io.reactivex.Flowable;
+
+public class SuggestionGatewayTest {
+
+    private static final List<String> PHRASES = Arrays.asList(
+            "batman", "bath\"room", "caf\u00e9 batman", "battlefield");
+
+    private final SuggestionSource<SimpleSuggestionItem> phrases = value -> Flowable.fromIterable(PHRASES)
+            .filter(phrase -> phrase.contains(value))
+            .map(SimpleSuggestionItem::new);
+
+    private SuggestionGateway gateway;
+
+    @After
+    public void tearDown() {
+        if (gateway != null) {
+            gateway.close();
+        }
+    }
+
+    @Test
+    public void servesSuggestionsAsJson() throws IOException {
+        start(phrases);
+        final HttpURLConnection connection = open("?client=firefox&q=bat");
+        Assert.assertEquals(200, connection.getResponseCode());
+        Assert.assertEquals("application/json; charset=UTF-8", connection.getContentType());
+        Assert.assertEquals("[\"bat\",[\"batman\",\"bath\\\"room\",\"caf\u00e9 batman\",\"battlefield\"]]",
+                read(connection.getInputStream()));
+
+        Assert.assertEquals("[\"dog\",[]]", read(open("?q=dog").getInputStream()));
+        Assert.assertEquals(2, gateway.requestCount());
+    }
+
+    @Test
+    public void servesGoogleSuggestionSource() {
+        start(phrases);
+        final GoogleSuggestionSource client = new GoogleSuggestionSource.Builder()
+                .parser(new JsonSuggestionResponseParser(),
+                        "http://127.0.0.1:" + gateway.port() + SuggestionGateway.PATH + "?q=%s")
+                .build();
+
+        for (int i = 0; i < 3; i++) {
+            client.getSuggestions("caf\u00e9 bat").test()
+                    .awaitDone(5, TimeUnit.SECONDS)
+                    .assertValue(item -> item.value().equals("caf\u00e9 batman"));
+        }
+        Assert.assertEquals(1, gateway.upstreamCount());
+        Assert.assertEquals(2, gateway.cacheHitCount());
+    }
+
+    @Test
+    public void rejectsInvalidRequests() throws IOException {
+        start(phrases);
+        Assert.assertEquals(404, ((HttpURLConnection) new URL(
+                "http://127.0.0.1:" + gateway.port() + "/search?q=bat").openConnection()).getResponseCode());
+        Assert.assertEquals(400, open("?client=firefox").getResponseCode());
+        Assert.assertEquals(400, open("?q=%zz").getResponseCode());
+        final HttpURLConnection post = open("?q=bat");
+        post.setRequestMethod("POST");
+        Assert.assertEquals(405, post.getResponseCode());
+    }
+
+    @Test
+    public void failingUpstreamIsBadGateway() throws IOException {
+        start(value -> Flowable.error(new IOException("upstream down")));
+        Assert.assertEquals(502, open("?q=bat").getResponseCode());
+    }
+
+    @Test
+    public void servesPipelinedAndHttp10Requests() throws IOException {
+        start(phrases);
+        try (Socket socket = connect()) {
+            write(socket, "GET /complete/search?q=field HTTP/1.1\r\nHost: a\r\n\r\n"
+                    + "GET /complete/search?q=nothing HTTP/1.1\r\nHost: a\r\nConnection: close\r\n\r\n");
+            final String responses = read(socket.getInputStream());
+            final int second = responses.indexOf("HTTP/1.1", 1);
+            Assert.assertEquals("[\"field\",[\"battlefield\"]]", body(responses.substring(0, second)));
+            Assert.assertTrue(responses, responses.substring(second).contains("Connection: close\r\n"));
+            Assert.assertEquals("[\"nothing\",[]]", body(responses.substring(second)));
+        }
+        try (Socket socket = connect()) {
+            write(socket, "GET /complete/search?q=field HTTP/1.0\r\n\r\n");
+            final String response = read(socket.getInputStream());
+            Assert.assertTrue(response, response.startsWith("HTTP/1.1 200 OK\r\n"));
+            Assert.assertFalse(response, response.contains("chunked"));
+            Assert.assertEquals("[\"field\",[\"battlefield\"]]", body(response));
+        }
+    }
+
+    @Test
+    public void coalescesConcurrentRequests() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        start(value -> Flowable.defer(() -> {
+            release.await();
+            return phrases.getSuggestions(value);
+        }));
+        final List<Socket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < 10; i++) {
+                final Socket socket = connect();
+                sockets.add(socket);
+                write(socket, "GET /complete/search?q=bat HTTP/1.1\r\nConnection: close\r\n\r\n");
+            }
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (gateway.coalescedCount() < 9 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            for (Socket socket : sockets) {
+                Assert.assertTrue(body(read(socket.getInputStream())).endsWith("\"battlefield\"]]"));
+            }
+        } finally {
+            release.countDown();
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+        Assert.assertEquals(1, gateway.upstreamCount());
+        Assert.assertEquals(9, gateway.coalescedCount());
+        Assert.assertEquals(0, gateway.droppedCount());
+    }
+
+    @Test
+    public void streamsLargeResponsesToSlowClients() throws Exception {
+        final char[] padding = new char[1024];
+        Arrays.fill(padding, 'x');
+        final int count = 20000;
+        start(value -> Flowable.range(0, count).map(i -> new SimpleSuggestionItem(value + i + new String(padding))));
+        try (Socket socket = new Socket()) {
+            socket.setReceiveBufferSize(16 * 1024);
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), gateway.port()));
+            write(socket, "GET /complete/search?q=bat HTTP/1.0\r\n\r\n");
+            Thread.sleep(200);
+            final String response = read(socket.getInputStream());
+            Assert.assertTrue(response.endsWith("\"bat" + (count - 1) + new String(padding) + "\"]]"));
+            Assert.assertEquals(count, response.split("\"bat[0-9]").length - 1);
+        }
+        Assert.assertEquals(0, gateway.connectionCount());
+    }
+
+    private void start(SuggestionSource<SimpleSuggestionItem> source) {
+        try {
+            gateway = new SuggestionGateway.Builder(source)
+                    .address(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+                    .start();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private HttpURLConnection open(String query) throws IOException {
+        return (HttpURLConnection) new URL("http://127.0.0.1:" + gateway.port() + SuggestionGateway.PATH + query)
+                .openConnection();
+    }
+
+    private Socket connect() throws IOException {
+        return new Socket(InetAddress.getLoopbackAddress(), gateway.port());
+    }
+
+    private static void write(Socket socket, String request) throws IOException {
+        final OutputStream out = socket.getOutputStream();
+        out.write(request.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    /**
+     * @return Body of the single HTTP response {@code response}, with any chunked encoding removed.
+     */
+    private static String body(String response) {
+        final int headEnd = response.indexOf("\r\n\r\n") + 4;
+        if (!response.substring(0, headEnd).contains("Transfer-Encoding: chunked")) {
+            return response.substring(headEnd);
+        }
+        final byte[] bytes = response.substring(headEnd).getBytes(StandardCharsets.UTF_8);
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int position = 0;
+        while (true) {
+            int lineEnd = position;
+            while (bytes[lineEnd] != '\r') {
+                lineEnd++;
+            }
+            final int length = Integer.parseInt(new String(bytes, position, lineEnd - position, StandardCharsets.US_ASCII), 16);
+            if (length == 0) {
+                return new String(body.toByteArray(), StandardCharsets.UTF_8);
+            }
+            body.write(bytes, lineEnd + 2, length);
+            position = lineEnd + 2 + length + 2;
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        in.close();
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+}